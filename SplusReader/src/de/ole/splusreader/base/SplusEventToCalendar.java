@@ -3,7 +3,10 @@ package de.ole.splusreader.base;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import de.ole.splusreader.logic.SplusEvent;
 
@@ -12,4 +15,41 @@ public interface SplusEventToCalendar {
 			throws IOException;
 	public void writeToStream(List<SplusEvent> eventList, OutputStream outputstream) 
 			throws IOException;
+	
+	/**
+	 * Writes the events of a stream, e.g. one from 
+	 * SplusEventFactory.streamEventsBetweenWeeks, to a file.
+	 * 
+	 * Implementations able to write while the stream is still being produced
+	 * should override this, the default collects all events first.
+	 */
+	public default void writeToFile(Stream<SplusEvent> events, File file)
+			throws IOException {
+		writeToFile(collect(events), file);
+	}
+	
+	/**
+	 * Writes the events of a stream, e.g. one from 
+	 * SplusEventFactory.streamEventsBetweenWeeks, to an output stream.
+	 * 
+	 * Implementations able to write while the stream is still being produced
+	 * should override this, the default collects all events first.
+	 */
+	public default void writeToStream(Stream<SplusEvent> events, 
+			OutputStream outputstream) throws IOException {
+		writeToStream(collect(events), outputstream);
+	}
+	
+	/**
+	 * Collects a stream of events, turning an UncheckedIOException thrown 
+	 * while fetching back into its IOException.
+	 */
+	public static List<SplusEvent> collect(Stream<SplusEvent> events) 
+			throws IOException {
+		try {
+			return events.collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
 }
@@ -0,0 +1,36 @@
+package de.ole.splusreader.examples;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import de.ole.splusreader.logic.SplusEventFactory;
+import de.ole.splusreader.logic.feed.Feed;
+import de.ole.splusreader.logic.feed.FeedServer;
+
+public class ServeFeeds {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		SplusEventFactory factory = new SplusEventFactory();
+		
+		//Serve weeks 39 to 52 on port 8080, fetched again every hour
+		FeedServer server = new FeedServer(
+				factory, 
+				new InetSocketAddress(8080), 
+				39, 52, 
+				TimeUnit.HOURS.toMillis(1));
+		
+		//Offer IT-Management 5th semester
+		Feed feed = server.addFeed(
+				"Informatik", 
+				"Semesterpläne", 
+				"IT-Management 5. Semester", 
+				null);
+		
+		System.out.println("Subscribe to " + server.getUrl(feed));
+		
+		//Keep serving until the process is stopped
+		Thread.currentThread().join();
+	}
+
+}
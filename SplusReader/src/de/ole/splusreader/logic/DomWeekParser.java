@@ -0,0 +1,260 @@
+package de.ole.splusreader.logic;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+/**
+ * Reads the events of a week from the timetable page of splus once it has
+ * been parsed into a jsoup document.
+ *
+ * The year is taken from the week selector of the page, the events from the
+ * "grid-border-args" table: the day from the column header above the cell,
+ * the start from the row label and the length from the rowspan of every
+ * event cell. Cells are placed with a {@link GridLayout}, so cells of earlier
+ * rows reaching down do not shift the day.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public class DomWeekParser {
+
+	private final SplusDateCalculator dateCalculator;
+
+	/**
+	 * @param dateCalculator turns the timetable into dates
+	 */
+	public DomWeekParser(SplusDateCalculator dateCalculator) {
+		this.dateCalculator = dateCalculator;
+	}
+
+	/**
+	 * @param doc                   The timetable page of the week
+	 * @param week                  The number of the week as requested
+	 * @return                      The events of the week
+	 * @throws SplusParseException  If the page can't be read
+	 */
+	public List<SplusEvent> parse(Document doc, int week)
+			throws SplusParseException {
+
+		List<SplusEvent> listOfEvents = new ArrayList<>();
+		
+		//get Year of selection and year of first week
+		Elements weeks = doc.getElementsByAttributeValue("name", "weeks")
+				.first().getElementsByTag("option");
+		
+		String yearOfFirstWeek = weeks.first().text();
+			   yearOfFirstWeek = yearOfFirstWeek.substring(yearOfFirstWeek.length() -10, yearOfFirstWeek.length() -6);
+
+			   String year = null;
+				
+		for(Element option: weeks) {
+			if(option.hasAttr("selected")) {
+				year = option.text();
+				year = year.substring(year.length() - 11, year.length() - 7);
+			}
+		}
+		
+		
+		Element table = doc
+				.getElementsByAttributeValue("class", "grid-border-args")
+				.first();
+		
+		//the dates of the week are the same for all its events
+		SplusDateCalculator.Week dates = dateCalculator.week(
+				parseYear(year), parseYear(yearOfFirstWeek), week);
+		
+		GridLayout layout = new GridLayout();
+		
+		//get Event Content
+		for(Element row: table.getElementsByTag("tr")) {
+			if(!isRowOf(row, table)) {
+				continue;
+			}
+			
+			layout.startRow();
+			
+			for(Element column:row.children()) {
+				if(!column.tagName().equals("td") 
+						&& !column.tagName().equals("th")) {
+					continue;
+				}
+				
+				//the real column, with the rowspans of earlier rows in mind
+				int first = layout.addCell(
+						GridLayout.parseSpan(column.attr("rowspan")), 
+						GridLayout.parseSpan(column.attr("colspan")));
+				
+				if(column.tagName().equals("th")) {
+					continue;
+				}
+				
+				if(column.hasClass("col-label-one")) {
+					layout.setDay(first, 
+							GridLayout.parseSpan(column.attr("colspan")), 
+							column.text());
+				}
+				else if(column.hasClass("row-label-one")) {
+					layout.setRowLabel(layout.getRow(), column.text());
+				}
+				else if(column.hasClass("object-cell-border")) {
+					String dayOfWeek = dayOf(layout, first);
+					int minuteOfDay = layout.getMinuteOfDay(layout.getRow());
+					String title = null;
+					String description = null;
+					String presenter = null;
+					String location = null;
+					int lengthInMinutes = parseLength(column.attr("rowspan"));
+
+					for(Element tbody:column.getElementsByTag("tbody")) {
+						for(Element data:tbody.getElementsByTag("td")) {
+							if(data.attr("align").equals("center")) {
+								if(title == null) {
+									title = data.text();
+								}
+								else {
+									description = data.text();
+								}
+							}
+							else if(data.attr("align").equals("left")) {
+								location = data.text();
+							}
+							else {
+								presenter = data.text();
+							}
+						}
+					}
+					
+					// create and add event
+					listOfEvents.add(
+							getEventFromStrings(
+									dates,
+									dayOfWeek,
+									title, 
+									description,
+									presenter,
+									location,
+									minuteOfDay,
+									lengthInMinutes));
+					
+				}
+			}
+		}
+		
+		return listOfEvents;
+	}
+
+	/**
+	 * @return the calculator turning the timetable into dates
+	 */
+	public SplusDateCalculator getDateCalculator() {
+		return dateCalculator;
+	}
+
+	/**
+	 * @return true if the row belongs to the table itself and not to a table
+	 *         nested in one of its cells
+	 */
+	private static boolean isRowOf(Element row, Element table) {
+		Element parent = row.parent();
+		
+		while(parent != null && !parent.tagName().equals("table")) {
+			parent = parent.parent();
+		}
+		
+		return parent == table;
+	}
+	
+	static String dayOf(GridLayout layout, int column) 
+			throws SplusParseException {
+		String day = layout.getDay(column);
+		
+		if(day == null) {
+			throw new SplusParseException("No day for column " + column);
+		}
+		
+		return day;
+	}
+	
+	static int parseLength(String rowspan) throws SplusParseException {
+		try {
+			return Integer.parseInt(rowspan) * GridLayout.MINUTES_PER_ROW;
+		} catch (NumberFormatException e) {
+			throw new SplusParseException(
+					"Invalid rowspan \"" + rowspan + "\"", e);
+		}
+	}
+	
+	static int parseYear(String year) throws SplusParseException {
+		try {
+			return Integer.parseInt(year);
+		} catch (NumberFormatException e) {
+			throw new SplusParseException("Invalid year \"" + year + "\"", e);
+		}
+	}
+	
+	/**
+	 * Builds the event of a single cell of the timetable.
+	 * 
+	 * @param dates                 The dates of the week of the cell
+	 * @param dayOfWeek             The abbreviated day, e.g. "Mo"
+	 * @param title                 The title of the event
+	 * @param description           The description, may be null
+	 * @param presenter             The presenter, may be null
+	 * @param location              The location, may be null
+	 * @param time                  The start, e.g. "8:15"
+	 * @param lengthInMinutes       The length of the event
+	 * @return                      The event
+	 * @throws SplusParseException  If the day or the time can't be read
+	 */
+	public static SplusEvent getEventFromStrings(
+			SplusDateCalculator.Week dates,
+			String dayOfWeek,
+			String title,
+			String description,
+			String presenter,
+			String location,
+			String time,
+			int lengthInMinutes) throws SplusParseException {
+		
+		return getEventFromStrings(dates, dayOfWeek, 
+				title, description, presenter, location, 
+				SplusDateCalculator.parseMinuteOfDay(time), lengthInMinutes);
+	}
+	
+	/**
+	 * Builds the event of a single cell of the timetable.
+	 * 
+	 * @param dates                 The dates of the week of the cell
+	 * @param dayOfWeek             The abbreviated day, e.g. "Mo"
+	 * @param title                 The title of the event
+	 * @param description           The description, may be null
+	 * @param presenter             The presenter, may be null
+	 * @param location              The location, may be null
+	 * @param minuteOfDay           The start in minutes since midnight
+	 * @param lengthInMinutes       The length of the event
+	 * @return                      The event
+	 * @throws SplusParseException  If the day can't be read
+	 */
+	public static SplusEvent getEventFromStrings(
+			SplusDateCalculator.Week dates,
+			String dayOfWeek,
+			String title,
+			String description,
+			String presenter,
+			String location,
+			int minuteOfDay,
+			int lengthInMinutes) throws SplusParseException {
+		
+		long begin = dates.toEpochMilli(
+				SplusDateCalculator.parseDayOfWeek(dayOfWeek), minuteOfDay);
+		long end = begin + lengthInMinutes * 60_000L;
+		
+		return new SplusEvent(
+				new Date(begin), new Date(end), 
+				title, description, location, presenter);
+	}
+}
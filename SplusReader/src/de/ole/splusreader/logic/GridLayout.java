@@ -0,0 +1,155 @@
+package de.ole.splusreader.logic;
+
+import java.util.Arrays;
+
+/**
+ * Places the cells of the timetable grid the way a browser lays out a table,
+ * so every cell gets its real column and row.
+ *
+ * A cell with a rowspan keeps its columns taken in the rows below it, and
+ * splus leaves those cells out of the rows. The next cell of such a row
+ * therefore does not sit at its position among its siblings but at the next
+ * column that is still free. The layout remembers for every column up to
+ * which row it is taken, so placing all cells of a week takes time linear in
+ * the size of the grid.
+ *
+ * The day headers name the columns they span and the row labels the rows
+ * they start, one row being a quarter of an hour.
+ *
+ * Instances are not thread-safe and are used for a single page.
+ */
+public class GridLayout {
+
+	/** The minutes a row of the grid stands for */
+	public static final int MINUTES_PER_ROW = 15;
+
+	//the row up to which (exclusive) a column is taken
+	private int[] takenUntil = new int[16];
+	private String[] days = new String[16];
+
+	private int row = -1;
+	private int column;
+
+	private int labelRow = -1;
+	private String label;
+
+	/**
+	 * Starts the next row of the grid.
+	 */
+	public void startRow() {
+		row++;
+		column = 0;
+	}
+
+	/**
+	 * Places the next cell of the current row at the first free column.
+	 *
+	 * @param rowspan  The rows the cell spans, at least 1
+	 * @param colspan  The columns the cell spans, at least 1
+	 * @return         The first column of the cell
+	 */
+	public int addCell(int rowspan, int colspan) {
+		if(row < 0) {
+			startRow();
+		}
+
+		rowspan = Math.max(rowspan, 1);
+		colspan = Math.max(colspan, 1);
+
+		while(column < takenUntil.length && takenUntil[column] > row) {
+			column++;
+		}
+
+		int first = column;
+		ensureColumns(first + colspan);
+
+		for(int i = first; i < first + colspan; i++) {
+			takenUntil[i] = row + rowspan;
+		}
+
+		column = first + colspan;
+		return first;
+	}
+
+	/**
+	 * Names the columns of a day header.
+	 *
+	 * @param first    The first column of the header
+	 * @param colspan  The columns the header spans
+	 * @param day      The abbreviated day, e.g. "Mo"
+	 */
+	public void setDay(int first, int colspan, String day) {
+		colspan = Math.max(colspan, 1);
+		ensureColumns(first + colspan);
+		Arrays.fill(days, first, first + colspan, day);
+	}
+
+	/**
+	 * @param column  A column of the grid
+	 * @return        The day of the column or null if no header spans it
+	 */
+	public String getDay(int column) {
+		return column < days.length ? days[column] : null;
+	}
+
+	/**
+	 * Records the label of a row, the time the row starts at. Following rows
+	 * without a label of their own start a quarter of an hour later each.
+	 *
+	 * @param row   The row the label starts
+	 * @param time  The time, e.g. "8:15"
+	 */
+	public void setRowLabel(int row, String time) {
+		this.labelRow = row;
+		this.label = time;
+	}
+
+	/**
+	 * @param row                   A row of the grid
+	 * @return                      The minutes since midnight the row starts
+	 *                              at
+	 * @throws SplusParseException  If there is no label above the row or it
+	 *                              can't be read
+	 */
+	public int getMinuteOfDay(int row) throws SplusParseException {
+		if(labelRow < 0 || row < labelRow) {
+			throw new SplusParseException("No time for row " + row);
+		}
+
+		return SplusDateCalculator.parseMinuteOfDay(label)
+				+ (row - labelRow) * MINUTES_PER_ROW;
+	}
+
+	/**
+	 * @return the current row, -1 before the first one
+	 */
+	public int getRow() {
+		return row;
+	}
+
+	/**
+	 * Reads a rowspan or colspan like a browser does.
+	 *
+	 * @param span  The value of the attribute, may be null
+	 * @return      The span, 1 if it is missing or invalid
+	 */
+	public static int parseSpan(String span) {
+		if(span == null) {
+			return 1;
+		}
+
+		try {
+			return Math.max(Integer.parseInt(span.trim()), 1);
+		} catch (NumberFormatException e) {
+			return 1;
+		}
+	}
+
+	private void ensureColumns(int count) {
+		if(count > takenUntil.length) {
+			int length = Math.max(count, takenUntil.length * 2);
+			takenUntil = Arrays.copyOf(takenUntil, length);
+			days = Arrays.copyOf(days, length);
+		}
+	}
+}
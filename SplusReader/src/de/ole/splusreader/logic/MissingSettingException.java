@@ -4,4 +4,14 @@ public class MissingSettingException extends Exception {
 
 	private static final long serialVersionUID = 5692973849947295062L;
 
+	public MissingSettingException() {
+	}
+
+	/**
+	 * @param message names the setting that is missing
+	 */
+	public MissingSettingException(String message) {
+		super(message);
+	}
+
 }
@@ -0,0 +1,38 @@
+package de.ole.splusreader.logic;
+
+/**
+ * Thrown if a page asked for several weeks at once doesn't have a timetable
+ * for every week, e.g. because splus answered only the first of them.
+ */
+public class MissingWeeksException extends SplusParseException {
+
+	private static final long serialVersionUID = 4610952311383092731L;
+
+	private final int timetables;
+	private final int weeks;
+
+	/**
+	 * @param timetables  The number of timetables on the page
+	 * @param weeks       The number of weeks asked for
+	 */
+	public MissingWeeksException(int timetables, int weeks) {
+		super("The page has " + timetables + " timetables for " + weeks
+				+ " weeks");
+		this.timetables = timetables;
+		this.weeks = weeks;
+	}
+
+	/**
+	 * @return the number of timetables on the page
+	 */
+	public int getTimetables() {
+		return timetables;
+	}
+
+	/**
+	 * @return the number of weeks asked for
+	 */
+	public int getWeeks() {
+		return weeks;
+	}
+}
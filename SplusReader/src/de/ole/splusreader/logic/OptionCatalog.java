@@ -0,0 +1,257 @@
+package de.ole.splusreader.logic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A snapshot of all choices offered by splus: the faculties, their plans, the
+ * study paths of every plan and, for "Studentensetpläne", the groups of every
+ * study path.
+ *
+ * A catalog is crawled once with {@link SplusEventFactory#crawlCatalog()},
+ * saved to a small file and loaded on the next start, so a factory using it
+ * can select faculty, plan and study path without asking splus.
+ *
+ * Catalogs are immutable.
+ */
+public final class OptionCatalog {
+
+	private static final int MAGIC = 0x53504C43;
+	private static final int FORMAT_VERSION = 1;
+
+	private final long createdAt;
+	private final Node root;
+
+	/**
+	 * A choice together with the choices it offers.
+	 */
+	public static final class Node {
+		private final Option option;
+		private final List<Node> children;
+
+		public Node(Option option, List<Node> children) {
+			this.option = option;
+			this.children = Collections.unmodifiableList(
+					new ArrayList<>(children));
+		}
+
+		/**
+		 * @return the choice itself, null for the root of the catalog
+		 */
+		public Option getOption() {
+			return option;
+		}
+
+		/**
+		 * @return the choices below this one
+		 */
+		public List<Node> getChildren() {
+			return children;
+		}
+
+		private List<Option> getChildOptions() {
+			List<Option> list = new ArrayList<>(children.size());
+
+			for(Node child:children) {
+				list.add(child.option);
+			}
+
+			return list;
+		}
+
+		private Node find(Option option) {
+			for(Node child:children) {
+				if(child.option.equals(option)) {
+					return child;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * @param createdAt  The time the catalog was crawled in milliseconds
+	 *                   since the epoch
+	 * @param faculties  The faculties with everything below them
+	 */
+	public OptionCatalog(long createdAt, List<Node> faculties) {
+		this.createdAt = createdAt;
+		this.root = new Node(null, faculties);
+	}
+
+	/**
+	 * @return the time the catalog was crawled in milliseconds since the epoch
+	 */
+	public long getCreatedAt() {
+		return createdAt;
+	}
+
+	/**
+	 * @param maxAgeMillis  The age up to which the catalog is trusted
+	 * @return              true if the catalog is older than that
+	 */
+	public boolean isOlderThan(long maxAgeMillis) {
+		return System.currentTimeMillis() - createdAt > maxAgeMillis;
+	}
+
+	/**
+	 * @return the faculties with everything below them
+	 */
+	public List<Node> getFacultyNodes() {
+		return root.children;
+	}
+
+	/**
+	 * @return the faculties to choose from
+	 */
+	public List<Option> getFaculties() {
+		return root.getChildOptions();
+	}
+
+	/**
+	 * @param faculty  The chosen faculty
+	 * @return         The plans of the faculty or null if the faculty is not
+	 *                 in the catalog
+	 */
+	public List<Option> getPlans(Option faculty) {
+		Node node = root.find(faculty);
+		return node == null ? null : node.getChildOptions();
+	}
+
+	/**
+	 * @param faculty  The chosen faculty, null if it is unknown
+	 * @param plan     The chosen plan
+	 * @return         The study paths of the plan or null if the plan is not
+	 *                 in the catalog
+	 */
+	public List<Option> getStudyPaths(Option faculty, Option plan) {
+		Node node = findPlan(faculty, plan);
+		return node == null ? null : node.getChildOptions();
+	}
+
+	/**
+	 * @param faculty    The chosen faculty, null if it is unknown
+	 * @param plan       The chosen plan
+	 * @param studyPath  The chosen study path
+	 * @return           The groups of the study path or null if they are not
+	 *                   in the catalog
+	 */
+	public List<Option> getGroups(Option faculty, Option plan, Option studyPath) {
+		Node planNode = findPlan(faculty, plan);
+		Node node = planNode == null ? null : planNode.find(studyPath);
+
+		//only study paths of "Studentensetpläne" have groups
+		if(node == null || node.children.isEmpty()) {
+			return null;
+		}
+
+		return node.getChildOptions();
+	}
+
+	private Node findPlan(Option faculty, Option plan) {
+		if(faculty != null) {
+			Node facultyNode = root.find(faculty);
+			return facultyNode == null ? null : facultyNode.find(plan);
+		}
+
+		//the plan has been set without a faculty
+		for(Node facultyNode:root.children) {
+			Node node = facultyNode.find(plan);
+			if(node != null) {
+				return node;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Saves the catalog compressed. The file is replaced atomically, so
+	 * concurrent readers see either the old or the new catalog.
+	 *
+	 * @param file          The file to write
+	 * @throws IOException  If the file can't be written
+	 */
+	public void save(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile("catalog", ".tmp", directory);
+
+		try {
+			try(DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new GZIPOutputStream(
+							new FileOutputStream(temp))))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeLong(createdAt);
+				writeChildren(out, root);
+			}
+
+			Files.move(temp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	private static void writeChildren(DataOutputStream out, Node node)
+			throws IOException {
+		out.writeInt(node.children.size());
+
+		for(Node child:node.children) {
+			out.writeUTF(child.option.getTitle());
+			out.writeUTF(child.option.getValue());
+			writeChildren(out, child);
+		}
+	}
+
+	/**
+	 * @param file          A file written by {@link #save(File)}
+	 * @return              The catalog in the file
+	 * @throws IOException  If the file can't be read or is no catalog
+	 */
+	public static OptionCatalog load(File file) throws IOException {
+		try(DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new GZIPInputStream(
+						new FileInputStream(file))))) {
+			if(in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				throw new IOException(file + " is no option catalog");
+			}
+
+			long createdAt = in.readLong();
+
+			return new OptionCatalog(createdAt, readChildren(in));
+		}
+	}
+
+	private static List<Node> readChildren(DataInputStream in)
+			throws IOException {
+		int count = in.readInt();
+		List<Node> children = new ArrayList<>(count);
+
+		for(int i = 0; i < count; i++) {
+			//the number is the position in the list, as on the live pages
+			Option option = new Option(i, in.readUTF(), in.readUTF());
+			children.add(new Node(option, readChildren(in)));
+		}
+
+		return children;
+	}
+
+	public String toString() {
+		return "catalog of " + root.children.size() + " faculties from "
+				+ new Date(createdAt);
+	}
+}
@@ -0,0 +1,107 @@
+package de.ole.splusreader.logic;
+
+import java.util.Objects;
+
+/**
+ * The faculty, plan, study path and group a timetable is fetched for.
+ *
+ * A selection is immutable, so it can be handed to a SplusEventFactory shared
+ * by many threads, each fetching with a selection of its own. Changing a
+ * level returns a new selection and leaves the levels below as they are.
+ *
+ * A selection is complete enough to fetch weeks once it has a plan and a
+ * study path, and a group for "Studentensetpläne" with more than one group.
+ */
+public final class Selection {
+
+	/**
+	 * The selection without anything chosen.
+	 */
+	public static final Selection EMPTY = new Selection(null, null, null, null);
+
+	private final Option faculty;
+	private final Option plan;
+	private final Option studyPath;
+	private final Option group;
+
+	/**
+	 * @param faculty    The faculty or null
+	 * @param plan       The plan or null
+	 * @param studyPath  The study path or null
+	 * @param group      The group or null to choose the only group of the
+	 *                   study path automatically
+	 */
+	public Selection(Option faculty, Option plan, Option studyPath, Option group) {
+		this.faculty = faculty;
+		this.plan = plan;
+		this.studyPath = studyPath;
+		this.group = group;
+	}
+
+	public Option getFaculty() {
+		return faculty;
+	}
+
+	public Option getPlan() {
+		return plan;
+	}
+
+	public Option getStudyPath() {
+		return studyPath;
+	}
+
+	/**
+	 * @return the group or null if it isn't chosen
+	 */
+	public Option getGroup() {
+		return group;
+	}
+
+	public Selection withFaculty(Option faculty) {
+		return new Selection(faculty, plan, studyPath, group);
+	}
+
+	public Selection withPlan(Option plan) {
+		return new Selection(faculty, plan, studyPath, group);
+	}
+
+	public Selection withStudyPath(Option studyPath) {
+		return new Selection(faculty, plan, studyPath, group);
+	}
+
+	public Selection withGroup(Option group) {
+		return new Selection(faculty, plan, studyPath, group);
+	}
+
+	/**
+	 * @return true if the plan is a "Studentensetpläne" plan, whose weeks
+	 *         are fetched per group
+	 */
+	public boolean hasGroups() {
+		return plan != null && plan.getTitle().equals("Studentensetpläne");
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(faculty, plan, studyPath, group);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+		if(!(obj instanceof Selection))
+			return false;
+
+		Selection other = (Selection) obj;
+
+		return Objects.equals(faculty, other.faculty)
+				&& Objects.equals(plan, other.plan)
+				&& Objects.equals(studyPath, other.studyPath)
+				&& Objects.equals(group, other.group);
+	}
+
+	public String toString() {
+		return faculty + " / " + plan + " / " + studyPath + " / " + group;
+	}
+}
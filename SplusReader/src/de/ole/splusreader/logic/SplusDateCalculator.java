@@ -0,0 +1,268 @@
+package de.ole.splusreader.logic;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.IsoFields;
+import java.time.zone.ZoneRules;
+
+/**
+ * Turns the week, weekday and time of a cell in the splus timetable into
+ * points in time.
+ *
+ * The start of every ISO week year and its number of weeks are computed once
+ * for all instances. The offsets of the time zone are computed once per
+ * {@link Week}, so the dates of the events of a week are plain arithmetic.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public final class SplusDateCalculator {
+
+	private static final int FIRST_YEAR = 1970;
+	private static final int LAST_YEAR = 2199;
+
+	//epoch day of the monday of week 1 and number of weeks per year
+	private static final long[] FIRST_MONDAY = new long[LAST_YEAR - FIRST_YEAR + 1];
+	private static final byte[] WEEKS = new byte[LAST_YEAR - FIRST_YEAR + 1];
+
+	static {
+		for(int year = FIRST_YEAR; year <= LAST_YEAR; year++) {
+			FIRST_MONDAY[year - FIRST_YEAR] = computeFirstMonday(year);
+			WEEKS[year - FIRST_YEAR] = (byte) computeWeeksInYear(year);
+		}
+	}
+
+	private final ZoneId zone;
+
+	/**
+	 * Calculates dates in the default time zone of the system.
+	 */
+	public SplusDateCalculator() {
+		this(ZoneId.systemDefault());
+	}
+
+	/**
+	 * @param zone the time zone the timetable is read in
+	 */
+	public SplusDateCalculator(ZoneId zone) {
+		this.zone = zone;
+	}
+
+	/**
+	 * @return the time zone the timetable is read in
+	 */
+	public ZoneId getZone() {
+		return zone;
+	}
+
+	/**
+	 * @param year  The ISO week year
+	 * @return      The number of ISO weeks of that year, 52 or 53
+	 */
+	public static int weeksInYear(int year) {
+		if(year >= FIRST_YEAR && year <= LAST_YEAR)
+			return WEEKS[year - FIRST_YEAR];
+		return computeWeeksInYear(year);
+	}
+
+	private static long firstMonday(int year) {
+		if(year >= FIRST_YEAR && year <= LAST_YEAR)
+			return FIRST_MONDAY[year - FIRST_YEAR];
+		return computeFirstMonday(year);
+	}
+
+	private static long computeFirstMonday(int year) {
+		//the 4th of january is always in week 1
+		LocalDate fourth = LocalDate.of(year, 1, 4);
+		return fourth.toEpochDay() - (fourth.getDayOfWeek().getValue() - 1);
+	}
+
+	private static int computeWeeksInYear(int year) {
+		DayOfWeek first = LocalDate.of(year, 1, 1).getDayOfWeek();
+
+		if(first == DayOfWeek.THURSDAY)
+			return 53;
+		if(first == DayOfWeek.WEDNESDAY && LocalDate.of(year, 1, 1).isLeapYear())
+			return 53;
+		return 52;
+	}
+
+	/**
+	 * Reads the abbreviation splus uses for a weekday.
+	 *
+	 * @param dayOfWeek              "Mo" to "So"
+	 * @return                       1 for monday to 7 for sunday
+	 * @throws SplusParseException   If the abbreviation is unknown
+	 */
+	public static int parseDayOfWeek(String dayOfWeek)
+			throws SplusParseException {
+		if(dayOfWeek != null) {
+			switch(dayOfWeek) {
+			case "Mo": return 1;
+			case "Di": return 2;
+			case "Mi": return 3;
+			case "Do": return 4;
+			case "Fr": return 5;
+			case "Sa": return 6;
+			case "So": return 7;
+			}
+		}
+
+		throw new SplusParseException("Unknown weekday \"" + dayOfWeek + "\"");
+	}
+
+	/**
+	 * Reads a time of the form "HH:mm" or "H:mm".
+	 *
+	 * @param time                   The time
+	 * @return                       The minutes since midnight
+	 * @throws SplusParseException   If the time can't be read
+	 */
+	public static int parseMinuteOfDay(CharSequence time)
+			throws SplusParseException {
+		int length = time == null ? 0 : time.length();
+		int colon = length - 3;
+
+		if(colon < 1 || colon > 2 || time.charAt(colon) != ':') {
+			throw new SplusParseException("Invalid time \"" + time + "\"");
+		}
+
+		int hours = 0;
+		for(int i = 0; i < colon; i++) {
+			hours = hours * 10 + digit(time, i);
+		}
+		int minutes = digit(time, colon + 1) * 10 + digit(time, colon + 2);
+
+		if(hours > 24 || minutes > 59) {
+			throw new SplusParseException("Invalid time \"" + time + "\"");
+		}
+
+		return hours * 60 + minutes;
+	}
+
+	private static int digit(CharSequence time, int index)
+			throws SplusParseException {
+		char c = time.charAt(index);
+
+		if(c < '0' || c > '9') {
+			throw new SplusParseException("Invalid time \"" + time + "\"");
+		}
+
+		return c - '0';
+	}
+
+	/**
+	 * Numbers the week of a date the way splus does, counting on past the end
+	 * of the year the semester started in.
+	 *
+	 * @param date             Any day of the week
+	 * @param yearOfFirstWeek  The ISO week year the counting starts in
+	 * @return                 The number of the week, e.g. 54 for the second
+	 *                         week of the following year
+	 */
+	public static int weekOf(LocalDate date, int yearOfFirstWeek) {
+		int year = date.get(IsoFields.WEEK_BASED_YEAR);
+		int week = date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+
+		for(int counted = yearOfFirstWeek; counted < year; counted++) {
+			week += weeksInYear(counted);
+		}
+
+		return week;
+	}
+
+	/**
+	 * Prepares the dates of a week of the timetable.
+	 *
+	 * splus keeps counting the weeks of a semester reaching into the next
+	 * year, e.g. 53, 54, ..., so those are mapped back into the next year.
+	 *
+	 * @param year             The year of the week, taken from the selection
+	 * @param yearOfFirstWeek  The year of the first week of the semester
+	 * @param week             The number of the week as used by splus
+	 * @return                 The dates of the week
+	 */
+	public Week week(int year, int yearOfFirstWeek, int week) {
+		if(year != yearOfFirstWeek) {
+			int weeksOfFirstYear = weeksInYear(yearOfFirstWeek);
+			if(week > weeksOfFirstYear)
+				week = week - weeksOfFirstYear;
+		}
+
+		return new Week(zone, firstMonday(year) + (week - 1) * 7L);
+	}
+
+	/**
+	 * Prepares the dates of a week of the timetable whose year isn't
+	 * selected, e.g. one of several weeks on a single page.
+	 *
+	 * @param yearOfFirstWeek  The year of the first week of the semester
+	 * @param week             The number of the week as used by splus
+	 * @return                 The dates of the week
+	 */
+	public Week week(int yearOfFirstWeek, int week) {
+		int year = week > weeksInYear(yearOfFirstWeek)
+				? yearOfFirstWeek + 1 : yearOfFirstWeek;
+
+		return week(year, yearOfFirstWeek, week);
+	}
+
+	/**
+	 * The seven days of one week with the offsets of the time zone already
+	 * looked up.
+	 */
+	public static final class Week {
+		private final ZoneId zone;
+		private final long monday;
+		private final long[] midnight = new long[7];
+		//offset of the whole day or Integer.MIN_VALUE if it changes that day
+		private final int[] offset = new int[7];
+
+		private Week(ZoneId zone, long monday) {
+			this.zone = zone;
+			this.monday = monday;
+
+			ZoneRules rules = zone.getRules();
+
+			for(int day = 0; day < 7; day++) {
+				LocalDate date = LocalDate.ofEpochDay(monday + day);
+				midnight[day] = (monday + day) * 86400L;
+
+				ZoneOffset start = rules.getOffset(date.atStartOfDay());
+				ZoneOffset end = rules.getOffset(date.plusDays(1).atStartOfDay());
+
+				offset[day] = start.equals(end) 
+						? start.getTotalSeconds() : Integer.MIN_VALUE;
+			}
+		}
+
+		/**
+		 * @return the monday of this week
+		 */
+		public LocalDate getMonday() {
+			return LocalDate.ofEpochDay(monday);
+		}
+
+		/**
+		 * @param dayOfWeek    1 for monday to 7 for sunday
+		 * @param minuteOfDay  The minutes since midnight
+		 * @return             The point in time in milliseconds since the epoch
+		 */
+		public long toEpochMilli(int dayOfWeek, int minuteOfDay) {
+			int day = dayOfWeek - 1;
+
+			if(offset[day] != Integer.MIN_VALUE) {
+				return (midnight[day] + minuteOfDay * 60L - offset[day]) * 1000L;
+			}
+
+			//the clocks are changed on this day
+			LocalDateTime local = LocalDate.ofEpochDay(monday + day)
+					.atStartOfDay().plusMinutes(minuteOfDay);
+			return ZonedDateTime.ofLocal(local, zone, null)
+					.toInstant().toEpochMilli();
+		}
+	}
+}
@@ -9,8 +9,18 @@ import java.util.Date;
  * @author Ole Goes
  */
 public final class SplusEvent implements Comparable<SplusEvent> {
-	private final Date start;
-	private final Date end;
+	private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 0x100000001B3L;
+	
+	/**
+	 * Returned by {@link #getStartMillis()} and {@link #getEndMillis()} for a
+	 * missing start or end.
+	 */
+	public static final long NO_DATE = Long.MIN_VALUE;
+	
+	//kept as milliseconds, so the event is immutable and a single object
+	private final long start;
+	private final long end;
 	
 	private final String title;
 	private final String description;
@@ -26,8 +36,29 @@ public final class SplusEvent implements Comparable<SplusEvent> {
 			String location, 
 			String presenter
 			) {
-		this.start = start;
-		this.end = end;
+		this(start == null ? NO_DATE : start.getTime(),
+				end == null ? NO_DATE : end.getTime(),
+				title, description, location, presenter);
+	}
+	
+	/**
+	 * @param startMillis  The start in milliseconds since the epoch
+	 * @param endMillis    The end in milliseconds since the epoch
+	 * @param title        The title or headline
+	 * @param description  The description
+	 * @param location     The location
+	 * @param presenter    The presenter
+	 */
+	public SplusEvent(
+			long startMillis, 
+			long endMillis, 
+			String title, 
+			String description, 
+			String location, 
+			String presenter
+			) {
+		this.start = startMillis;
+		this.end = endMillis;
 		this.title = title;
 		this.description = description;
 		this.location = location;
@@ -36,16 +67,32 @@ public final class SplusEvent implements Comparable<SplusEvent> {
 
 	
 	/**
-	 * @return the Date object representing the start of the event
+	 * @return a new Date object representing the start of the event
 	 */
 	public Date getStart() {
-		return start;
+		return start == NO_DATE ? null : new Date(start);
 	}
 
 	/**
-	 * @return the Date object representing the end of the event
+	 * @return a new Date object representing the end of the event
 	 */
 	public Date getEnd() {
+		return end == NO_DATE ? null : new Date(end);
+	}
+	
+	/**
+	 * @return the start of the event in milliseconds since the epoch or
+	 *         {@link #NO_DATE}
+	 */
+	public long getStartMillis() {
+		return start;
+	}
+	
+	/**
+	 * @return the end of the event in milliseconds since the epoch or
+	 *         {@link #NO_DATE}
+	 */
+	public long getEndMillis() {
 		return end;
 	}
 
@@ -79,10 +126,55 @@ public final class SplusEvent implements Comparable<SplusEvent> {
 		return presenter;
 	}
 	
+	/**
+	 * A hash of everything shown about the event: start, end, title,
+	 * description, location and presenter.
+	 * 
+	 * Unlike hashCode it is the same in every run of every JVM, so it can be
+	 * stored and compared against the event fetched the next time.
+	 * 
+	 * @return the 64 bit FNV-1a hash of the fields of the event
+	 */
+	public long getContentHash() {
+		long hash = FNV_OFFSET;
+		
+		hash = mix(hash, start);
+		hash = mix(hash, end);
+		hash = mix(hash, title);
+		hash = mix(hash, description);
+		hash = mix(hash, location);
+		hash = mix(hash, presenter);
+		
+		return hash;
+	}
+	
+	private static long mix(long hash, long value) {
+		for(int shift = 56; shift >= 0; shift -= 8) {
+			hash = (hash ^ (value >>> shift & 0xFF)) * FNV_PRIME;
+		}
+		return hash;
+	}
+	
+	private static long mix(long hash, String value) {
+		if(value == null) {
+			//differs from an empty string
+			return mix(hash, -1L);
+		}
+		
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+			hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+		}
+		
+		//the length keeps "ab","c" apart from "a","bc"
+		return mix(hash, value.length());
+	}
+	
 	public String toString() {
 		return System.lineSeparator()
-		+ "Begin:\t" + start + System.lineSeparator()
-		+ "End:\t" + end + System.lineSeparator()
+		+ "Begin:\t" + getStart() + System.lineSeparator()
+		+ "End:\t" + getEnd() + System.lineSeparator()
 		+ "Title:\t" + title + System.lineSeparator()
 		+ "Description:\t" + description + System.lineSeparator()
 		+ "Location:\t" + location + System.lineSeparator()
@@ -91,6 +183,6 @@ public final class SplusEvent implements Comparable<SplusEvent> {
 
 	@Override
 	public int compareTo(SplusEvent o) {
-		return start.compareTo(o.start);
+		return Long.compare(start, o.start);
 	}
 }
@@ -1,24 +1,56 @@
 package de.ole.splusreader.logic;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.IsoFields;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
-import org.jsoup.Jsoup;
+import org.jsoup.HttpStatusException;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import de.ole.splusreader.logic.cache.DiskResponseCache;
+import de.ole.splusreader.logic.cache.DiskResponseCache.PageType;
+import de.ole.splusreader.logic.cache.WeekCache;
+import de.ole.splusreader.logic.diff.Snapshot;
+import de.ole.splusreader.logic.diff.WeekSnapshot;
+import de.ole.splusreader.logic.metrics.MetricsListener;
+import de.ole.splusreader.logic.store.EventStore;
+import de.ole.splusreader.logic.transport.PooledHttpTransport;
+import de.ole.splusreader.logic.transport.SplusRequest;
+import de.ole.splusreader.logic.transport.SplusResponse;
+import de.ole.splusreader.logic.transport.SplusTransport;
+
 /**
  * This Class extracts data from the ostfalia splus calendar
  * (http://splus.ostfalia.de/) into according SplusEvent objects.
@@ -28,23 +60,123 @@ import org.jsoup.select.Elements;
  * 
  * If there are not sufficient options selected, trying to get data will raise
  * a MissingSettingException which is pretty self explanatory.
- * 
+ *
+ * Every method fetching options or events also takes a {@link Selection}.
+ * Once configured, a single factory can serve many threads this way, sharing
+ * its connections and caches, while the setters change the one selection
+ * used by the methods taking none.
+ *
  * @author Ole Goes
  */
 public class SplusEventFactory {
 	
-	private Option faculty;
-	private Option plan;
-	private Option studyPath;
-	private Option group;
+	//The selection used by the methods taking none
+	private volatile Selection selection = Selection.EMPTY;
+	
+	//The address of splus, every option value is relative to it
+	private volatile String baseUrl = "http://splus.ostfalia.de/";
+	
+	//Carries the requests to splus
+	private volatile SplusTransport transport = new PooledHttpTransport();
 	
 	//A cache at least for the faculty list
-	private List<Option> faculties;
+	private volatile List<Option> faculties;
+	
+	//The year splus counts the weeks from, by key of the selection
+	private final Map<String, Integer> firstYears = new ConcurrentHashMap<>();
+	
+	//The only group of every study path of a "Studentensetpläne" plan
+	private final Map<Selection, Option> onlyGroups = 
+			new ConcurrentHashMap<>();
+	
+	//An optional snapshot of all options replacing their live lists
+	private volatile OptionCatalog catalog;
+	
+	//An optional cache for all fetched pages
+	private volatile DiskResponseCache responseCache;
+	
+	//Turns weeks, weekdays and times into dates
+	private volatile SplusDateCalculator dateCalculator = 
+			new SplusDateCalculator();
+	
+	//An optional cache for the events of recently requested weeks
+	private volatile WeekCache weekCache;
+	
+	//Gets told how long requests, parsing and writing take
+	private volatile MetricsListener metricsListener = MetricsListener.NONE;
+	
+	//An optional store on disk for all fetched weeks
+	private volatile EventStore eventStore;
+	
+	//The most weeks of a range asked for in a single request
+	private volatile int weeksPerRequest = 7;
+	
+	//How long a plan is asked for every week alone once splus didn't answer
+	//several weeks at once as expected
+	private static final long MULTI_WEEK_RETRY_MILLIS = 
+			TimeUnit.HOURS.toMillis(1);
+	
+	//The time until which every week is asked for alone, by base URL and plan
+	private final Map<String, Long> multiWeekRejected = 
+			new ConcurrentHashMap<>();
+	
+	//Fails async calls that miss their deadline
+	private static final ScheduledExecutorService DEADLINES = 
+			Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "splus-deadlines");
+				thread.setDaemon(true);
+				return thread;
+			});
+	
+	/**
+	 * A blocking call run by the async methods.
+	 */
+	private interface Call<T> {
+		T call() throws MissingSettingException, IOException;
+	}
+	
+	private SplusResponse fetchResponse(SplusRequest request, PageType type) 
+			throws IOException {
+		DiskResponseCache responseCache = this.responseCache;
+		
+		if(responseCache == null) {
+			return execute(request).checkStatus();
+		}
+		
+		//only the requests actually reaching splus are measured
+		return responseCache.get(request, type, this::execute);
+	}
+	
+	private SplusResponse execute(SplusRequest request) throws IOException {
+		MetricsListener listener = metricsListener;
+		long start = System.nanoTime();
+		SplusResponse response;
+		
+		try {
+			response = transport.execute(request);
+		} catch (IOException e) {
+			listener.requestFailed(request, e, System.nanoTime() - start);
+			throw e;
+		}
+		
+		listener.requestCompleted(request, response.getStatusCode(), 
+				response.getBody().length, System.nanoTime() - start);
+		return response;
+	}
+	
+	private Document fetch(SplusRequest request, PageType type) 
+			throws IOException {
+		return fetchResponse(request, type).parse();
+	}
+	
+	private Document fetchPage(URL url) throws IOException {
+		return fetch(SplusRequest.get(url.toExternalForm()), PageType.CATALOG);
+	}
 	
-	private static List<Option> getHyperlinkListFromURL(URL url) 
+	private List<Option> getHyperlinkListFromURL(URL url) 
 			throws IOException{
 		List<Option> list = new ArrayList<>();
-		Document doc = Jsoup.parse(url, 1000);
+		Document doc = fetchPage(url);
 
 		for(Element liElement:doc.getElementsByTag("li")) {
 			Element element = liElement.getElementsByAttribute("href").first();
@@ -70,78 +202,19 @@ public class SplusEventFactory {
 		return null;
 	}
 	
-	private static int giveNumberOfWeeksForYear(String year) {
-		return giveNumberOfWeeksForYear(Integer.parseInt(year));
-	}
-	
-	private static int giveNumberOfWeeksForYear(int year) {
-		Calendar calendar = Calendar.getInstance();
-		calendar.set(Calendar.YEAR, year);
-		return calendar.getWeeksInWeekYear();
-		
-	}
-	
-	private static SplusEvent getEventFromStrings(
-			String dayOfWeek,
-			String title,
-			String description,
-			String presenter,
-			String location,
-			String time,
-			String year,
-			String yearOfFirstWeek,
-			int lengthInMinutes,
-			int week) {
-				
-		if(!year.equals(yearOfFirstWeek)) {
-			int numberOfWeeksOfFirstYear = giveNumberOfWeeksForYear(yearOfFirstWeek);
-			if(week > numberOfWeeksOfFirstYear)
-				week = week - numberOfWeeksOfFirstYear;
-		}
-		
-		Map<String, Integer> weekDayToNumber = new HashMap<>();
-		weekDayToNumber.put("Mo", 1);
-		weekDayToNumber.put("Di", 2);
-		weekDayToNumber.put("Mi", 3);
-		weekDayToNumber.put("Do", 4);
-		weekDayToNumber.put("Fr", 5);
-		weekDayToNumber.put("Sa", 6);
-		
-		DateFormat format = new SimpleDateFormat("ww u kk:mm yyyy", Locale.GERMAN);
-		
-		String weekNumber = String.valueOf(week);
-		
-		if(weekNumber.length() == 1)
-			weekNumber = "0" + weekNumber;
-		
-		String dayOfWeekNumber = String.valueOf(weekDayToNumber.get(dayOfWeek));
-		
-		Date begin = null;
-		try {
-			begin = format.parse(weekNumber + " " + dayOfWeekNumber + " " + time + " " + year);
-		} catch (ParseException e) {
-			e.printStackTrace();
-		}
-		Date end = null;
-		
-		if(begin != null) {
-			Calendar cal = Calendar.getInstance();
-			cal.setTime(begin);
-			cal.add(Calendar.MINUTE, lengthInMinutes);
-			end = cal.getTime();
-		}
-		
-		return new SplusEvent(begin, end, title, description, location, presenter);
-	}
-	
 	/**
 	 * @return              A list of Faculties to choose from
 	 * @throws IOException  If there is no connection to splus.ostfalia.de for whatever reason
 	 */
 	public List<Option> getFaculties() throws IOException {
+		OptionCatalog catalog = this.catalog;
+		
+		if(catalog != null)
+			return catalog.getFaculties();
+		
 		if(this.faculties == null)
 			faculties = getHyperlinkListFromURL(
-					new URL("http://splus.ostfalia.de/")
+					new URL(baseUrl)
 					);
 
 		return faculties;
@@ -179,12 +252,32 @@ public class SplusEventFactory {
 	 */
 	public List<Option> getPlans() 
 			throws IOException, MissingSettingException {
+		return getPlans(selection);
+	}
+	
+	/**
+	 * @param selection                  The selection with a faculty
+	 * @return                           A list of plans to choose from
+	 * @throws IOException               If there is no connection to splus.ostfalia.de for whatever reason
+	 * @throws MissingSettingException   If the selection has no faculty
+	 */
+	public List<Option> getPlans(Selection selection) 
+			throws IOException, MissingSettingException {
+		Option faculty = selection.getFaculty();
+		
 		if(faculty == null) {
 			throw new MissingSettingException();
 		}		
 		
+		OptionCatalog catalog = this.catalog;
+		List<Option> fromCatalog = catalog == null 
+				? null : catalog.getPlans(faculty);
+		
+		if(fromCatalog != null)
+			return fromCatalog;
+		
 		return getHyperlinkListFromURL(
-				new URL("http://splus.ostfalia.de/" + faculty.getValue())
+				new URL(baseUrl + faculty.getValue())
 				);
 	}
 	
@@ -196,18 +289,37 @@ public class SplusEventFactory {
 	 */
 	public List<Option> getStudyPaths() 
 			throws MissingSettingException, IOException {
+		return getStudyPaths(selection);
+	}
+	
+	/**
+	 * @param selection                 The selection with a plan
+	 * @return                          A list of study paths to choose from
+	 * @throws MissingSettingException  If the selection has no plan
+	 * @throws IOException              If there is no connection to
+	 *                                  splus.ostfalia.de for whatever reason
+	 */
+	public List<Option> getStudyPaths(Selection selection) 
+			throws MissingSettingException, IOException {
 		List<Option> list = new ArrayList<>();
+		Option plan = selection.getPlan();
 		
 		if(plan == null) {
 			throw new MissingSettingException();
 		}
 		
-		Document doc = Jsoup.parse(
-				new URL("http://splus.ostfalia.de/" + plan.getValue())
-				, 1000
+		OptionCatalog catalog = this.catalog;
+		List<Option> fromCatalog = catalog == null 
+				? null : catalog.getStudyPaths(selection.getFaculty(), plan);
+		
+		if(fromCatalog != null)
+			return fromCatalog;
+		
+		Document doc = fetchPage(
+				new URL(baseUrl + plan.getValue())
 				);
 		
-		if(plan.getTitle().equals("Studentensetpläne")) {
+		if(selection.hasGroups()) {
 			return getOptionsFromForm(doc, "formfilter");
 		}
 		
@@ -227,36 +339,434 @@ public class SplusEventFactory {
 	 */
 	public List<Option> getGroups() 
 			throws MissingSettingException, IOException {
+		return getGroups(selection);
+	}
+	
+	/**
+	 * @param selection                 The selection with a plan and study
+	 *                                  path
+	 * @return                          A list of groups to choose from
+	 * @throws MissingSettingException  If the selection has no study path or
+	 *                                  plan
+	 * @throws IOException              If there is no connection to 
+	 *                                  splus.ostfalia.de for whatever reason
+	 */
+	public List<Option> getGroups(Selection selection) 
+			throws MissingSettingException, IOException {
+		Option plan = selection.getPlan();
+		Option studyPath = selection.getStudyPath();
 		
 		if(plan == null || studyPath == null) {
 			throw new MissingSettingException();
 		}
 		
-		String url = "http://splus.ostfalia.de/"
-				+ plan.getValue();
+		OptionCatalog catalog = this.catalog;
+		List<Option> fromCatalog = catalog == null 
+				? null : catalog.getGroups(
+						selection.getFaculty(), plan, studyPath);
+		
+		if(fromCatalog != null)
+			return fromCatalog;
+		
+		String url = baseUrl + plan.getValue();
 
-		Document doc = 
-				Jsoup.connect(url)
-				.data("filter", studyPath.getValue())
-				.post();
+		Document doc = fetch(
+				SplusRequest.post(url)
+				.data("filter", studyPath.getValue()),
+				PageType.CATALOG);
 		
 		List<Option> list = getOptionsFromForm(doc, "form33");
 					
 		return list;
 	}
 	
+	/**
+	 * Fetches every faculty, plan, study path and group offered by splus.
+	 * 
+	 * The selection of this factory is not changed and the catalog it may 
+	 * use is ignored, so the crawl always reflects the live site. This takes
+	 * many requests and is meant to be done rarely, saving the result with
+	 * OptionCatalog.save.
+	 * 
+	 * @return              A snapshot of all options
+	 * @throws IOException  If there is no connection to 
+	 *                      splus.ostfalia.de for whatever reason
+	 */
+	public OptionCatalog crawlCatalog() throws IOException {
+		SplusEventFactory worker = new SplusEventFactory();
+		worker.setBaseUrl(baseUrl);
+		worker.setTransport(transport);
+		worker.setResponseCache(responseCache);
+		worker.setMetricsListener(metricsListener);
+		
+		long createdAt = System.currentTimeMillis();
+		List<OptionCatalog.Node> facultyNodes = new ArrayList<>();
+		
+		try {
+			for(Option facultyOption:worker.getFaculties()) {
+				Selection faculty = Selection.EMPTY.withFaculty(facultyOption);
+				List<OptionCatalog.Node> planNodes = new ArrayList<>();
+				
+				for(Option planOption:worker.getPlans(faculty)) {
+					Selection plan = faculty.withPlan(planOption);
+					List<OptionCatalog.Node> studyPathNodes = new ArrayList<>();
+					boolean hasGroups = 
+							planOption.getTitle().equals("Studentensetpläne");
+					
+					for(Option studyPathOption:worker.getStudyPaths(plan)) {
+						Selection studyPath = plan.withStudyPath(studyPathOption);
+						List<OptionCatalog.Node> groupNodes = new ArrayList<>();
+						
+						if(hasGroups) {
+							for(Option groupOption:worker.getGroups(studyPath)) {
+								groupNodes.add(new OptionCatalog.Node(
+										groupOption, 
+										Collections.emptyList()));
+							}
+						}
+						
+						studyPathNodes.add(
+								new OptionCatalog.Node(studyPathOption, groupNodes));
+					}
+					
+					planNodes.add(new OptionCatalog.Node(planOption, studyPathNodes));
+				}
+				
+				facultyNodes.add(new OptionCatalog.Node(facultyOption, planNodes));
+			}
+		} catch (MissingSettingException e) {
+			//every setting is made right before it is needed
+			throw new IllegalStateException(e);
+		}
+		
+		return new OptionCatalog(createdAt, facultyNodes);
+	}
+	
+	/**
+	 * Crawls a new catalog on the given executor and uses it as soon as it is
+	 * complete. Until then the current catalog stays in use.
+	 * 
+	 * @param executor  The executor running the crawl
+	 * @param file      The file the new catalog is saved to or null
+	 * @return          A future completed with the new catalog
+	 */
+	public CompletableFuture<OptionCatalog> refreshCatalog(
+			Executor executor, File file) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				OptionCatalog crawled = crawlCatalog();
+				
+				if(file != null)
+					crawled.save(file);
+				
+				this.catalog = crawled;
+				return crawled;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, executor);
+	}
+	
+	/**
+	 * @param maxAgeMillis  The age up to which a catalog is trusted
+	 * @return              true if there is no catalog or it is older than 
+	 *                      maxAgeMillis
+	 */
+	public boolean isCatalogStale(long maxAgeMillis) {
+		OptionCatalog catalog = this.catalog;
+		return catalog == null || catalog.isOlderThan(maxAgeMillis);
+	}
+	
+	/**
+	 * @return the snapshot of all options in use or null if the options are
+	 *         fetched live
+	 */
+	public OptionCatalog getCatalog() {
+		return catalog;
+	}
+	
+	/**
+	 * Options missing from the catalog, e.g. a study path added after it was
+	 * crawled, are still fetched live.
+	 * 
+	 * @param catalog the snapshot of all options to be used, null to fetch 
+	 *                them live
+	 */
+	public void setCatalog(OptionCatalog catalog) {
+		this.catalog = catalog;
+	}
+	
+	/**
+	 * @return the cache for fetched pages or null if there is none
+	 */
+	public DiskResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	/**
+	 * @param responseCache the cache for fetched pages, null to always ask 
+	 *                      splus.ostfalia.de
+	 */
+	public void setResponseCache(DiskResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+	
+	/**
+	 * @return the address of splus all option values are relative to
+	 */
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	/**
+	 * Points the factory at another splus installation, e.g. a 
+	 * SplusStubServer. Cached faculties are dropped.
+	 * 
+	 * @param baseUrl the address of splus, ending with a slash
+	 */
+	public void setBaseUrl(String baseUrl) {
+		this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+		this.faculties = null;
+	}
+	
+	/**
+	 * @return the transport carrying the requests to splus
+	 */
+	public SplusTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * By default requests are sent over pooled keep-alive connections asking
+	 * for compressed pages, see PooledHttpTransport. A response cache, if 
+	 * set, sits in front of the transport.
+	 * 
+	 * @param transport the transport carrying the requests to splus, e.g. a 
+	 *                  RecordingTransport or a ReplayTransport
+	 */
+	public void setTransport(SplusTransport transport) {
+		this.transport = transport;
+	}
+	
+	/**
+	 * @return the calculator turning the timetable into dates
+	 */
+	public SplusDateCalculator getDateCalculator() {
+		return dateCalculator;
+	}
+
+	/**
+	 * By default dates are calculated in the default time zone of the system.
+	 * Cached weeks are dropped, as their dates were calculated by the 
+	 * calculator before.
+	 * 
+	 * @param dateCalculator the calculator turning the timetable into dates
+	 */
+	public void setDateCalculator(SplusDateCalculator dateCalculator) {
+		this.dateCalculator = dateCalculator;
+		invalidateWeeks();
+	}
+	
+	/**
+	 * @return the cache for the events of single weeks or null if there is 
+	 *         none
+	 */
+	public WeekCache getWeekCache() {
+		return weekCache;
+	}
+
+	/**
+	 * By default there is no cache and every week is asked for again. A 
+	 * cache answers with weeks as old as its time to live, e.g. 
+	 * new WeekCache(128, TimeUnit.MINUTES.toMillis(5)) for the last 128 weeks
+	 * requested within five minutes. It can be shared between factories.
+	 * 
+	 * @param weekCache the cache for the events of single weeks, null to 
+	 *                  parse every week again
+	 */
+	public void setWeekCache(WeekCache weekCache) {
+		this.weekCache = weekCache;
+	}
+	
+	/**
+	 * @return the listener told about every request and parsed week
+	 */
+	public MetricsListener getMetricsListener() {
+		return metricsListener;
+	}
+	
+	/**
+	 * By default nothing is measured.
+	 * 
+	 * @param metricsListener the listener told about every request to splus
+	 *                        and every parsed week, null for none
+	 */
+	public void setMetricsListener(MetricsListener metricsListener) {
+		this.metricsListener = metricsListener == null 
+				? MetricsListener.NONE : metricsListener;
+	}
+	
+	/**
+	 * @return the store on disk for fetched weeks or null if there is none
+	 */
+	public EventStore getEventStore() {
+		return eventStore;
+	}
+	
+	/**
+	 * Every week fetched is put into the store, and
+	 * {@link #getEventsBetweenDates(Date, Date)} takes weeks that are over
+	 * from it without asking splus. By default there is no store.
+	 * 
+	 * @param eventStore the store for fetched weeks, null for none
+	 */
+	public void setEventStore(EventStore eventStore) {
+		this.eventStore = eventStore;
+	}
+	
+	/**
+	 * @return the most weeks of a range asked for in a single request
+	 */
+	public int getWeeksPerRequest() {
+		return weeksPerRequest;
+	}
+	
+	/**
+	 * The methods fetching a range of weeks one after another ask splus for
+	 * up to this many weeks not cached yet in a single request, 7 by default.
+	 * If splus doesn't answer such a request with a timetable for every week,
+	 * this factory asks for every week of that plan alone for an hour. The 
+	 * methods fetching weeks in parallel always ask for every week alone.
+	 * 
+	 * @param weeksPerRequest the most weeks asked for at once, 1 to ask for 
+	 *                        every week alone
+	 */
+	public void setWeeksPerRequest(int weeksPerRequest) {
+		if(weeksPerRequest < 1) {
+			throw new IllegalArgumentException(
+					"weeksPerRequest must be at least 1");
+		}
+		this.weeksPerRequest = weeksPerRequest;
+	}
+	
+	/**
+	 * Drops the cached events of a week of the current selection, so the next
+	 * request fetches it again.
+	 * 
+	 * @param week the number of the week in the year
+	 */
+	public void invalidateWeek(int week) {
+		invalidateWeek(selection, week);
+	}
+	
+	/**
+	 * Drops the cached events of a week of a selection, so the next request
+	 * fetches it again.
+	 * 
+	 * @param selection  The selection of the week
+	 * @param week       The number of the week in the year
+	 */
+	public void invalidateWeek(Selection selection, int week) {
+		Option group = selection.getGroup();
+		
+		//weeks are cached with the group chosen automatically
+		if(group == null) {
+			group = onlyGroups.get(selection);
+		}
+		
+		WeekCache weekCache = this.weekCache;
+		if(weekCache != null) {
+			weekCache.invalidate(new WeekCache.Key(baseUrl, 
+					selection.getPlan(), selection.getStudyPath(), group, week));
+		}
+	}
+	
+	/**
+	 * Drops the cached events of all weeks.
+	 */
+	public void invalidateWeeks() {
+		WeekCache weekCache = this.weekCache;
+		if(weekCache != null) {
+			weekCache.invalidateAll();
+		}
+	}
+	
+	/**
+	 * @return the selection used by the methods taking none
+	 */
+	public Selection getSelection() {
+		return selection;
+	}
+	
+	/**
+	 * The setters for faculty, plan, study path and group change this 
+	 * selection. A factory shared by several threads should be used with
+	 * selections of their own instead.
+	 * 
+	 * @param selection the selection used by the methods taking none
+	 */
+	public void setSelection(Selection selection) {
+		this.selection = selection == null ? Selection.EMPTY : selection;
+	}
+	
+	/**
+	 * Chooses options by their titles.
+	 * 
+	 * @param faculty                   The title of the faculty
+	 * @param plan                      The title of the plan
+	 * @param studyPath                 The title of the study path
+	 * @param group                     The title of the group or null to 
+	 *                                  choose the only group automatically
+	 * @return                          The selection of the options
+	 * @throws MissingSettingException  If one of the titles isn't offered
+	 * @throws IOException              If there is no connection to 
+	 *                                  splus.ostfalia.de for whatever reason
+	 */
+	public Selection select(
+			String faculty, 
+			String plan, 
+			String studyPath, 
+			String group) 
+			throws MissingSettingException, IOException {
+		Selection selection = Selection.EMPTY.withFaculty(
+				find(getFaculties(), faculty, "faculty"));
+		selection = selection.withPlan(
+				find(getPlans(selection), plan, "plan"));
+		selection = selection.withStudyPath(
+				find(getStudyPaths(selection), studyPath, "study path"));
+		
+		if(group != null) {
+			selection = selection.withGroup(
+					find(getGroups(selection), group, "group"));
+		}
+		
+		return selection;
+	}
+	
+	private static Option find(List<Option> options, String title, String kind)
+			throws MissingSettingException {
+		Option option = getOptionFromListWhereString(options, title);
+		
+		if(option == null) {
+			throw new MissingSettingException(
+					"There is no " + kind + " \"" + title + "\"");
+		}
+		
+		return option;
+	}
+	
 	/**
 	 * @return the chosen faculty
 	 */
 	public Option getFaculty() {
-		return faculty;
+		return selection.getFaculty();
 	}
 
 	/**
 	 * @param faculty the faculty option to be set
 	 */
-	public void setFaculty(Option faculty) {
-		this.faculty = faculty;
+	public synchronized void setFaculty(Option faculty) {
+		selection = selection.withFaculty(faculty);
 	}
 	
 	/**
@@ -286,14 +796,14 @@ public class SplusEventFactory {
 	 * @return the kind of plan to be fetched
 	 */
 	public Option getPlan() {
-		return plan;
+		return selection.getPlan();
 	}
 	
 	/**
 	 * @param plan the kind of plan to be set
 	 */
-	public void setPlan(Option plan) {
-		this.plan = plan;
+	public synchronized void setPlan(Option plan) {
+		selection = selection.withPlan(plan);
 	}
 	
 	/**
@@ -324,15 +834,15 @@ public class SplusEventFactory {
 	 * @return the chosen study path.
 	 */
 	public Option getStudyPath() {
-		return studyPath;
+		return selection.getStudyPath();
 	}
 	
 	
 	/**
 	 * @param studyPath the study path to be set
 	 */
-	public void setStudyPath(Option studyPath) {
-		this.studyPath = studyPath;
+	public synchronized void setStudyPath(Option studyPath) {
+		selection = selection.withStudyPath(studyPath);
 	}
 	
 	/**
@@ -364,14 +874,14 @@ public class SplusEventFactory {
 	 * @return The chosen group
 	 */
 	public Option getGroup() {
-		return group;
+		return selection.getGroup();
 	}
 	
 	/**
 	 * @param The group to be set
 	 */
-	public void setGroup(Option group) {
-		this.group = group;
+	public synchronized void setGroup(Option group) {
+		selection = selection.withGroup(group);
 	}
 	
 	/**
@@ -399,47 +909,67 @@ public class SplusEventFactory {
 		setGroup(getGroups().get(number));
 	}
 	
-	private Document getDocumentFromWeek(int week) 
+	/**
+	 * Checks that the selection is complete enough to fetch weeks and chooses
+	 * the group automatically if the selected study path of a
+	 * "Studentensetpläne" plan offers exactly one. The choice is remembered
+	 * for every selection, so it is looked up only once.
+	 * 
+	 * @return the selection with the group chosen if necessary
+	 */
+	private Selection resolve(Selection selection) 
 			throws MissingSettingException, IOException {
-		if(plan == null || studyPath == null) {
+		if(selection.getPlan() == null || selection.getStudyPath() == null) {
 			throw new MissingSettingException();
 		}
 		
-		String url = "http://splus.ostfalia.de/"
-				+ plan.getValue();
+		if(!selection.hasGroups() || selection.getGroup() != null) {
+			return selection;
+		}
 		
-		if(plan.getTitle().equals("Studentensetpläne")) {			
-			if(group == null) {
-				Document doc = 
-						Jsoup.connect(url)
-						.data("filter", studyPath.getValue())
-						.post();
-
-				List<Option> optionsFromForm = getOptionsFromForm(doc, "form33");
-				
-				if(optionsFromForm.size() == 2) {
-					group = optionsFromForm.get(1);
-				}
-				else
-					throw new MissingSettingException();
-				
+		Option group = onlyGroups.get(selection);
+		
+		if(group == null) {
+			List<Option> optionsFromForm = getGroups(selection);
+			
+			if(optionsFromForm.size() != 2) {
+				throw new MissingSettingException();
 			}
-
-			return Jsoup.connect(url)
-					
+			
+			group = optionsFromForm.get(1);
+			onlyGroups.put(selection, group);
+		}
+		
+		return selection.withGroup(group);
+	}
+	
+	/**
+	 * @param weeks  One week or several separated by ";"
+	 */
+	private SplusResponse getResponseFromWeeks(Selection resolved, String weeks) 
+			throws MissingSettingException, IOException {
+		Option plan = resolved.getPlan();
+		Option studyPath = resolved.getStudyPath();
+		String url = baseUrl + plan.getValue();
+		
+		if(resolved.hasGroups()) {
+			Option group = resolved.getGroup();
+			
+			return fetchResponse(SplusRequest.post(url)
 					.data("identifier%5B%5D", 
 							group.getValue().replace("#", "%23"))
 					.data("filter", studyPath.getValue())
-					.data("weeks",String.valueOf(week))
-					.post();
+					.data("weeks", weeks),
+					PageType.WEEK);
 		}
 		
 		url = url 
 				+ "&identifier="
 				+ studyPath.getValue().replace("#", "%23");
 		
-		return Jsoup.connect(url)
-				.data("weeks",String.valueOf(week)).post();
+		return fetchResponse(SplusRequest.post(url)
+				.data("weeks", weeks),
+				PageType.WEEK);
 	}
 	
 	/**
@@ -455,101 +985,396 @@ public class SplusEventFactory {
 	 */
 	public List<SplusEvent> getEventsFromWeek(int week) 
 			throws MissingSettingException, IOException {
-
-		List<SplusEvent> listOfEvents = new ArrayList<>();
-		Document doc = getDocumentFromWeek(week);
+		return getEventsFromWeek(selection, week);
+	}
+	
+	/**
+	 * Returns a list of events from a certain week of a selection.
+	 * 
+	 * @param selection                 The selection of the timetable
+	 * @param week                      The number of the week in the year
+	 * @return                          The list of events in that week
+	 * @throws MissingSettingException  If the selection has no plan or study
+	 *                                  path or, if there is more than one,
+	 *                                  no group. 
+	 * @throws IOException              If there is no connection to 
+	 *                                  splus.ostfalia.de for whatever reason
+	 */
+	public List<SplusEvent> getEventsFromWeek(Selection selection, int week) 
+			throws MissingSettingException, IOException {
+		//the group belongs to the key, so it has to be known beforehand
+		Selection resolved = resolve(selection);
+		WeekCache weekCache = this.weekCache;
 		
-		//get Year of selection and year of first week
-		Elements weeks = doc.getElementsByAttributeValue("name", "weeks")
-				.first().getElementsByTag("option");
+		if(weekCache == null) {
+			return loadEventsFromWeek(resolved, week);
+		}
 		
-		String yearOfFirstWeek = weeks.first().text();
-			   yearOfFirstWeek = yearOfFirstWeek.substring(yearOfFirstWeek.length() -10, yearOfFirstWeek.length() -6);
+		return new ArrayList<>(weekCache.get(
+				new WeekCache.Key(baseUrl, resolved.getPlan(), 
+						resolved.getStudyPath(), resolved.getGroup(), week),
+				() -> loadEventsFromWeek(resolved, week)));
+	}
+	
+	private List<SplusEvent> loadEventsFromWeek(Selection resolved, int week) 
+			throws MissingSettingException, IOException {
 
-			   String year = null;
-				
-		for(Element option: weeks) {
-			if(option.hasAttr("selected")) {
-				year = option.text();
-				year = year.substring(year.length() - 11, year.length() - 7);
-			}
+		SplusResponse response = 
+				getResponseFromWeeks(resolved, String.valueOf(week));
+		long start = System.nanoTime();
+		SplusDateCalculator dateCalculator = this.dateCalculator;
+		
+		//only the week selector and the timetable are read, as they stream by
+		StreamingWeekParser.Page page = new StreamingWeekParser(dateCalculator)
+				.parsePage(response, week);
+		List<SplusEvent> events = page.events.get(0);
+		
+		metricsListener.weekParsed(week, events.size(), 
+				System.nanoTime() - start);
+		
+		String key = keyOf(resolved);
+		firstYears.put(key, page.yearOfFirstWeek);
+		
+		EventStore store = eventStore;
+		if(store != null) {
+			store.setYearOfFirstWeek(key, page.yearOfFirstWeek);
+			store.put(key, dateCalculator.week(page.yearOfFirstWeek, week)
+					.getMonday(), events);
 		}
 		
+		return events;
+	}
+	
+	/**
+	 * Returns the events of several weeks, asking splus for up to 
+	 * weeksPerRequest of the weeks not cached yet in a single request.
+	 * 
+	 * @return the events of every week, in the order of the weeks
+	 */
+	private List<List<SplusEvent>> getEventsFromWeeks(
+			Selection resolved, List<Integer> weeks) 
+			throws MissingSettingException, IOException {
+		WeekCache weekCache = this.weekCache;
+		Map<Integer, List<SplusEvent>> found = new HashMap<>();
+		List<Integer> missing = new ArrayList<>();
 		
-		Element table = doc
-				.getElementsByAttributeValue("class", "grid-border-args")
-				.first();
+		for(int week:weeks) {
+			List<SplusEvent> cached = weekCache == null ? null 
+					: weekCache.getIfPresent(new WeekCache.Key(baseUrl,
+							resolved.getPlan(), resolved.getStudyPath(), 
+							resolved.getGroup(), week));
+			
+			if(cached == null) {
+				missing.add(week);
+			} else {
+				found.put(week, new ArrayList<>(cached));
+			}
+		}
 		
-		String time = null;
-		List<String> weekDay = new ArrayList<>();
-		weekDay.add("");
+		int batchSize = weeksPerRequest;
 		
-		//get Event Content
-		for(Element row: table.getElementsByTag("tr")) {
-			for(Element column:row.getElementsByTag("td")) {
-				if(column.hasClass("col-label-one")) {
-					for(int i = 0; i < Integer.parseInt(column.attr("colspan")); i++) {
-						weekDay.add(column.text());
+		for(int i = 0; i < missing.size(); i += batchSize) {
+			List<Integer> batch = 
+					missing.subList(i, Math.min(missing.size(), i + batchSize));
+			
+			if(batch.size() > 1 && acceptsMultiWeek(resolved)) {
+				try {
+					found.putAll(loadEventsFromWeeks(resolved, batch));
+					continue;
+				} catch (MissingWeeksException e) {
+					rejectMultiWeek(resolved);
+				} catch (HttpStatusException e) {
+					//a server error doesn't mean the request was rejected
+					if(e.getStatusCode() >= 500) {
+						throw e;
 					}
+					rejectMultiWeek(resolved);
 				}
-				else if(column.hasClass("row-label-one")) {
-					time = column.text();
-				}
-				else if(column.hasClass("object-cell-border")) {
-					String dayOfWeek = weekDay.get(column.elementSiblingIndex());
-					String title = null;
-					String description = null;
-					String presenter = null;
-					String location = null;
-					int lengthInMinutes = Integer.parseInt(column.attr("rowspan")) * 15;
-
-					for(Element tbody:column.getElementsByTag("tbody")) {
-						for(Element data:tbody.getElementsByTag("td")) {
-							if(data.attr("align").equals("center")) {
-								if(title == null) {
-									title = data.text();
-								}
-								else {
-									description = data.text();
-								}
-							}
-							else if(data.attr("align").equals("left")) {
-								location = data.text();
-							}
-							else {
-								presenter = data.text();
-							}
-						}
-					}
-					
-					// create and add event
-					listOfEvents.add(
-							getEventFromStrings(
-									dayOfWeek,
-									title, 
-									description,
-									presenter,
-									location,
-									time,
-									year,
-									yearOfFirstWeek, 
-									lengthInMinutes, 
-									week));
-					
-				}
 			}
+			
+			for(int week:batch) {
+				found.put(week, getEventsFromWeek(resolved, week));
+			}
+		}
+		
+		List<List<SplusEvent>> events = new ArrayList<>(weeks.size());
+		
+		for(int week:weeks) {
+			events.add(found.get(week));
+		}
+		
+		return events;
+	}
+	
+	/**
+	 * Fetches several weeks in a single request and caches and stores every
+	 * week like a week fetched alone.
+	 * 
+	 * @throws SplusParseException  If the page doesn't have a timetable for 
+	 *                              every week
+	 */
+	private Map<Integer, List<SplusEvent>> loadEventsFromWeeks(
+			Selection resolved, List<Integer> weeks) 
+			throws MissingSettingException, IOException {
+		StringBuilder value = new StringBuilder();
+		int[] numbers = new int[weeks.size()];
+		
+		for(int i = 0; i < numbers.length; i++) {
+			numbers[i] = weeks.get(i);
+			
+			if(i > 0)
+				value.append(';');
+			value.append(numbers[i]);
+		}
+		
+		SplusResponse response = getResponseFromWeeks(resolved, value.toString());
+		long start = System.nanoTime();
+		SplusDateCalculator dateCalculator = this.dateCalculator;
+		
+		StreamingWeekParser.Page page = new StreamingWeekParser(dateCalculator)
+				.parsePage(response, numbers);
+		
+		//the time is shared by the weeks of the page
+		long nanos = (System.nanoTime() - start) / numbers.length;
+		String key = keyOf(resolved);
+		WeekCache weekCache = this.weekCache;
+		EventStore store = eventStore;
+		Map<Integer, List<SplusEvent>> events = new HashMap<>();
+		
+		firstYears.put(key, page.yearOfFirstWeek);
+		if(store != null) {
+			store.setYearOfFirstWeek(key, page.yearOfFirstWeek);
+		}
+		
+		for(int i = 0; i < numbers.length; i++) {
+			List<SplusEvent> week = page.events.get(i);
+			
+			metricsListener.weekParsed(numbers[i], week.size(), nanos);
+			
+			if(store != null) {
+				store.put(key, dateCalculator.week(page.yearOfFirstWeek, 
+						numbers[i]).getMonday(), week);
+			}
+			if(weekCache != null) {
+				weekCache.get(new WeekCache.Key(baseUrl, resolved.getPlan(), 
+						resolved.getStudyPath(), resolved.getGroup(), numbers[i]),
+						() -> week);
+			}
+			
+			events.put(numbers[i], week);
+		}
+		
+		return events;
+	}
+	
+	/**
+	 * @return false if splus recently didn't answer several weeks of the 
+	 *         plan at once
+	 */
+	private boolean acceptsMultiWeek(Selection resolved) {
+		String key = baseUrl + resolved.getPlan().getValue();
+		Long until = multiWeekRejected.get(key);
+		
+		if(until == null) {
+			return true;
+		}
+		if(System.currentTimeMillis() < until) {
+			return false;
+		}
+		
+		multiWeekRejected.remove(key, until);
+		return true;
+	}
+	
+	private void rejectMultiWeek(Selection resolved) {
+		multiWeekRejected.put(baseUrl + resolved.getPlan().getValue(), 
+				System.currentTimeMillis() + MULTI_WEEK_RETRY_MILLIS);
+	}
+	
+	private static List<Integer> range(int firstWeek, int lastWeek) {
+		List<Integer> weeks = new ArrayList<>();
+		
+		for(int week = firstWeek; week <= lastWeek; week++) {
+			weeks.add(week);
+		}
+		
+		return weeks;
+	}
+	
+	/**
+	 * Finds the ISO week year splus counts the weeks of a plan from. Unless a
+	 * page of the plan has been read before or the event store knows the 
+	 * year, the week of the monday is fetched to read it from its week 
+	 * selector: first numbered from the year of the monday, then, for a 
+	 * semester starting the year before, from the year before.
+	 * 
+	 * @param resolved  The selection with its group
+	 * @param monday    A monday the plan is asked about
+	 * @param probed    Gets the events of the monday's week if it is fetched
+	 * @return          The year the plan counts its weeks from
+	 */
+	private int yearOfFirstWeek(
+			Selection resolved, 
+			LocalDate monday, 
+			Map<LocalDate, List<SplusEvent>> probed) 
+			throws MissingSettingException, IOException {
+		String key = keyOf(resolved);
+		Integer known = firstYears.get(key);
+		
+		if(known != null) {
+			return known;
+		}
+		
+		//a year read before a restart is checked by the pages fetched next
+		EventStore store = eventStore;
+		if(store != null && store.getYearOfFirstWeek(key) != 0) {
+			return store.getYearOfFirstWeek(key);
+		}
+		
+		return readYearOfFirstWeek(resolved, monday, probed);
+	}
+	
+	/**
+	 * Fetches the week of the monday to read the year splus counts the weeks
+	 * of the plan from.
+	 * 
+	 * @see #yearOfFirstWeek(Selection, LocalDate, Map)
+	 */
+	private int readYearOfFirstWeek(
+			Selection resolved, 
+			LocalDate monday, 
+			Map<LocalDate, List<SplusEvent>> probed) 
+			throws MissingSettingException, IOException {
+		int year = monday.get(IsoFields.WEEK_BASED_YEAR);
+		int week = SplusDateCalculator.weekOf(monday, year);
+		List<SplusEvent> events;
+		
+		try {
+			events = loadEventsFromWeek(resolved, week);
+		} catch (HttpStatusException | SplusParseException e) {
+			//a week splus doesn't know in a plan started the year before
+			week = SplusDateCalculator.weekOf(monday, year - 1);
+			events = loadEventsFromWeek(resolved, week);
+		}
+		
+		//the week is asked for right after
+		probed.put(monday, events);
+		
+		return firstYears.get(keyOf(resolved));
+	}
+	
+	/**
+	 * @return the key of a resolved selection in the event store
+	 */
+	private static String keyOf(Selection resolved) {
+		Option group = resolved.getGroup();
+		
+		return resolved.getPlan().getValue() + "\n" 
+				+ resolved.getStudyPath().getValue() + "\n"
+				+ (group == null ? "" : group.getValue());
+	}
+	
+	/**
+	 * Fetches a week together with the hash of its content, which stays the
+	 * same as long as the week doesn't change.
+	 * 
+	 * @param week                      The week as numbered by splus
+	 * @return                          The events and hash of the week
+	 * @throws MissingSettingException  If the plan or study path haven't been
+	 *                                  set or, if there is more than one,
+	 *                                  the group hasn't been set.
+	 * @throws IOException              If there is no connection to 
+	 *                                  splus.ostfalia.de for whatever reason
+	 */
+	public WeekSnapshot getWeekSnapshot(int week) 
+			throws MissingSettingException, IOException {
+		return getWeekSnapshot(selection, week);
+	}
+	
+	/**
+	 * Fetches a week of a selection together with the hash of its content.
+	 * 
+	 * @see #getWeekSnapshot(int)
+	 */
+	public WeekSnapshot getWeekSnapshot(Selection selection, int week) 
+			throws MissingSettingException, IOException {
+		return new WeekSnapshot(week, getEventsFromWeek(selection, week));
+	}
+	
+	/**
+	 * Fetches any weeks of a selection together with the hashes of their
+	 * content, asking splus for up to weeksPerRequest of them at once even if
+	 * they don't follow each other.
+	 * 
+	 * @param selection                 The selection of the timetable
+	 * @param weeks                     The weeks as numbered by splus
+	 * @return                          The snapshots in the order of the weeks
+	 * @throws MissingSettingException  If the selection has no plan or study
+	 *                                  path or, if there is more than one,
+	 *                                  no group.
+	 * @throws IOException              If there is no connection to
+	 *                                  splus.ostfalia.de for whatever reason
+	 * @see #getWeekSnapshot(int)
+	 */
+	public List<WeekSnapshot> getWeekSnapshots(
+			Selection selection, List<Integer> weeks)
+			throws MissingSettingException, IOException {
+		List<List<SplusEvent>> events =
+				getEventsFromWeeks(resolve(selection), weeks);
+		List<WeekSnapshot> snapshots = new ArrayList<>(weeks.size());
+		
+		for(int i = 0; i < weeks.size(); i++) {
+			snapshots.add(new WeekSnapshot(weeks.get(i), events.get(i)));
 		}
 		
-		return listOfEvents;
+		return snapshots;
 	}
 	
 	/**
-	 * Get all events between two dates
+	 * Fetches all weeks between two weeks (inclusively) to compare them with
+	 * the snapshot of an earlier run.
+	 * 
+	 * @param firstWeek                 The first week of the snapshot
+	 * @param lastWeek                  The last week of the snapshot
+	 * @return                          The snapshot of all weeks
+	 * @throws MissingSettingException  If the plan or study path haven't been
+	 *                                  set or, if there is more than one,
+	 *                                  the group hasn't been set.
+	 * @throws IOException              If there is no connection to 
+	 *                                  splus.ostfalia.de for whatever reason
+	 * @see Snapshot#diff(Snapshot)
+	 */
+	public Snapshot takeSnapshot(int firstWeek, int lastWeek) 
+			throws MissingSettingException, IOException {
+		return takeSnapshot(selection, firstWeek, lastWeek);
+	}
+	
+	/**
+	 * Fetches all weeks of a selection between two weeks (inclusively) to
+	 * compare them with the snapshot of an earlier run.
+	 * 
+	 * @see #takeSnapshot(int, int)
+	 */
+	public Snapshot takeSnapshot(
+			Selection selection, int firstWeek, int lastWeek) 
+			throws MissingSettingException, IOException {
+		long createdAt = System.currentTimeMillis();
+		
+		return new Snapshot(createdAt, getWeekSnapshots(
+				selection, range(firstWeek, lastWeek)));
+	}
+	
+	/**
+	 * Get all events starting between two dates (inclusively). Every week of
+	 * the range is fetched once.
+	 * 
+	 * With an event store, weeks that are over and have been stored before
+	 * are read from it without asking splus.
 	 * 
 	 * @param from                      The start date
 	 * @param to                        The end date
-	 * @return                          A list of all events between start and 
-	 *                                  end
+	 * @return                          A list of all events starting between 
+	 *                                  start and end, sorted by start
 	 * @throws MissingSettingException  If the plan or study path haven't been
 	 *                                  set or, if there is more than one,
 	 *                                  the group hasn't been set.
@@ -558,29 +1383,117 @@ public class SplusEventFactory {
 	 */
 	public List<SplusEvent> getEventsBetweenDates(Date from, Date to) 
 			throws MissingSettingException, IOException {
+		return getEventsBetweenDates(selection, from, to);
+	}
+	
+	/**
+	 * Get all events of a selection starting between two dates 
+	 * (inclusively).
+	 * 
+	 * @see #getEventsBetweenDates(Date, Date)
+	 */
+	public List<SplusEvent> getEventsBetweenDates(
+			Selection selection, Date from, Date to) 
+			throws MissingSettingException, IOException {
+		Selection resolved = resolve(selection);
+		String key = keyOf(resolved);
 		
-		Calendar cal = Calendar.getInstance();
+		ZoneId zone = dateCalculator.getZone();
+		LocalDate first = from.toInstant().atZone(zone).toLocalDate();
+		LocalDate last = to.toInstant().atZone(zone).toLocalDate();
 		
-		cal.setTime(from);
-		int firstWeek = cal.get(Calendar.WEEK_OF_YEAR);
-		System.out.println(firstWeek);
+		EventStore store = eventStore;
+		long now = System.currentTimeMillis();
+		List<LocalDate> mondays = new ArrayList<>();
 		
-		cal.setTime(to);
-		int lastWeek = cal.get(Calendar.WEEK_OF_YEAR);
-		System.out.println(lastWeek);
+		for(LocalDate monday = first.with(DayOfWeek.MONDAY); 
+				!monday.isAfter(last); 
+				monday = monday.plusWeeks(1)) {
+			long end = monday.plusWeeks(1).atStartOfDay(zone)
+					.toInstant().toEpochMilli();
+			
+			//weeks that are over don't change any more
+			if(store == null || end > now || !store.hasWeek(key, monday)) {
+				mondays.add(monday);
+			}
+		}
 		
-		List<SplusEvent> events = getEventsBetweenWeeks(firstWeek, lastWeek);
+		//only the weeks to fetch need to be numbered
+		List<List<SplusEvent>> fetched = Collections.emptyList();
 		
-		Iterator<SplusEvent> iterator = events.iterator();
+		if(!mondays.isEmpty()) {
+			//the week fetched to read the year isn't fetched again
+			Map<LocalDate, List<SplusEvent>> probed = new HashMap<>();
+			boolean read = firstYears.containsKey(key);
+			int yearOfFirstWeek = 
+					yearOfFirstWeek(resolved, mondays.get(0), probed);
+			List<Integer> weeks = new ArrayList<>(mondays.size());
+			
+			for(int attempt = 0; ; attempt++) {
+				weeks.clear();
+				
+				for(LocalDate monday:mondays) {
+					if(!probed.containsKey(monday))
+						weeks.add(SplusDateCalculator.weekOf(
+								monday, yearOfFirstWeek));
+				}
+				
+				try {
+					Iterator<List<SplusEvent>> loaded = 
+							getEventsFromWeeks(resolved, weeks).iterator();
+					fetched = new ArrayList<>(mondays.size());
+					
+					for(LocalDate monday:mondays) {
+						List<SplusEvent> week = probed.get(monday);
+						fetched.add(week != null ? week : loaded.next());
+					}
+				} catch (HttpStatusException | SplusParseException e) {
+					//the year kept by the store may be that of a semester 
+					//that is over, so it is read from splus once
+					if(read || attempt > 0) {
+						throw e;
+					}
+					read = true;
+					yearOfFirstWeek = readYearOfFirstWeek(
+							resolved, mondays.get(0), probed);
+					continue;
+				}
+				
+				//a new semester counting from another year has started since
+				//the year was read last, so the weeks are numbered once more
+				Integer current = firstYears.get(key);
+				if(current == null || current == yearOfFirstWeek 
+						|| attempt > 0) {
+					break;
+				}
+				yearOfFirstWeek = current;
+			}
+		}
 		
-		while(iterator.hasNext()) {
-			SplusEvent event = iterator.next();
-			if(event.getStart().compareTo(from) < 0
-					&& event.getEnd().compareTo(to) > 0)
-				iterator.remove();
+		if(store == null) {
+			List<SplusEvent> events = new ArrayList<>();
+			
+			for(List<SplusEvent> week:fetched) {
+				for(SplusEvent event:week) {
+					if(event.getStartMillis() >= from.getTime()
+							&& event.getStartMillis() <= to.getTime())
+						events.add(event);
+				}
+			}
+			
+			Collections.sort(events);
+			return events;
+		}
+		
+		//a week cached before the store was set hasn't been put yet
+		for(int i = 0; i < mondays.size(); i++) {
+			if(!store.hasWeek(key, mondays.get(i))) {
+				store.put(key, mondays.get(i), fetched.get(i));
+			}
 		}
 		
-		return getEventsBetweenWeeks(firstWeek, lastWeek);
+		return store.getEventsBetween(key, 
+				from.getTime(), to.getTime() + 1);
 	}
 	
 	/**
@@ -598,13 +1511,647 @@ public class SplusEventFactory {
 	 */
 	public List <SplusEvent> getEventsBetweenWeeks(int firstWeek, int lastWeek) 
 			throws MissingSettingException, IOException {
+		return getEventsBetweenWeeks(selection, firstWeek, lastWeek);
+	}
+	
+	/**
+	 * Get all events of a selection between two weeks (inclusively).
+	 * 
+	 * @see #getEventsBetweenWeeks(int, int)
+	 */
+	public List <SplusEvent> getEventsBetweenWeeks(
+			Selection selection, int firstWeek, int lastWeek) 
+			throws MissingSettingException, IOException {
 		List<SplusEvent> events = new ArrayList<>();
 		
-		for(int week = firstWeek; week <= lastWeek; week++) {
-			events.addAll(getEventsFromWeek(week));
+		for(List<SplusEvent> week:getEventsFromWeeks(
+				resolve(selection), range(firstWeek, lastWeek))) {
+			events.addAll(week);
 		}
 		
 		return events;
 	}
-
+	
+	/**
+	 * Get all events between two weeks (inclusively) as a lazy stream.
+	 * 
+	 * The weeks are fetched one request after another while the stream is
+	 * consumed, so the first events are available as soon as the first 
+	 * request is parsed and only the weeks of one request are held in memory
+	 * at a time. Problems while fetching a week surface as an 
+	 * UncheckedIOException from the stream.
+	 * 
+	 * @param firstWeek                 The first week for all events
+	 * @param lastWeek                  The last week for all events
+	 * @return                          The stream of all events between the
+	 *                                  first and last week
+	 * @throws MissingSettingException  If the plan or study path haven't been
+	 *                                  set or, if there is more than one,
+	 *                                  the group hasn't been set.
+	 * @throws IOException              If there is no connection to 
+	 *                                  splus.ostfalia.de while choosing the
+	 *                                  group
+	 */
+	public Stream<SplusEvent> streamEventsBetweenWeeks(
+			int firstWeek, int lastWeek) 
+			throws MissingSettingException, IOException {
+		return streamEventsBetweenWeeks(selection, firstWeek, lastWeek);
+	}
+	
+	/**
+	 * Get all events of a selection between two weeks (inclusively) as a 
+	 * lazy stream.
+	 * 
+	 * @see #streamEventsBetweenWeeks(int, int)
+	 */
+	public Stream<SplusEvent> streamEventsBetweenWeeks(
+			Selection selection, int firstWeek, int lastWeek) 
+			throws MissingSettingException, IOException {
+		//settings are checked now, so only connection problems remain later
+		Selection resolved = resolve(selection);
+		int batchSize = weeksPerRequest;
+		
+		return IntStream.rangeClosed(firstWeek, lastWeek)
+				.filter(week -> (week - firstWeek) % batchSize == 0)
+				.mapToObj(week -> {
+					try {
+						return getEventsFromWeeks(resolved, range(week, 
+								week + Math.min(lastWeek - week, batchSize - 1)));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					} catch (MissingSettingException e) {
+						throw new IllegalStateException(e);
+					}
+				})
+				.flatMap(List::stream)
+				.flatMap(List::stream);
+	}
+	
+	/**
+	 * Hands all events between two weeks (inclusively) to the consumer, 
+	 * request by request as soon as the weeks of each are parsed.
+	 * 
+	 * @param firstWeek                 The first week for all events
+	 * @param lastWeek                  The last week for all events
+	 * @param consumer                  Receives every event in week order
+	 * @throws MissingSettingException  If the plan or study path haven't been
+	 *                                  set or, if there is more than one,
+	 *                                  the group hasn't been set.
+	 * @throws IOException              If there is no connection to 
+	 *                                  splus.ostfalia.de for whatever reason
+	 */
+	public void forEachEventBetweenWeeks(
+			int firstWeek, 
+			int lastWeek, 
+			Consumer<? super SplusEvent> consumer) 
+			throws MissingSettingException, IOException {
+		forEachEventBetweenWeeks(selection, firstWeek, lastWeek, consumer);
+	}
+	
+	/**
+	 * Hands all events of a selection between two weeks (inclusively) to the
+	 * consumer, request by request as soon as the weeks of each are parsed.
+	 * 
+	 * @see #forEachEventBetweenWeeks(int, int, Consumer)
+	 */
+	public void forEachEventBetweenWeeks(
+			Selection selection,
+			int firstWeek, 
+			int lastWeek, 
+			Consumer<? super SplusEvent> consumer) 
+			throws MissingSettingException, IOException {
+		Selection resolved = resolve(selection);
+		int batchSize = weeksPerRequest;
+		
+		for(int week = firstWeek; week <= lastWeek; ) {
+			int last = week + Math.min(lastWeek - week, batchSize - 1);
+			
+			for(List<SplusEvent> events:
+					getEventsFromWeeks(resolved, range(week, last))) {
+				for(SplusEvent event:events) {
+					consumer.accept(event);
+				}
+			}
+			
+			week = last + 1;
+		}
+	}
+	
+	/**
+	 * Get all events between two weeks (inclusively), fetching up to
+	 * maxConcurrentRequests weeks at the same time on the given executor.
+	 * 
+	 * Any executor will do, e.g. a fixed thread pool or one that starts a
+	 * virtual thread per task. A week that fails is recorded in the result
+	 * instead of aborting the other weeks.
+	 * 
+	 * @param firstWeek                 The first week for all events
+	 * @param lastWeek                  The last week for all events
+	 * @param executor                  The executor running the requests
+	 * @param maxConcurrentRequests     The maximum number of weeks being 
+	 *                                  fetched at the same time
+	 * @return                          The events of every week in week 
+	 *                                  order and the failures per week
+	 * @throws MissingSettingException  If the plan or study path haven't been
+	 *                                  set or, if there is more than one,
+	 *                                  the group hasn't been set.
+	 * @throws IOException              If there is no connection to 
+	 *                                  splus.ostfalia.de while choosing the
+	 *                                  group or the waiting gets interrupted
+	 */
+	public WeekBatchResult getEventsBetweenWeeks(
+			int firstWeek, 
+			int lastWeek,
+			Executor executor, 
+			int maxConcurrentRequests) 
+			throws MissingSettingException, IOException {
+		return getEventsBetweenWeeks(selection, 
+				firstWeek, lastWeek, executor, maxConcurrentRequests);
+	}
+	
+	/**
+	 * Get all events of a selection between two weeks (inclusively), 
+	 * fetching up to maxConcurrentRequests weeks at the same time on the 
+	 * given executor.
+	 * 
+	 * @see #getEventsBetweenWeeks(int, int, Executor, int)
+	 */
+	public WeekBatchResult getEventsBetweenWeeks(
+			Selection selection,
+			int firstWeek, 
+			int lastWeek,
+			Executor executor, 
+			int maxConcurrentRequests) 
+			throws MissingSettingException, IOException {
+		if(maxConcurrentRequests < 1) {
+			throw new IllegalArgumentException(
+					"maxConcurrentRequests must be at least 1");
+		}
+		
+		//choose the group before the workers race for it
+		Selection resolved = resolve(selection);
+		
+		final Map<Integer, List<SplusEvent>> eventsByWeek = 
+				new ConcurrentHashMap<>();
+		final Map<Integer, Exception> failures = new ConcurrentHashMap<>();
+		final AtomicInteger nextWeek = new AtomicInteger(firstWeek);
+		
+		int workers = Math.max(0, 
+				Math.min(maxConcurrentRequests, lastWeek - firstWeek + 1));
+		final CountDownLatch finished = new CountDownLatch(workers);
+		
+		//every worker takes the next open week until none is left, so there
+		//are never more than maxConcurrentRequests requests in flight
+		Runnable worker = () -> {
+			try {
+				int week;
+				while((week = nextWeek.getAndIncrement()) <= lastWeek) {
+					try {
+						eventsByWeek.put(week, getEventsFromWeek(resolved, week));
+					} catch (Exception e) {
+						failures.put(week, e);
+					}
+				}
+			} finally {
+				finished.countDown();
+			}
+		};
+		
+		for(int i = 0; i < workers; i++) {
+			try {
+				executor.execute(worker);
+			} catch (RejectedExecutionException e) {
+				worker.run();
+			}
+		}
+		
+		try {
+			finished.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"Interrupted while waiting for weeks to be fetched");
+		}
+		
+		return new WeekBatchResult(eventsByWeek, failures);
+	}
+	
+	/**
+	 * Get all events between two weeks (inclusively), fetching up to
+	 * maxConcurrentRequests weeks at the same time on a temporary thread pool.
+	 * 
+	 * @see #getEventsBetweenWeeks(int, int, Executor, int)
+	 */
+	public WeekBatchResult getEventsBetweenWeeks(
+			int firstWeek, 
+			int lastWeek, 
+			int maxConcurrentRequests) 
+			throws MissingSettingException, IOException {
+		return getEventsBetweenWeeks(selection, 
+				firstWeek, lastWeek, maxConcurrentRequests);
+	}
+	
+	/**
+	 * Get all events of a selection between two weeks (inclusively), 
+	 * fetching up to maxConcurrentRequests weeks at the same time on a 
+	 * temporary thread pool.
+	 * 
+	 * @see #getEventsBetweenWeeks(int, int, Executor, int)
+	 */
+	public WeekBatchResult getEventsBetweenWeeks(
+			Selection selection,
+			int firstWeek, 
+			int lastWeek, 
+			int maxConcurrentRequests) 
+			throws MissingSettingException, IOException {
+		if(maxConcurrentRequests < 1) {
+			throw new IllegalArgumentException(
+					"maxConcurrentRequests must be at least 1");
+		}
+		
+		ExecutorService executor = 
+				Executors.newFixedThreadPool(maxConcurrentRequests);
+		
+		try {
+			return getEventsBetweenWeeks(selection, 
+					firstWeek, lastWeek, executor, maxConcurrentRequests);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Fetches the faculties on the executor.
+	 * 
+	 * @see #getFacultiesAsync(Executor, long, TimeUnit)
+	 */
+	public CompletableFuture<List<Option>> getFacultiesAsync(
+			Executor executor) {
+		return getFacultiesAsync(executor, 0, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Fetches the faculties on the executor, failing with a TimeoutException
+	 * after the timeout.
+	 * 
+	 * @param executor  The executor running the request
+	 * @param timeout   The time to wait for the result, 0 for no limit
+	 * @param unit      The unit of the timeout
+	 * @return          A future of the faculties, cancelling it stops the
+	 *                  request if possible
+	 * @see #getFaculties()
+	 */
+	public CompletableFuture<List<Option>> getFacultiesAsync(
+			Executor executor, long timeout, TimeUnit unit) {
+		return callAsync(this::getFaculties, executor, timeout, unit);
+	}
+	
+	/**
+	 * Fetches the plans of the faculty on the executor.
+	 * 
+	 * @see #getPlansAsync(Executor, long, TimeUnit)
+	 */
+	public CompletableFuture<List<Option>> getPlansAsync(Executor executor) {
+		return getPlansAsync(executor, 0, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Fetches the plans of the faculty on the executor, failing with a 
+	 * TimeoutException after the timeout.
+	 * 
+	 * @param executor  The executor running the request
+	 * @param timeout   The time to wait for the result, 0 for no limit
+	 * @param unit      The unit of the timeout
+	 * @return          A future of the plans, failing with a 
+	 *                  MissingSettingException if no faculty is set
+	 * @see #getPlans()
+	 */
+	public CompletableFuture<List<Option>> getPlansAsync(
+			Executor executor, long timeout, TimeUnit unit) {
+		Selection selection = this.selection;
+		return callAsync(() -> getPlans(selection), executor, timeout, unit);
+	}
+	
+	/**
+	 * Fetches the study paths of the plan on the executor.
+	 * 
+	 * @see #getStudyPathsAsync(Executor, long, TimeUnit)
+	 */
+	public CompletableFuture<List<Option>> getStudyPathsAsync(
+			Executor executor) {
+		return getStudyPathsAsync(executor, 0, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Fetches the study paths of the plan on the executor, failing with a
+	 * TimeoutException after the timeout.
+	 * 
+	 * @param executor  The executor running the request
+	 * @param timeout   The time to wait for the result, 0 for no limit
+	 * @param unit      The unit of the timeout
+	 * @return          A future of the study paths, failing with a 
+	 *                  MissingSettingException if no plan is set
+	 * @see #getStudyPaths()
+	 */
+	public CompletableFuture<List<Option>> getStudyPathsAsync(
+			Executor executor, long timeout, TimeUnit unit) {
+		Selection selection = this.selection;
+		return callAsync(() -> getStudyPaths(selection), executor, timeout, unit);
+	}
+	
+	/**
+	 * Fetches the groups of the study path on the executor.
+	 * 
+	 * @see #getGroupsAsync(Executor, long, TimeUnit)
+	 */
+	public CompletableFuture<List<Option>> getGroupsAsync(Executor executor) {
+		return getGroupsAsync(executor, 0, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Fetches the groups of the study path on the executor, failing with a
+	 * TimeoutException after the timeout.
+	 * 
+	 * @param executor  The executor running the request
+	 * @param timeout   The time to wait for the result, 0 for no limit
+	 * @param unit      The unit of the timeout
+	 * @return          A future of the groups, failing with a 
+	 *                  MissingSettingException if plan or study path 
+	 *                  aren't set
+	 * @see #getGroups()
+	 */
+	public CompletableFuture<List<Option>> getGroupsAsync(
+			Executor executor, long timeout, TimeUnit unit) {
+		Selection selection = this.selection;
+		return callAsync(() -> getGroups(selection), executor, timeout, unit);
+	}
+	
+	/**
+	 * Fetches the events of a week on the executor.
+	 * 
+	 * @see #getEventsFromWeekAsync(int, Executor, long, TimeUnit)
+	 */
+	public CompletableFuture<List<SplusEvent>> getEventsFromWeekAsync(
+			int week, Executor executor) {
+		return getEventsFromWeekAsync(
+				week, executor, 0, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Fetches the events of a week on the executor, failing with a 
+	 * TimeoutException after the timeout.
+	 * 
+	 * The selection is taken when this method is called, so changing it 
+	 * afterwards doesn't affect the result.
+	 * 
+	 * @param week      The number of the week in the year
+	 * @param executor  The executor running the request
+	 * @param timeout   The time to wait for the result, 0 for no limit
+	 * @param unit      The unit of the timeout
+	 * @return          A future of the events, failing with a 
+	 *                  MissingSettingException if the selection is 
+	 *                  incomplete
+	 * @see #getEventsFromWeek(int)
+	 */
+	public CompletableFuture<List<SplusEvent>> getEventsFromWeekAsync(
+			int week, Executor executor, long timeout, TimeUnit unit) {
+		return getEventsFromWeekAsync(selection, week, executor, timeout, unit);
+	}
+	
+	/**
+	 * Fetches the events of a week of a selection on the executor, failing 
+	 * with a TimeoutException after the timeout.
+	 * 
+	 * @see #getEventsFromWeekAsync(int, Executor, long, TimeUnit)
+	 */
+	public CompletableFuture<List<SplusEvent>> getEventsFromWeekAsync(
+			Selection selection, 
+			int week, 
+			Executor executor, 
+			long timeout, 
+			TimeUnit unit) {
+		return callAsync(() -> getEventsFromWeek(selection, week), 
+				executor, timeout, unit);
+	}
+	
+	/**
+	 * Fetches the events between two weeks (inclusively) on the executor.
+	 * 
+	 * @see #getEventsBetweenWeeksAsync(int, int, Executor, long, TimeUnit)
+	 */
+	public CompletableFuture<List<SplusEvent>> getEventsBetweenWeeksAsync(
+			int firstWeek, int lastWeek, Executor executor) {
+		return getEventsBetweenWeeksAsync(
+				firstWeek, lastWeek, executor, 0, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Fetches the events between two weeks (inclusively) on the executor, 
+	 * failing with a TimeoutException after the timeout.
+	 * 
+	 * The weeks are asked for in batches of up to weeksPerRequest like 
+	 * {@link #getEventsBetweenWeeks(int, int)} does. Every batch is a task of
+	 * its own, so all batches are fetched at the same time as far as the 
+	 * executor allows. The first batch failing fails the whole range and 
+	 * stops the other batches, as does cancelling the future or the timeout.
+	 * 
+	 * @param firstWeek  The first week for all events
+	 * @param lastWeek   The last week for all events
+	 * @param executor   The executor running the requests
+	 * @param timeout    The time to wait for the result, 0 for no limit
+	 * @param unit       The unit of the timeout
+	 * @return           A future of the events in week order, failing with a 
+	 *                   MissingSettingException if the selection is 
+	 *                   incomplete
+	 * @see #getEventsBetweenWeeks(int, int)
+	 */
+	public CompletableFuture<List<SplusEvent>> getEventsBetweenWeeksAsync(
+			int firstWeek, 
+			int lastWeek, 
+			Executor executor, 
+			long timeout, 
+			TimeUnit unit) {
+		return getEventsBetweenWeeksAsync(selection, 
+				firstWeek, lastWeek, executor, timeout, unit);
+	}
+	
+	/**
+	 * Fetches the events of a selection between two weeks (inclusively) on 
+	 * the executor, failing with a TimeoutException after the timeout.
+	 * 
+	 * @see #getEventsBetweenWeeksAsync(int, int, Executor, long, TimeUnit)
+	 */
+	public CompletableFuture<List<SplusEvent>> getEventsBetweenWeeksAsync(
+			Selection selection,
+			int firstWeek, 
+			int lastWeek, 
+			Executor executor, 
+			long timeout, 
+			TimeUnit unit) {
+		CompletableFuture<List<SplusEvent>> result = new CompletableFuture<>();
+		List<CompletableFuture<?>> parts = new CopyOnWriteArrayList<>();
+		
+		//whatever ends the range early stops the batches still running
+		result.whenComplete((events, failure) -> {
+			if(failure != null) {
+				for(CompletableFuture<?> part:parts) {
+					part.cancel(true);
+				}
+			}
+		});
+		
+		//the group is chosen before the weeks race for it
+		CompletableFuture<Selection> selected = 
+				callAsync(() -> resolve(selection), executor, 0, unit);
+		
+		addPart(parts, selected, result);
+		
+		selected.thenAccept(resolved -> {
+			List<Integer> range = range(firstWeek, lastWeek);
+			int batchSize = weeksPerRequest;
+			List<CompletableFuture<List<List<SplusEvent>>>> batches = 
+					new ArrayList<>();
+			
+			for(int i = 0; i < range.size(); i += batchSize) {
+				List<Integer> batch = 
+						range.subList(i, Math.min(range.size(), i + batchSize));
+				CompletableFuture<List<List<SplusEvent>>> part = callAsync(
+						() -> getEventsFromWeeks(resolved, batch), 
+						executor, 0, unit);
+				
+				batches.add(part);
+				addPart(parts, part, result);
+			}
+			
+			CompletableFuture.allOf(
+					batches.toArray(new CompletableFuture<?>[0]))
+					.thenRun(() -> {
+						List<SplusEvent> events = new ArrayList<>();
+						
+						for(CompletableFuture<List<List<SplusEvent>>> batch:
+								batches) {
+							for(List<SplusEvent> week:batch.join()) {
+								events.addAll(week);
+							}
+						}
+						
+						result.complete(events);
+					});
+		});
+		
+		return withDeadline(result, timeout, unit);
+	}
+	
+	/**
+	 * Lets a failing part fail the whole result.
+	 */
+	private static void addPart(
+			List<CompletableFuture<?>> parts, 
+			CompletableFuture<?> part,
+			CompletableFuture<?> result) {
+		parts.add(part);
+		
+		part.whenComplete((value, failure) -> {
+			if(failure != null) {
+				result.completeExceptionally(unwrap(failure));
+			}
+		});
+		
+		//the result may have ended before the part was added
+		if(result.isDone()) {
+			part.cancel(true);
+		}
+	}
+	
+	private static Throwable unwrap(Throwable failure) {
+		return failure instanceof CompletionException 
+				&& failure.getCause() != null ? failure.getCause() : failure;
+	}
+	
+	/**
+	 * Runs a call on the executor. Cancelling the future or missing the 
+	 * deadline skips the call if it hasn't started yet and interrupts it 
+	 * otherwise, which ends waiting for the rate limit, retries or a week 
+	 * loaded by another thread.
+	 */
+	private static <T> CompletableFuture<T> callAsync(
+			Call<T> call, 
+			Executor executor, 
+			long timeout, 
+			TimeUnit unit) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		Thread[] runner = new Thread[1];
+		boolean[] interrupted = new boolean[1];
+		
+		future.whenComplete((value, failure) -> {
+			synchronized(runner) {
+				if(runner[0] != null) {
+					interrupted[0] = true;
+					runner[0].interrupt();
+				}
+			}
+		});
+		
+		Runnable task = () -> {
+			synchronized(runner) {
+				if(future.isDone()) {
+					return;
+				}
+				runner[0] = Thread.currentThread();
+			}
+			
+			T value = null;
+			Throwable failure = null;
+			
+			try {
+				value = call.call();
+			} catch (MissingSettingException | IOException | RuntimeException e) {
+				failure = e;
+			} finally {
+				//an interrupt meant for this call must not hit the next task
+				synchronized(runner) {
+					runner[0] = null;
+					if(interrupted[0]) {
+						Thread.interrupted();
+					}
+				}
+			}
+			
+			if(failure == null) {
+				future.complete(value);
+			} else {
+				future.completeExceptionally(failure);
+			}
+		};
+		
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		
+		return withDeadline(future, timeout, unit);
+	}
+	
+	/**
+	 * Fails the future with a TimeoutException if it isn't done in time.
+	 */
+	private static <T> CompletableFuture<T> withDeadline(
+			CompletableFuture<T> future, 
+			long timeout, 
+			TimeUnit unit) {
+		if(timeout <= 0 || future.isDone()) {
+			return future;
+		}
+		
+		ScheduledFuture<?> deadline = DEADLINES.schedule(
+				() -> future.completeExceptionally(new TimeoutException(
+						"No result within " + timeout + " " 
+						+ unit.toString().toLowerCase())),
+				timeout, unit);
+		
+		future.whenComplete((value, failure) -> deadline.cancel(false));
+		
+		return future;
+	}
 }
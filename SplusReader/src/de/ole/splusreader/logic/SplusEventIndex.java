@@ -0,0 +1,287 @@
+package de.ole.splusreader.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Answers which events take place at a time or during a range of time, and
+ * which events of different selections overlap, e.g. for a student attending
+ * several groups or study paths.
+ *
+ * The events are sorted by start once. A tree over them keeps the latest end
+ * of every range of events, so a query only descends into ranges that can
+ * still reach into the queried time: a query takes O(log n) per event found
+ * instead of a look at every event. Conflicts are found in a single sweep in
+ * O(n log n) plus the number of overlapping pairs.
+ *
+ * An event takes place from its start (inclusively) to its end (exclusively),
+ * so an event ending when the next one starts does not overlap it, and an
+ * event without length overlaps nothing.
+ *
+ * The index is immutable.
+ */
+public final class SplusEventIndex {
+
+	/**
+	 * Two events of different selections taking place at the same time.
+	 */
+	public static final class Conflict {
+		private final SplusEvent first;
+		private final String firstSource;
+		private final SplusEvent second;
+		private final String secondSource;
+
+		private Conflict(
+				SplusEvent first,
+				String firstSource,
+				SplusEvent second,
+				String secondSource) {
+			this.first = first;
+			this.firstSource = firstSource;
+			this.second = second;
+			this.secondSource = secondSource;
+		}
+
+		/**
+		 * @return the event starting first
+		 */
+		public SplusEvent getFirst() {
+			return first;
+		}
+
+		/**
+		 * @return the selection of the event starting first
+		 */
+		public String getFirstSource() {
+			return firstSource;
+		}
+
+		/**
+		 * @return the event starting second
+		 */
+		public SplusEvent getSecond() {
+			return second;
+		}
+
+		/**
+		 * @return the selection of the event starting second
+		 */
+		public String getSecondSource() {
+			return secondSource;
+		}
+
+		/**
+		 * @return the time both events take place in milliseconds
+		 */
+		public long getOverlapMillis() {
+			return Math.min(first.getEndMillis(), second.getEndMillis())
+					- second.getStartMillis();
+		}
+
+		public String toString() {
+			return first.getTitle() + " (" + firstSource + ") and "
+					+ second.getTitle() + " (" + secondSource + ") at "
+					+ second.getStart();
+		}
+	}
+
+	private final SplusEvent[] events;
+	private final String[] sources;
+	private final long[] starts;
+
+	//the latest end below every node of a tree over the sorted events
+	private final long[] maxEnds;
+	private final int leaves;
+
+	/**
+	 * @param events  The events to index, all of one selection
+	 */
+	public SplusEventIndex(Collection<SplusEvent> events) {
+		this(Collections.singletonMap((String) null, events));
+	}
+
+	/**
+	 * @param eventsBySource  The events to index by the name of their
+	 *                        selection, e.g. "Informatik, Gruppe B"
+	 */
+	public SplusEventIndex(
+			Map<String, ? extends Collection<SplusEvent>> eventsBySource) {
+		List<SplusEvent> all = new ArrayList<>();
+		List<String> allSources = new ArrayList<>();
+
+		for(Map.Entry<String, ? extends Collection<SplusEvent>> source:
+				eventsBySource.entrySet()) {
+			for(SplusEvent event:source.getValue()) {
+				if(event.getStartMillis() == SplusEvent.NO_DATE
+						|| event.getEndMillis() == SplusEvent.NO_DATE) {
+					throw new IllegalArgumentException(
+							"Only events with a start and an end can be indexed");
+				}
+
+				all.add(event);
+				allSources.add(source.getKey());
+			}
+		}
+
+		Integer[] order = new Integer[all.size()];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparing(all::get));
+
+		events = new SplusEvent[order.length];
+		sources = new String[order.length];
+		starts = new long[order.length];
+
+		for(int i = 0; i < order.length; i++) {
+			events[i] = all.get(order[i]);
+			sources[i] = allSources.get(order[i]);
+			starts[i] = events[i].getStartMillis();
+		}
+
+		int size = 1;
+		while(size < events.length) {
+			size <<= 1;
+		}
+
+		leaves = size;
+		maxEnds = new long[2 * size];
+		Arrays.fill(maxEnds, Long.MIN_VALUE);
+
+		for(int i = 0; i < events.length; i++) {
+			maxEnds[size + i] = events[i].getEndMillis();
+		}
+		for(int node = size - 1; node > 0; node--) {
+			maxEnds[node] = Math.max(maxEnds[2 * node], maxEnds[2 * node + 1]);
+		}
+	}
+
+	/**
+	 * @return the number of indexed events
+	 */
+	public int size() {
+		return events.length;
+	}
+
+	/**
+	 * @param timeMillis  A point in time in milliseconds since the epoch
+	 * @return            The events taking place at that time, sorted by start
+	 */
+	public List<SplusEvent> getActiveAt(long timeMillis) {
+		return getOverlapping(timeMillis, timeMillis + 1);
+	}
+
+	/**
+	 * @param fromMillis  The start of the range in milliseconds since the
+	 *                    epoch, inclusively
+	 * @param toMillis    The end of the range, exclusively
+	 * @return            The events taking place during any part of the
+	 *                    range, sorted by start
+	 */
+	public List<SplusEvent> getOverlapping(long fromMillis, long toMillis) {
+		List<SplusEvent> found = new ArrayList<>();
+
+		if(fromMillis < toMillis) {
+			//only events starting before the end of the range can overlap it
+			int candidates = firstStartingAt(toMillis);
+			collect(1, 0, leaves, candidates, fromMillis, found);
+		}
+
+		return found;
+	}
+
+	/**
+	 * Reports the events below the node, covering the events from low to
+	 * high, that come before the limit and end after the time.
+	 */
+	private void collect(
+			int node,
+			int low,
+			int high,
+			int limit,
+			long after,
+			List<SplusEvent> found) {
+		if(low >= limit || maxEnds[node] <= after) {
+			return;
+		}
+
+		if(node >= leaves) {
+			found.add(events[low]);
+			return;
+		}
+
+		int middle = (low + high) >>> 1;
+		collect(2 * node, low, middle, limit, after, found);
+		collect(2 * node + 1, middle, high, limit, after, found);
+	}
+
+	private int firstStartingAt(long timeMillis) {
+		int low = 0;
+		int high = starts.length;
+
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+
+			if(starts[middle] < timeMillis) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Finds all pairs of overlapping events from different selections.
+	 * Events of the same selection overlapping each other, e.g. the same
+	 * course for two groups, are no conflict, so an index of a single
+	 * selection has none.
+	 *
+	 * @return  The conflicts ordered by the start of their second event
+	 */
+	public List<Conflict> getConflicts() {
+		List<Conflict> conflicts = new ArrayList<>();
+
+		//the events started so far that haven't ended yet, by end
+		PriorityQueue<Integer> running = new PriorityQueue<>(
+				Comparator.comparingLong(i -> events[i].getEndMillis()));
+
+		for(int i = 0; i < events.length; i++) {
+			while(!running.isEmpty()
+					&& events[running.peek()].getEndMillis() <= starts[i]) {
+				running.poll();
+			}
+
+			if(events[i].getEndMillis() <= starts[i]) {
+				continue;
+			}
+
+			for(int other:running) {
+				if(!same(sources[other], sources[i])) {
+					conflicts.add(new Conflict(
+							events[other], sources[other],
+							events[i], sources[i]));
+				}
+			}
+
+			running.add(i);
+		}
+
+		return conflicts;
+	}
+
+	private static boolean same(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	public String toString() {
+		return "index of " + events.length + " events";
+	}
+}
@@ -0,0 +1,20 @@
+package de.ole.splusreader.logic;
+
+import java.io.IOException;
+
+/**
+ * Thrown if a page from splus does not look the way it is expected to, e.g.
+ * if a time or a weekday can't be read.
+ */
+public class SplusParseException extends IOException {
+
+	private static final long serialVersionUID = -3318457601945325081L;
+
+	public SplusParseException(String message) {
+		super(message);
+	}
+
+	public SplusParseException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,1058 @@
+package de.ole.splusreader.logic;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jsoup.parser.Parser;
+
+import de.ole.splusreader.logic.transport.SplusResponse;
+
+/**
+ * Reads the events of a week from the timetable page of splus in a single
+ * pass over the characters, without building a document.
+ *
+ * Only the week selector and the "grid-border-args" table are looked at, and
+ * of those only the text of the cells that matter is kept while they are
+ * open. Everything else of the page is skipped as it streams by.
+ *
+ * The results are the same as those of the {@link DomWeekParser}: the text of
+ * a cell is normalized like jsoup does it, and cells and rows that are not
+ * closed explicitly end where jsoup would end them.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public class StreamingWeekParser {
+
+	//elements without content
+	private static final Set<String> VOID_TAGS = new HashSet<>(Arrays.asList(
+			"area", "base", "basefont", "bgsound", "br", "col", "command",
+			"device", "embed", "frame", "hr", "img", "input", "keygen", "link",
+			"menuitem", "meta", "param", "source", "track", "wbr"));
+
+	//elements whose content is no markup
+	private static final Set<String> RAW_TEXT_TAGS = new HashSet<>(Arrays.asList(
+			"script", "style", "textarea", "title", "xmp", "iframe",
+			"noembed", "noframes"));
+
+	//elements separated from the text before them by a space
+	private static final Set<String> BLOCK_TAGS = new HashSet<>(Arrays.asList(
+			"html", "head", "body", "frameset", "script", "noscript", "style",
+			"meta", "link", "title", "frame", "noframes", "section", "nav",
+			"aside", "hgroup", "header", "footer", "p", "h1", "h2", "h3", "h4",
+			"h5", "h6", "ul", "ol", "pre", "div", "blockquote", "hr", "address",
+			"figure", "figcaption", "form", "fieldset", "ins", "del", "s", "dl",
+			"dt", "dd", "li", "table", "caption", "thead", "tfoot", "tbody",
+			"colgroup", "col", "tr", "th", "td", "video", "audio", "canvas",
+			"details", "menu", "plaintext", "template", "article", "main",
+			"svg", "math", "br"));
+
+	//the names read without creating a new string every time
+	private static final String[] KNOWN_NAMES = {
+		"td", "tr", "table", "tbody", "thead", "tfoot", "th", "option",
+		"select", "form", "br", "div", "span", "p", "b", "i", "a", "font",
+		"col", "colgroup", "html", "head", "body", "meta", "link", "script",
+		"style", "title", "img", "input",
+		"class", "name", "colspan", "rowspan", "align", "selected"
+	};
+
+	//the only attributes the parser looks at
+	private static final Set<String> ATTRIBUTES = new HashSet<>(Arrays.asList(
+			"class", "name", "colspan", "rowspan", "align", "selected"));
+
+	private static final Pattern META_CHARSET = Pattern.compile(
+			"<meta[^>]+charset\\s*=\\s*[\"']?\\s*([-\\w.:]+)",
+			Pattern.CASE_INSENSITIVE);
+
+	private final SplusDateCalculator dateCalculator;
+
+	/**
+	 * @param dateCalculator turns the timetable into dates
+	 */
+	public StreamingWeekParser(SplusDateCalculator dateCalculator) {
+		this.dateCalculator = dateCalculator;
+	}
+
+	/**
+	 * @param response      The timetable page of the week
+	 * @param week          The number of the week as requested
+	 * @return              The events of the week
+	 * @throws IOException  If the page can't be read
+	 */
+	public List<SplusEvent> parse(SplusResponse response, int week)
+			throws IOException {
+		return parse(reader(response), week);
+	}
+
+	/**
+	 * Reads a page with the timetables of several weeks, one after another
+	 * in the order the weeks were asked for.
+	 *
+	 * @param response      The page of the weeks
+	 * @param weeks         The numbers of the weeks as requested
+	 * @return              The events of every week, in the order of the
+	 *                      weeks
+	 * @throws IOException  If the page can't be read, a
+	 *                      {@link MissingWeeksException} if it doesn't have a
+	 *                      timetable for every week
+	 */
+	public List<List<SplusEvent>> parseWeeks(SplusResponse response, int... weeks)
+			throws IOException {
+		return parseWeeks(reader(response), weeks);
+	}
+
+	private static Reader reader(SplusResponse response)
+			throws UnsupportedEncodingException {
+		byte[] body = response.getBody();
+		String charset = response.getCharset();
+
+		if(charset == null) {
+			charset = detectCharset(body);
+		}
+
+		return new InputStreamReader(new ByteArrayInputStream(body), charset);
+	}
+
+	/**
+	 * @param in            The timetable page of the week
+	 * @param charset       The charset of the page
+	 * @param week          The number of the week as requested
+	 * @return              The events of the week
+	 * @throws IOException  If the page can't be read
+	 */
+	public List<SplusEvent> parse(InputStream in, String charset, int week)
+			throws IOException {
+		return parse(new InputStreamReader(in, charset), week);
+	}
+
+	/**
+	 * @param reader        The timetable page of the week
+	 * @param week          The number of the week as requested
+	 * @return              The events of the week
+	 * @throws IOException  If the page can't be read
+	 */
+	public List<SplusEvent> parse(Reader reader, int week) throws IOException {
+		return new Run(reader, new int[] {week}).parse().get(0);
+	}
+
+	/**
+	 * @param reader        The page of the weeks
+	 * @param weeks         The numbers of the weeks as requested
+	 * @return              The events of every week, in the order of the
+	 *                      weeks
+	 * @throws IOException  If the page can't be read, a
+	 *                      {@link MissingWeeksException} if it doesn't have a
+	 *                      timetable for every week
+	 */
+	public List<List<SplusEvent>> parseWeeks(Reader reader, int... weeks)
+			throws IOException {
+		if(weeks.length == 0) {
+			throw new IllegalArgumentException("There has to be a week");
+		}
+
+		return new Run(reader, weeks.clone()).parse();
+	}
+
+	/**
+	 * Reads a page like {@link #parseWeeks(SplusResponse, int...)} and keeps
+	 * the year its weeks are counted from.
+	 */
+	Page parsePage(SplusResponse response, int... weeks) throws IOException {
+		if(weeks.length == 0) {
+			throw new IllegalArgumentException("There has to be a week");
+		}
+
+		Run run = new Run(reader(response), weeks.clone());
+		List<List<SplusEvent>> events = run.parse();
+
+		return new Page(events, run.yearOfFirstWeek);
+	}
+
+	/**
+	 * The events of the weeks of a page together with the ISO week year the
+	 * plan counts its weeks from, as read from the week selector.
+	 */
+	static final class Page {
+		final List<List<SplusEvent>> events;
+		final int yearOfFirstWeek;
+
+		private Page(List<List<SplusEvent>> events, int yearOfFirstWeek) {
+			this.events = events;
+			this.yearOfFirstWeek = yearOfFirstWeek;
+		}
+	}
+
+	/**
+	 * @return the calculator turning the timetable into dates
+	 */
+	public SplusDateCalculator getDateCalculator() {
+		return dateCalculator;
+	}
+
+	/**
+	 * Looks for a byte order mark or a charset in a meta tag, like jsoup does
+	 * for pages served without one.
+	 */
+	private static String detectCharset(byte[] body) {
+		if(body.length >= 3 && (body[0] & 0xFF) == 0xEF
+				&& (body[1] & 0xFF) == 0xBB && (body[2] & 0xFF) == 0xBF) {
+			return "UTF-8";
+		}
+
+		String head = new String(body, 0, Math.min(body.length, 5000),
+				StandardCharsets.ISO_8859_1);
+		Matcher matcher = META_CHARSET.matcher(head);
+
+		if(matcher.find()) {
+			String charset = matcher.group(1);
+			try {
+				if(Charset.isSupported(charset))
+					return charset;
+			} catch (IllegalArgumentException e) {
+				//an illegal name is treated like a missing one
+			}
+		}
+
+		return "UTF-8";
+	}
+
+	/**
+	 * The text of an open element, normalized as it arrives.
+	 */
+	private static final class Text {
+		private final StringBuilder text = new StringBuilder();
+
+		private void append(CharSequence chars, boolean preserveWhitespace) {
+			if(preserveWhitespace) {
+				text.append(chars);
+				return;
+			}
+
+			for(int i = 0; i < chars.length(); i++) {
+				char c = chars.charAt(i);
+
+				if(c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r') {
+					space();
+				}
+				else {
+					text.append(c);
+				}
+			}
+		}
+
+		private void space() {
+			int length = text.length();
+			if(length == 0 || text.charAt(length - 1) != ' ')
+				text.append(' ');
+		}
+
+		private void block() {
+			int length = text.length();
+			if(length > 0 && text.charAt(length - 1) != ' ')
+				text.append(' ');
+		}
+
+		public String toString() {
+			return text.toString().trim();
+		}
+	}
+
+	/**
+	 * An element of the timetable that is open.
+	 */
+	private static final class Open {
+		private static final int OTHER = 0;
+		private static final int TABLE = 1;
+		private static final int ROW = 2;
+		private static final int GRID_ROW = 3;
+		private static final int CELL = 4;
+		private static final int COLUMN_LABEL = 5;
+		private static final int ROW_LABEL = 6;
+		private static final int EVENT_CELL = 7;
+		private static final int EVENT_DATA = 8;
+
+		private final String name;
+		private final int role;
+		private final Text text;
+		private final String attribute;
+
+		//the first column and the colspan of a column label, the row of a
+		//row label
+		private int column;
+		private int colspan;
+
+		private Open(String name, int role, Text text, String attribute) {
+			this.name = name;
+			this.role = role;
+			this.text = text;
+			this.attribute = attribute;
+		}
+	}
+
+	/**
+	 * The strings of an event cell, kept until the dates of the week are
+	 * known.
+	 */
+	private static final class Cell {
+		private final int grid;
+		private final String dayOfWeek;
+		private final int minuteOfDay;
+		private final int lengthInMinutes;
+		private String title;
+		private String description;
+		private String presenter;
+		private String location;
+
+		private Cell(
+				int grid,
+				String dayOfWeek,
+				int minuteOfDay,
+				int lengthInMinutes) {
+			this.grid = grid;
+			this.dayOfWeek = dayOfWeek;
+			this.minuteOfDay = minuteOfDay;
+			this.lengthInMinutes = lengthInMinutes;
+		}
+	}
+
+	/**
+	 * The state of a single pass over a page.
+	 */
+	private final class Run {
+		private final Reader reader;
+		private final int[] weeks;
+		private final char[] buffer = new char[8192];
+		private int position;
+		private int limit;
+
+		//the events of every timetable read so far
+		private final List<List<SplusEvent>> events = new ArrayList<>();
+		private final List<Cell> pending = new ArrayList<>();
+		private SplusDateCalculator.Week[] dates;
+
+		//the tag just read
+		private final StringBuilder name = new StringBuilder();
+		private final StringBuilder value = new StringBuilder();
+		private String[] attributeNames = new String[8];
+		private String[] attributeValues = new String[8];
+		private int attributeCount;
+		private boolean selfClosing;
+
+		//the text between two tags, only kept while somebody wants it
+		private final StringBuilder characters = new StringBuilder();
+		private final List<Text> texts = new ArrayList<>();
+		private int preserveWhitespace;
+
+		//0 before, 1 inside and 2 after the week selector
+		private int selector;
+		private String selectorName;
+		private Text option;
+		private boolean optionSelected;
+		private String firstOption;
+		private String selectedOption;
+		private int yearOfFirstWeek;
+
+		//0 before, 1 inside and 2 after the timetables, one per week
+		private int grid;
+		private int grids;
+		private final List<Open> open = new ArrayList<>();
+		private GridLayout layout;
+		private Cell cell;
+
+		private Run(Reader reader, int[] weeks) {
+			this.reader = reader;
+			this.weeks = weeks;
+		}
+
+		private List<List<SplusEvent>> parse() throws IOException {
+			int c = read();
+
+			//jsoup drops a byte order mark as well
+			if(c == '\uFEFF')
+				c = read();
+
+			while(c != -1) {
+				if(c == '<') {
+					c = tag();
+				}
+				else {
+					if(!texts.isEmpty())
+						characters.append((char) c);
+					c = read();
+				}
+			}
+
+			flushText();
+
+			//the end of the page ends everything still open
+			while(!open.isEmpty()) {
+				pop();
+			}
+			if(selector == 1) {
+				endSelector();
+			}
+
+			if(dates == null) {
+				throw new SplusParseException("The page has no week selector");
+			}
+			if(grids < weeks.length && weeks.length > 1) {
+				throw new MissingWeeksException(grids, weeks.length);
+			}
+			if(grids == 0) {
+				throw new SplusParseException("The page has no timetable");
+			}
+
+			return events;
+		}
+
+		private int read() throws IOException {
+			if(position == limit) {
+				limit = reader.read(buffer, 0, buffer.length);
+				position = 0;
+
+				if(limit <= 0) {
+					limit = 0;
+					return -1;
+				}
+			}
+
+			return buffer[position++];
+		}
+
+		/**
+		 * Reads what follows a '<' and returns the next character after it.
+		 */
+		private int tag() throws IOException {
+			int c = read();
+
+			if(c == '!') {
+				c = read();
+				if(c == '-') {
+					c = read();
+					if(c == '-') {
+						return skipComment();
+					}
+				}
+				return skipTo('>');
+			}
+			if(c == '?') {
+				return skipTo('>');
+			}
+			if(c == '/') {
+				c = read();
+				if(!isLetter(c)) {
+					return skipTo('>');
+				}
+
+				c = readName(c);
+				while(c != -1 && c != '>') {
+					c = read();
+				}
+
+				flushText();
+				endTag(known(name));
+				return read();
+			}
+			if(!isLetter(c)) {
+				//a lone '<' is text
+				if(!texts.isEmpty())
+					characters.append('<');
+				return c;
+			}
+
+			c = readName(c);
+			String tagName = known(name);
+			c = readAttributes(c);
+
+			flushText();
+			startTag(tagName);
+
+			if(RAW_TEXT_TAGS.contains(tagName) && !selfClosing) {
+				c = skipRawText(tagName, c);
+				endTag(tagName);
+			}
+
+			return c;
+		}
+
+		private int readName(int c) throws IOException {
+			name.setLength(0);
+
+			while(c != -1 && c != '>' && c != '/' && !isWhitespace(c)) {
+				name.append(Character.toLowerCase((char) c));
+				c = read();
+			}
+
+			return c;
+		}
+
+		/**
+		 * Reads the attributes of a start tag and returns the character after
+		 * its end.
+		 */
+		private int readAttributes(int c) throws IOException {
+			attributeCount = 0;
+			selfClosing = false;
+
+			while(true) {
+				while(isWhitespace(c)) {
+					c = read();
+				}
+
+				if(c == -1) {
+					return c;
+				}
+				if(c == '>') {
+					return read();
+				}
+				if(c == '/') {
+					c = read();
+					if(c == '>') {
+						selfClosing = true;
+						return read();
+					}
+					continue;
+				}
+
+				name.setLength(0);
+				while(c != -1 && c != '=' && c != '>' && c != '/'
+						&& !isWhitespace(c)) {
+					name.append(Character.toLowerCase((char) c));
+					c = read();
+				}
+				while(isWhitespace(c)) {
+					c = read();
+				}
+
+				value.setLength(0);
+
+				if(c == '=') {
+					c = read();
+					while(isWhitespace(c)) {
+						c = read();
+					}
+
+					if(c == '"' || c == '\'') {
+						int quote = c;
+						c = read();
+						while(c != -1 && c != quote) {
+							value.append((char) c);
+							c = read();
+						}
+						c = read();
+					}
+					else {
+						while(c != -1 && c != '>' && !isWhitespace(c)) {
+							value.append((char) c);
+							c = read();
+						}
+					}
+				}
+
+				String key = known(name);
+
+				if(ATTRIBUTES.contains(key)) {
+					addAttribute(key, value.indexOf("&") < 0 ? value.toString()
+							: Parser.unescapeEntities(value.toString(), true));
+				}
+			}
+		}
+
+		private void addAttribute(String key, String value) {
+			//the first of two attributes with the same name counts
+			if(key.isEmpty() || attribute(key) != null) {
+				return;
+			}
+
+			if(attributeCount == attributeNames.length) {
+				attributeNames = Arrays.copyOf(attributeNames, attributeCount * 2);
+				attributeValues = Arrays.copyOf(attributeValues, attributeCount * 2);
+			}
+
+			attributeNames[attributeCount] = key;
+			attributeValues[attributeCount] = value;
+			attributeCount++;
+		}
+
+		private String attribute(String key) {
+			for(int i = 0; i < attributeCount; i++) {
+				if(attributeNames[i].equals(key))
+					return attributeValues[i];
+			}
+			return null;
+		}
+
+		private boolean hasClass(String className) {
+			String classes = attribute("class");
+
+			if(classes == null) {
+				return false;
+			}
+
+			//the classes are separated by whitespace
+			int length = className.length();
+			for(int start = 0; start + length <= classes.length(); start++) {
+				if((start == 0 || isWhitespace(classes.charAt(start - 1)))
+						&& (start + length == classes.length()
+							|| isWhitespace(classes.charAt(start + length)))
+						&& classes.regionMatches(true, start, className, 0, length))
+					return true;
+			}
+			return false;
+		}
+
+		private boolean attributeIs(String key, String value) {
+			String actual = attribute(key);
+			return actual != null && actual.trim().equalsIgnoreCase(value);
+		}
+
+		private int skipComment() throws IOException {
+			int dashes = 0;
+			int c = read();
+
+			while(c != -1) {
+				if(c == '>' && dashes >= 2) {
+					return read();
+				}
+				dashes = c == '-' ? dashes + 1 : 0;
+				c = read();
+			}
+
+			return c;
+		}
+
+		private int skipTo(char end) throws IOException {
+			int c = read();
+
+			while(c != -1 && c != end) {
+				c = read();
+			}
+
+			return c == -1 ? c : read();
+		}
+
+		/**
+		 * Skips the content of e.g. a script up to its end tag and returns the
+		 * character after it.
+		 */
+		private int skipRawText(String tagName, int c) throws IOException {
+			int matched = -2;
+
+			while(c != -1) {
+				if(matched == tagName.length()) {
+					if(c == '>' || isWhitespace(c) || c == '/') {
+						while(c != -1 && c != '>') {
+							c = read();
+						}
+						return c == -1 ? c : read();
+					}
+					matched = -2;
+				}
+
+				if(c == '<') {
+					matched = -1;
+				}
+				else if(matched == -1) {
+					matched = c == '/' ? 0 : -2;
+				}
+				else if(matched >= 0
+						&& Character.toLowerCase((char) c) == tagName.charAt(matched)) {
+					matched++;
+				}
+				else {
+					matched = -2;
+				}
+
+				c = read();
+			}
+
+			return c;
+		}
+
+		private void flushText() {
+			if(characters.length() == 0) {
+				return;
+			}
+
+			CharSequence text = characters.indexOf("&") < 0 ? characters
+					: Parser.unescapeEntities(characters.toString(), false);
+
+			for(Text open:texts) {
+				open.append(text, preserveWhitespace > 0);
+			}
+
+			characters.setLength(0);
+		}
+
+		private void startTag(String tagName) throws SplusParseException {
+			if(BLOCK_TAGS.contains(tagName)) {
+				for(Text open:texts) {
+					open.block();
+				}
+			}
+
+			if(selector == 1) {
+				selectorStartTag(tagName);
+			}
+			if(grid == 1) {
+				gridStartTag(tagName);
+			}
+
+			if(selector == 0 && attributeIs("name", "weeks")) {
+				selector = 1;
+				selectorName = tagName;
+				if(VOID_TAGS.contains(tagName) || selfClosing)
+					endSelector();
+			}
+			if(grid == 0 && attributeIs("class", "grid-border-args")) {
+				grid = 1;
+				grids++;
+				layout = new GridLayout();
+				events.add(new ArrayList<>());
+				open.add(new Open(tagName,
+						tagName.equals("table") ? Open.TABLE : Open.OTHER,
+						null, null));
+				if(VOID_TAGS.contains(tagName) || selfClosing)
+					pop();
+			}
+		}
+
+		private void endTag(String tagName) throws SplusParseException {
+			if(selector == 1) {
+				if(tagName.equals(selectorName)) {
+					endSelector();
+				}
+				else if(tagName.equals("option") || tagName.equals("optgroup")) {
+					endOption();
+				}
+			}
+			if(grid == 1) {
+				gridEndTag(tagName);
+			}
+		}
+
+		private void selectorStartTag(String tagName) throws SplusParseException {
+			if(tagName.equals("option")) {
+				endOption();
+				option = new Text();
+				optionSelected = attribute("selected") != null;
+				texts.add(option);
+			}
+			else if(tagName.equals("optgroup")) {
+				endOption();
+			}
+		}
+
+		private void endOption() {
+			if(option == null) {
+				return;
+			}
+
+			String text = option.toString();
+
+			if(firstOption == null)
+				firstOption = text;
+			if(optionSelected)
+				selectedOption = text;
+
+			texts.remove(option);
+			option = null;
+		}
+
+		private void endSelector() throws SplusParseException {
+			endOption();
+			selector = 2;
+
+			if(firstOption == null) {
+				throw new SplusParseException("The week selector has no weeks");
+			}
+
+			if(firstOption.length() < 10) {
+				throw new SplusParseException(
+						"Invalid week \"" + firstOption + "\"");
+			}
+			yearOfFirstWeek = DomWeekParser.parseYear(firstOption.substring(
+					firstOption.length() - 10, firstOption.length() - 6));
+
+			dates = new SplusDateCalculator.Week[weeks.length];
+
+			if(weeks.length > 1) {
+				//every week is selected, so the year follows from the number
+				for(int i = 0; i < weeks.length; i++) {
+					dates[i] = dateCalculator.week(yearOfFirstWeek, weeks[i]);
+				}
+			}
+			else {
+				String year = selectedOption;
+				if(year != null) {
+					if(year.length() < 11) {
+						throw new SplusParseException(
+								"Invalid week \"" + year + "\"");
+					}
+					year = year.substring(year.length() - 11, year.length() - 7);
+				}
+
+				dates[0] = dateCalculator.week(
+						DomWeekParser.parseYear(year), yearOfFirstWeek, weeks[0]);
+			}
+
+			for(Cell cell:pending) {
+				emit(cell);
+			}
+			pending.clear();
+		}
+
+		private int innermostTable() {
+			for(int i = open.size() - 1; i >= 0; i--) {
+				if(open.get(i).role == Open.TABLE)
+					return i;
+			}
+			return -1;
+		}
+
+		private int findInTable(int table, String... names) {
+			for(int i = open.size() - 1; i > table; i--) {
+				for(String name:names) {
+					if(open.get(i).name.equals(name))
+						return i;
+				}
+			}
+			return -1;
+		}
+
+		private void popTo(int index) throws SplusParseException {
+			while(open.size() > index) {
+				pop();
+			}
+		}
+
+		private void gridStartTag(String tagName) throws SplusParseException {
+			int table = innermostTable();
+
+			//start tags ending the open cells and rows of their table
+			switch(tagName) {
+			case "td":
+			case "th":
+				int openCell = findInTable(table, "td", "th");
+				if(openCell >= 0)
+					popTo(openCell);
+				break;
+			case "tr":
+				int openRow = findInTable(table, "tr");
+				if(openRow >= 0)
+					popTo(openRow);
+				break;
+			case "tbody":
+			case "thead":
+			case "tfoot":
+				int openSection = findInTable(table, "tbody", "thead", "tfoot");
+				if(openSection < 0)
+					openSection = findInTable(table, "tr");
+				if(openSection >= 0)
+					popTo(openSection);
+				break;
+			}
+
+			if(VOID_TAGS.contains(tagName) || selfClosing) {
+				return;
+			}
+
+			table = innermostTable();
+			Open parent = open.isEmpty() ? null : open.get(open.size() - 1);
+			Open element;
+
+			if(tagName.equals("table")) {
+				element = new Open(tagName, Open.TABLE, null, null);
+			}
+			else if(tagName.equals("tr")) {
+				element = new Open(tagName,
+						table == 0 ? Open.GRID_ROW : Open.ROW, null, null);
+				if(table == 0)
+					layout.startRow();
+			}
+			else if(tagName.equals("td") || tagName.equals("th")) {
+				if(table == 0 && (parent == null || parent.role != Open.GRID_ROW)) {
+					//jsoup adds the missing row
+					parent = new Open("tr", Open.GRID_ROW, null, null);
+					open.add(parent);
+					layout.startRow();
+				}
+
+				element = parent != null && parent.role == Open.GRID_ROW
+						? gridCell(tagName) : innerCell(tagName);
+			}
+			else {
+				element = new Open(tagName, Open.OTHER, null, null);
+			}
+
+			if(tagName.equals("pre") || tagName.equals("plaintext"))
+				preserveWhitespace++;
+
+			open.add(element);
+			if(element.text != null)
+				texts.add(element.text);
+		}
+
+		private Open gridCell(String tagName) throws SplusParseException {
+			int colspan = GridLayout.parseSpan(attribute("colspan"));
+			int first = layout.addCell(
+					GridLayout.parseSpan(attribute("rowspan")), colspan);
+
+			if(tagName.equals("th")) {
+				return new Open(tagName, Open.CELL, null, null);
+			}
+			if(hasClass("col-label-one")) {
+				Open label = new Open(tagName, Open.COLUMN_LABEL,
+						new Text(), null);
+				label.column = first;
+				label.colspan = colspan;
+				return label;
+			}
+			if(hasClass("row-label-one")) {
+				Open label = new Open(tagName, Open.ROW_LABEL,
+						new Text(), null);
+				label.column = layout.getRow();
+				return label;
+			}
+			if(hasClass("object-cell-border")) {
+				//the column the cell really starts at picks the day
+				cell = new Cell(grids - 1,
+						DomWeekParser.dayOf(layout, first),
+						layout.getMinuteOfDay(layout.getRow()),
+						DomWeekParser.parseLength(attribute("rowspan")));
+				return new Open(tagName, Open.EVENT_CELL, null, null);
+			}
+
+			return new Open(tagName, Open.CELL, null, null);
+		}
+
+		private Open innerCell(String tagName) {
+			if(cell != null && tagName.equals("td")) {
+				String align = attribute("align");
+				return new Open(tagName, Open.EVENT_DATA, new Text(),
+						align == null ? "" : align);
+			}
+
+			return new Open(tagName, Open.CELL, null, null);
+		}
+
+		private void gridEndTag(String tagName) throws SplusParseException {
+			if(tagName.equals("br")) {
+				//jsoup reads </br> as <br>
+				for(Text text:texts) {
+					text.block();
+				}
+				return;
+			}
+
+			if(tagName.equals("body") || tagName.equals("html")) {
+				popTo(0);
+				return;
+			}
+
+			int table = tagName.equals("table") ? -1 : innermostTable();
+
+			for(int i = open.size() - 1; i >= 0 && i >= table; i--) {
+				if(open.get(i).name.equals(tagName)) {
+					popTo(i);
+					return;
+				}
+			}
+		}
+
+		private void pop() throws SplusParseException {
+			Open element = open.remove(open.size() - 1);
+
+			if(element.text != null) {
+				texts.remove(element.text);
+			}
+			if(element.name.equals("pre") || element.name.equals("plaintext")) {
+				preserveWhitespace--;
+			}
+
+			switch(element.role) {
+			case Open.COLUMN_LABEL:
+				layout.setDay(element.column, element.colspan,
+						element.text.toString());
+				break;
+			case Open.ROW_LABEL:
+				layout.setRowLabel(element.column, element.text.toString());
+				break;
+			case Open.EVENT_DATA:
+				if(cell != null) {
+					String text = element.text.toString();
+
+					if(element.attribute.equals("center")) {
+						if(cell.title == null)
+							cell.title = text;
+						else
+							cell.description = text;
+					}
+					else if(element.attribute.equals("left")) {
+						cell.location = text;
+					}
+					else {
+						cell.presenter = text;
+					}
+				}
+				break;
+			case Open.EVENT_CELL:
+				emit(cell);
+				cell = null;
+				break;
+			}
+
+			if(open.isEmpty()) {
+				grid = grids < weeks.length ? 0 : 2;
+			}
+		}
+
+		private void emit(Cell cell) throws SplusParseException {
+			if(dates == null) {
+				pending.add(cell);
+				return;
+			}
+
+			events.get(cell.grid).add(DomWeekParser.getEventFromStrings(
+					dates[cell.grid],
+					cell.dayOfWeek,
+					cell.title,
+					cell.description,
+					cell.presenter,
+					cell.location,
+					cell.minuteOfDay,
+					cell.lengthInMinutes));
+		}
+	}
+
+	private static String known(StringBuilder name) {
+		int length = name.length();
+
+		for(String known:KNOWN_NAMES) {
+			if(known.length() == length && known.contentEquals(name))
+				return known;
+		}
+
+		return name.toString();
+	}
+
+	private static boolean isLetter(int c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+	}
+
+	private static boolean isWhitespace(int c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+	}
+}
@@ -0,0 +1,71 @@
+package de.ole.splusreader.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The outcome of fetching a range of weeks.
+ *
+ * Every week of the range either ends up with its list of events or with the
+ * exception that stopped it from being fetched, so a single broken week does
+ * not cost the rest of the range.
+ */
+public final class WeekBatchResult {
+
+	private final SortedMap<Integer, List<SplusEvent>> eventsByWeek;
+	private final SortedMap<Integer, Exception> failures;
+
+	public WeekBatchResult(
+			Map<Integer, List<SplusEvent>> eventsByWeek,
+			Map<Integer, Exception> failures
+			) {
+		this.eventsByWeek = Collections.unmodifiableSortedMap(
+				new TreeMap<>(eventsByWeek));
+		this.failures = Collections.unmodifiableSortedMap(
+				new TreeMap<>(failures));
+	}
+
+	/**
+	 * @return all events of the successfully fetched weeks, in week order
+	 */
+	public List<SplusEvent> getEvents() {
+		List<SplusEvent> events = new ArrayList<>();
+
+		for(List<SplusEvent> week:eventsByWeek.values()) {
+			events.addAll(week);
+		}
+
+		return events;
+	}
+
+	/**
+	 * @return the events of every successfully fetched week, ordered by week
+	 */
+	public SortedMap<Integer, List<SplusEvent>> getEventsByWeek() {
+		return eventsByWeek;
+	}
+
+	/**
+	 * @return the exception for every week that could not be fetched,
+	 *         ordered by week
+	 */
+	public SortedMap<Integer, Exception> getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @return true if at least one week could not be fetched
+	 */
+	public boolean hasFailures() {
+		return !failures.isEmpty();
+	}
+
+	public String toString() {
+		return eventsByWeek.size() + " weeks fetched, "
+				+ failures.size() + " failed " + failures.keySet();
+	}
+}
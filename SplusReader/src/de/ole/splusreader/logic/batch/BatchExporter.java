@@ -0,0 +1,377 @@
+package de.ole.splusreader.logic.batch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.ole.splusreader.base.SplusEventToCalendar;
+import de.ole.splusreader.logic.MissingSettingException;
+import de.ole.splusreader.logic.Option;
+import de.ole.splusreader.logic.Selection;
+import de.ole.splusreader.logic.SplusEvent;
+import de.ole.splusreader.logic.SplusEventFactory;
+import de.ole.splusreader.logic.cache.WeekCache;
+
+/**
+ * Writes the calendars of many selections in one go.
+ *
+ * First the options of all selections are looked up, asking for every list of
+ * plans, study paths and groups only once no matter how many selections share
+ * it. Then the weeks of all selections are fetched on one executor with a
+ * common limit of requests in flight, and each calendar is written as soon as
+ * its last week has arrived.
+ *
+ * All selections are fetched by one factory, which shares the response cache,
+ * catalog, date calculator and week cache of the factory given as template.
+ */
+public class BatchExporter {
+
+	private final SplusEventFactory template;
+	private final Executor executor;
+	private final int maxConcurrentRequests;
+
+	/**
+	 * @param template               The factory whose caches and catalog are
+	 *                               used; its own selection doesn't matter
+	 * @param executor               The executor running all requests
+	 * @param maxConcurrentRequests  The maximum number of weeks being fetched
+	 *                               at the same time for the whole batch
+	 */
+	public BatchExporter(
+			SplusEventFactory template, 
+			Executor executor, 
+			int maxConcurrentRequests) {
+		if(maxConcurrentRequests < 1) {
+			throw new IllegalArgumentException(
+					"maxConcurrentRequests must be at least 1");
+		}
+
+		this.template = template;
+		this.executor = executor;
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	/**
+	 * Writes one calendar per job with all events between two weeks 
+	 * (inclusively).
+	 * 
+	 * A job whose options can't be found or one of whose weeks can't be
+	 * fetched is reported as failed and its file is left untouched. The other
+	 * jobs are not affected.
+	 * 
+	 * @param jobs          The selections and their files
+	 * @param firstWeek     The first week for all events
+	 * @param lastWeek      The last week for all events
+	 * @param writer        Writes the calendars, possibly from several 
+	 *                      threads at once
+	 * @return              The outcome and timings of every job
+	 * @throws IOException  If the waiting for the batch gets interrupted
+	 */
+	public BatchReport export(
+			List<ExportJob> jobs, 
+			int firstWeek, 
+			int lastWeek,
+			SplusEventToCalendar writer) throws IOException {
+		long start = System.nanoTime();
+
+		//selections sharing a week share the fetch through the week cache
+		WeekCache weekCache = template.getWeekCache() != null 
+				? template.getWeekCache()
+				: new WeekCache(
+						Math.max(1, jobs.size() * (lastWeek - firstWeek + 1)),
+						TimeUnit.MINUTES.toMillis(1));
+
+		Resolver resolver = new Resolver(weekCache);
+		List<Run> runs = new ArrayList<>();
+		List<Task> tasks = new ArrayList<>();
+
+		for(ExportJob job:jobs) {
+			Run run = new Run(job, writer);
+			long resolveStart = System.nanoTime();
+
+			try {
+				run.selection = resolver.resolve(job);
+			} catch (MissingSettingException | IOException e) {
+				run.failure = e;
+			}
+
+			run.resolveNanos = System.nanoTime() - resolveStart;
+			runs.add(run);
+
+			if(run.failure == null) {
+				for(int week = firstWeek; week <= lastWeek; week++) {
+					tasks.add(new Task(resolver.factory, run, week));
+				}
+				run.remaining.set(Math.max(0, lastWeek - firstWeek + 1));
+			}
+		}
+
+		fetchAll(tasks);
+
+		//jobs without any week are written right away
+		for(Run run:runs) {
+			if(run.failure == null && run.remaining.get() == 0 
+					&& run.writeNanos < 0) {
+				run.write();
+			}
+		}
+
+		List<BatchReport.JobReport> reports = new ArrayList<>();
+
+		for(Run run:runs) {
+			reports.add(run.report());
+		}
+
+		return new BatchReport(reports, 
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	private void fetchAll(List<Task> tasks) throws IOException {
+		AtomicInteger next = new AtomicInteger();
+		int workers = Math.min(maxConcurrentRequests, tasks.size());
+		CountDownLatch finished = new CountDownLatch(workers);
+
+		//every worker takes the next open week of any job until none is left
+		Runnable worker = () -> {
+			try {
+				int index;
+				while((index = next.getAndIncrement()) < tasks.size()) {
+					tasks.get(index).run();
+				}
+			} finally {
+				finished.countDown();
+			}
+		};
+
+		for(int i = 0; i < workers; i++) {
+			try {
+				executor.execute(worker);
+			} catch (RejectedExecutionException e) {
+				worker.run();
+			}
+		}
+
+		try {
+			finished.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"Interrupted while waiting for the batch");
+		}
+	}
+
+	/**
+	 * Finds the options of the jobs, asking for every list only once.
+	 */
+	private final class Resolver {
+		private final WeekCache weekCache;
+		private final SplusEventFactory factory;
+		private final Map<List<Option>, List<Option>> lists = new HashMap<>();
+
+		private Resolver(WeekCache weekCache) {
+			this.weekCache = weekCache;
+			this.factory = newFactory();
+		}
+
+		private SplusEventFactory newFactory() {
+			SplusEventFactory factory = new SplusEventFactory();
+			factory.setBaseUrl(template.getBaseUrl());
+			factory.setTransport(template.getTransport());
+			factory.setResponseCache(template.getResponseCache());
+			factory.setCatalog(template.getCatalog());
+			factory.setDateCalculator(template.getDateCalculator());
+			factory.setWeekCache(weekCache);
+			factory.setMetricsListener(template.getMetricsListener());
+			factory.setEventStore(template.getEventStore());
+			return factory;
+		}
+
+		private Selection resolve(ExportJob job) 
+				throws MissingSettingException, IOException {
+			Option faculty = find(list(), job.getFaculty(), "faculty");
+			Option plan = find(list(faculty), job.getPlan(), "plan");
+			Option studyPath = find(
+					list(faculty, plan), job.getStudyPath(), "study path");
+			Option group = null;
+
+			if(job.getGroup() != null) {
+				group = find(list(faculty, plan, studyPath), 
+						job.getGroup(), "group");
+			}
+			else if(plan.getTitle().equals("Studentensetpläne")) {
+				List<Option> groups = list(faculty, plan, studyPath);
+
+				//the first entry of the list is no group
+				if(groups.size() < 2) {
+					throw new MissingSettingException("There is no group for \"" 
+							+ studyPath.getTitle() + "\"");
+				}
+				if(groups.size() > 2) {
+					throw new MissingSettingException("Choose one of " 
+							+ (groups.size() - 1) + " groups for \"" 
+							+ studyPath.getTitle() + "\"");
+				}
+				group = groups.get(1);
+			}
+
+			return new Selection(faculty, plan, studyPath, group);
+		}
+
+		/**
+		 * @param path  The options chosen so far
+		 * @return      The options to choose from next
+		 */
+		private List<Option> list(Option... path) 
+				throws MissingSettingException, IOException {
+			List<Option> key = Arrays.asList(path);
+			List<Option> list = lists.get(key);
+
+			if(list == null) {
+				switch(path.length) {
+				case 0:
+					list = factory.getFaculties();
+					break;
+				case 1:
+					list = factory.getPlans(
+							new Selection(path[0], null, null, null));
+					break;
+				case 2:
+					list = factory.getStudyPaths(
+							new Selection(path[0], path[1], null, null));
+					break;
+				default:
+					list = factory.getGroups(
+							new Selection(path[0], path[1], path[2], null));
+				}
+
+				lists.put(key, list);
+			}
+
+			return list;
+		}
+
+		private Option find(List<Option> list, String title, String kind) 
+				throws MissingSettingException {
+			for(Option option:list) {
+				if(option.getTitle().equals(title)) {
+					return option;
+				}
+			}
+
+			throw new MissingSettingException(
+					"There is no " + kind + " \"" + title + "\"");
+		}
+	}
+
+	/**
+	 * The state of a single job while the batch runs.
+	 */
+	private static final class Run {
+		private final ExportJob job;
+		private final SplusEventToCalendar writer;
+
+		private Selection selection;
+		private Exception failure;
+
+		private final SortedMap<Integer, List<SplusEvent>> events = 
+				new ConcurrentSkipListMap<>();
+		private final SortedMap<Integer, Exception> weekFailures = 
+				new ConcurrentSkipListMap<>();
+		private final AtomicInteger remaining = new AtomicInteger();
+
+		private long resolveNanos;
+		private long fetchStart = Long.MAX_VALUE;
+		private long fetchEnd = Long.MIN_VALUE;
+		private volatile long writeNanos = -1;
+		private volatile int eventCount;
+
+		private Run(ExportJob job, SplusEventToCalendar writer) {
+			this.job = job;
+			this.writer = writer;
+		}
+
+		private synchronized void fetched(long start, long end) {
+			fetchStart = Math.min(fetchStart, start);
+			fetchEnd = Math.max(fetchEnd, end);
+		}
+
+		private void write() {
+			long start = System.nanoTime();
+
+			if(weekFailures.isEmpty()) {
+				List<SplusEvent> all = new ArrayList<>();
+
+				for(List<SplusEvent> week:events.values()) {
+					all.addAll(week);
+				}
+
+				try {
+					writer.writeToFile(all, job.getFile());
+					eventCount = all.size();
+				} catch (IOException | RuntimeException e) {
+					failure = e;
+				}
+			}
+
+			events.clear();
+			writeNanos = System.nanoTime() - start;
+		}
+
+		private synchronized BatchReport.JobReport report() {
+			long fetchNanos = fetchEnd < fetchStart ? 0 : fetchEnd - fetchStart;
+
+			return new BatchReport.JobReport(
+					job,
+					TimeUnit.NANOSECONDS.toMillis(resolveNanos),
+					TimeUnit.NANOSECONDS.toMillis(fetchNanos),
+					TimeUnit.NANOSECONDS.toMillis(Math.max(0, writeNanos)),
+					eventCount,
+					weekFailures,
+					failure);
+		}
+	}
+
+	/**
+	 * A single week of a single job.
+	 */
+	private static final class Task implements Runnable {
+		private final SplusEventFactory factory;
+		private final Run run;
+		private final int week;
+
+		private Task(SplusEventFactory factory, Run run, int week) {
+			this.factory = factory;
+			this.run = run;
+			this.week = week;
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+
+			try {
+				run.events.put(week, factory.getEventsFromWeek(run.selection, week));
+			} catch (Exception e) {
+				run.weekFailures.put(week, e);
+			}
+
+			run.fetched(start, System.nanoTime());
+
+			//the last week of a job writes its calendar
+			if(run.remaining.decrementAndGet() == 0) {
+				run.write();
+			}
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package de.ole.splusreader.logic.batch;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * The summary of a run of the {@link BatchExporter} with the timings of every
+ * job.
+ */
+public final class BatchReport {
+
+	private final List<JobReport> jobs;
+	private final long totalMillis;
+
+	public BatchReport(List<JobReport> jobs, long totalMillis) {
+		this.jobs = Collections.unmodifiableList(jobs);
+		this.totalMillis = totalMillis;
+	}
+
+	/**
+	 * @return the reports of all jobs in the order they were given
+	 */
+	public List<JobReport> getJobs() {
+		return jobs;
+	}
+
+	/**
+	 * @return the time the whole batch took
+	 */
+	public long getTotalMillis() {
+		return totalMillis;
+	}
+
+	/**
+	 * @return true if at least one calendar could not be written
+	 */
+	public boolean hasFailures() {
+		for(JobReport job:jobs) {
+			if(!job.isSuccessful()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+
+		for(JobReport job:jobs) {
+			builder.append(job).append(System.lineSeparator());
+		}
+
+		return builder.append("total: ").append(totalMillis).append(" ms")
+				.toString();
+	}
+
+	/**
+	 * What happened to a single job.
+	 */
+	public static final class JobReport {
+		private final ExportJob job;
+		private final long resolveMillis;
+		private final long fetchMillis;
+		private final long writeMillis;
+		private final int eventCount;
+		private final SortedMap<Integer, Exception> weekFailures;
+		private final Exception failure;
+
+		public JobReport(
+				ExportJob job,
+				long resolveMillis,
+				long fetchMillis,
+				long writeMillis,
+				int eventCount,
+				SortedMap<Integer, Exception> weekFailures,
+				Exception failure) {
+			this.job = job;
+			this.resolveMillis = resolveMillis;
+			this.fetchMillis = fetchMillis;
+			this.writeMillis = writeMillis;
+			this.eventCount = eventCount;
+			this.weekFailures = Collections.unmodifiableSortedMap(weekFailures);
+			this.failure = failure;
+		}
+
+		public ExportJob getJob() {
+			return job;
+		}
+
+		/**
+		 * @return the time spent finding the options of the selection
+		 */
+		public long getResolveMillis() {
+			return resolveMillis;
+		}
+
+		/**
+		 * @return the time from the start of the first to the end of the last
+		 *         week of the job
+		 */
+		public long getFetchMillis() {
+			return fetchMillis;
+		}
+
+		/**
+		 * @return the time spent writing the calendar
+		 */
+		public long getWriteMillis() {
+			return writeMillis;
+		}
+
+		/**
+		 * @return the number of events written
+		 */
+		public int getEventCount() {
+			return eventCount;
+		}
+
+		/**
+		 * @return the exception for every week that could not be fetched
+		 */
+		public SortedMap<Integer, Exception> getWeekFailures() {
+			return weekFailures;
+		}
+
+		/**
+		 * @return the exception that stopped the job or null
+		 */
+		public Exception getFailure() {
+			return failure;
+		}
+
+		/**
+		 * @return true if the calendar has been written
+		 */
+		public boolean isSuccessful() {
+			return failure == null && weekFailures.isEmpty();
+		}
+
+		public String toString() {
+			return job + ": " 
+					+ (isSuccessful() ? eventCount + " events" 
+							: "failed " + (failure != null ? failure 
+									: "weeks " + weekFailures.keySet()))
+					+ ", resolve " + resolveMillis + " ms"
+					+ ", fetch " + fetchMillis + " ms"
+					+ ", write " + writeMillis + " ms";
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package de.ole.splusreader.logic.batch;
+
+import java.io.File;
+
+/**
+ * One calendar to be written by the {@link BatchExporter}: a selection of
+ * faculty, plan, study path and, if necessary, group given by their titles,
+ * and the file the calendar is written to.
+ */
+public final class ExportJob {
+
+	private final String faculty;
+	private final String plan;
+	private final String studyPath;
+	private final String group;
+	private final File file;
+
+	/**
+	 * @param faculty    The title of the faculty
+	 * @param plan       The title of the plan
+	 * @param studyPath  The title of the study path
+	 * @param group      The title of the group or null to choose the only
+	 *                   group of the study path automatically
+	 * @param file       The file the calendar is written to
+	 */
+	public ExportJob(
+			String faculty, 
+			String plan, 
+			String studyPath, 
+			String group,
+			File file) {
+		this.faculty = faculty;
+		this.plan = plan;
+		this.studyPath = studyPath;
+		this.group = group;
+		this.file = file;
+	}
+
+	public String getFaculty() {
+		return faculty;
+	}
+
+	public String getPlan() {
+		return plan;
+	}
+
+	public String getStudyPath() {
+		return studyPath;
+	}
+
+	/**
+	 * @return the title of the group or null if it is chosen automatically
+	 */
+	public String getGroup() {
+		return group;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public String toString() {
+		return faculty + " / " + plan + " / " + studyPath
+				+ (group == null ? "" : " / " + group)
+				+ " -> " + file;
+	}
+}
@@ -0,0 +1,431 @@
+package de.ole.splusreader.logic.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.ole.splusreader.logic.transport.SplusRequest;
+import de.ole.splusreader.logic.transport.SplusResponse;
+import de.ole.splusreader.logic.transport.SplusTransport;
+
+/**
+ * A response cache on disk for the pages fetched from splus.
+ *
+ * Every response is stored in its own file, keyed by the request method, the
+ * URL (which carries plan and identifier) and the form data (filter, group and
+ * week). As long as an entry is younger than the time to live of its page type
+ * it is served without any network access. After that it is revalidated with
+ * If-None-Match and If-Modified-Since, if the server handed out an ETag or a
+ * Last-Modified date, so unchanged pages are not transferred again.
+ *
+ * If enabled, an expired entry is served as it is when the server can't be
+ * reached or answers with a 5xx, so a failing splus doesn't stop an export.
+ *
+ * When the entries exceed the maximum size on disk the least recently used
+ * ones are removed.
+ *
+ * The cache can be shared between several factories and threads.
+ */
+public class DiskResponseCache {
+
+	/**
+	 * The kinds of pages with their own time to live.
+	 */
+	public enum PageType {
+		/** Lists of faculties, plans, study paths and groups */
+		CATALOG,
+		/** The timetable of a single week */
+		WEEK
+	}
+
+	private static final int FORMAT_VERSION = 1;
+	private static final String SUFFIX = ".entry";
+
+	private final File directory;
+	private final long maxBytes;
+
+	private final Map<PageType, Long> timeToLive = new HashMap<>();
+	private volatile long staleIfErrorMillis;
+
+	//file name -> size and last access of every entry on disk
+	private final Map<String, IndexEntry> index = new HashMap<>();
+	private long totalBytes;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong revalidations = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong staleHits = new AtomicLong();
+
+	/**
+	 * @param directory     The directory holding the entries, created if
+	 *                      necessary
+	 * @param maxBytes      The maximum size of all entries together
+	 * @throws IOException  If the directory can't be created
+	 */
+	public DiskResponseCache(File directory, long maxBytes)
+			throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create cache directory "
+					+ directory);
+		}
+
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+
+		timeToLive.put(PageType.CATALOG, TimeUnit.DAYS.toMillis(1));
+		timeToLive.put(PageType.WEEK, TimeUnit.HOURS.toMillis(1));
+
+		File[] files = directory.listFiles();
+
+		if(files != null) {
+			for(File file:files) {
+				if(file.getName().endsWith(SUFFIX)) {
+					index.put(file.getName(),
+							new IndexEntry(file.length(), file.lastModified()));
+					totalBytes += file.length();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param type    The kind of page
+	 * @param millis  How long an entry of that kind is served without asking
+	 *                the server
+	 */
+	public synchronized void setTimeToLive(PageType type, long millis) {
+		timeToLive.put(type, millis);
+	}
+
+	/**
+	 * @param type  The kind of page
+	 * @return      How long an entry of that kind is served without asking
+	 *              the server
+	 */
+	public synchronized long getTimeToLive(PageType type) {
+		return timeToLive.get(type);
+	}
+
+	/**
+	 * @param millis  How long after it has expired an entry is still served
+	 *                when the server fails, 0 by default to never serve it
+	 */
+	public void setStaleIfErrorMillis(long millis) {
+		this.staleIfErrorMillis = millis;
+	}
+
+	/**
+	 * @return how long after it has expired an entry is still served when
+	 *         the server fails
+	 */
+	public long getStaleIfErrorMillis() {
+		return staleIfErrorMillis;
+	}
+
+	/**
+	 * Executes the request with the transport unless a fresh answer is in the
+	 * cache.
+	 *
+	 * @param request       The request to answer
+	 * @param type          The kind of page requested
+	 * @param transport     Carries the request on a miss or revalidation
+	 * @return              The successful response
+	 * @throws IOException  If the page is neither cached nor can be fetched
+	 */
+	public SplusResponse get(
+			SplusRequest request,
+			PageType type,
+			SplusTransport transport)
+			throws IOException {
+		String key = request.getKey();
+		String fileName = request.getDigest() + SUFFIX;
+		File file = new File(directory, fileName);
+
+		Entry entry = read(file, key);
+		long now = System.currentTimeMillis();
+
+		if(entry != null && now - entry.storedAt < getTimeToLive(type)) {
+			hits.incrementAndGet();
+			touch(fileName, file, now);
+			return entry.toResponse();
+		}
+
+		if(entry != null) {
+			if(!entry.eTag.isEmpty())
+				request = request.header("If-None-Match", entry.eTag);
+			if(!entry.lastModified.isEmpty())
+				request = request.header("If-Modified-Since", entry.lastModified);
+		}
+
+		SplusResponse response;
+
+		try {
+			response = transport.execute(request);
+		} catch (IOException e) {
+			if(isUsableOnError(entry, type, now)) {
+				staleHits.incrementAndGet();
+				return entry.toResponse();
+			}
+			throw e;
+		}
+
+		if(response.getStatusCode() >= 500 && isUsableOnError(entry, type, now)) {
+			staleHits.incrementAndGet();
+			return entry.toResponse();
+		}
+
+		if(entry != null && response.getStatusCode() == 304) {
+			revalidations.incrementAndGet();
+			entry = new Entry(key, now, entry.eTag, entry.lastModified,
+					entry.charset, entry.url, entry.body);
+			write(fileName, file, entry);
+			return entry.toResponse();
+		}
+
+		response.checkStatus();
+
+		misses.incrementAndGet();
+		entry = new Entry(
+				key,
+				now,
+				nullToEmpty(response.getHeader("ETag")),
+				nullToEmpty(response.getHeader("Last-Modified")),
+				nullToEmpty(response.getCharset()),
+				response.getUrl(),
+				response.getBody());
+		write(fileName, file, entry);
+
+		return response;
+	}
+
+	/**
+	 * Removes every entry from the cache.
+	 */
+	public synchronized void clear() {
+		for(String fileName:index.keySet()) {
+			new File(directory, fileName).delete();
+		}
+		index.clear();
+		totalBytes = 0;
+	}
+
+	/**
+	 * @return the number of requests answered without asking the server
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of requests that had to be downloaded
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of expired entries the server confirmed unchanged
+	 */
+	public long getRevalidationCount() {
+		return revalidations.get();
+	}
+
+	/**
+	 * @return the number of expired entries served because the server failed
+	 */
+	public long getStaleHitCount() {
+		return staleHits.get();
+	}
+
+	/**
+	 * @return the number of entries removed to stay below the maximum size
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the size of all entries on disk
+	 */
+	public synchronized long getSize() {
+		return totalBytes;
+	}
+
+	public String toString() {
+		return "hits: " + hits + ", misses: " + misses
+				+ ", revalidations: " + revalidations
+				+ ", evictions: " + evictions
+				+ ", stale hits: " + staleHits;
+	}
+
+	private boolean isUsableOnError(Entry entry, PageType type, long now) {
+		return entry != null && staleIfErrorMillis > 0
+				&& now - entry.storedAt 
+						< getTimeToLive(type) + staleIfErrorMillis;
+	}
+
+	private static String nullToEmpty(String string) {
+		return string == null ? "" : string;
+	}
+
+	private static Entry read(File file, String key) {
+		if(!file.isFile()) {
+			return null;
+		}
+
+		try(DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			if(in.readInt() != FORMAT_VERSION || !in.readUTF().equals(key)) {
+				return null;
+			}
+
+			long storedAt = in.readLong();
+			String eTag = in.readUTF();
+			String lastModified = in.readUTF();
+			String charset = in.readUTF();
+			String url = in.readUTF();
+			byte[] body = new byte[in.readInt()];
+			in.readFully(body);
+
+			return new Entry(key, storedAt, eTag, lastModified,
+					charset, url, body);
+		} catch (IOException e) {
+			//a broken entry is treated like a missing one
+			return null;
+		}
+	}
+
+	private void write(String fileName, File file, Entry entry)
+			throws IOException {
+		File temp = File.createTempFile("splus", ".tmp", directory);
+
+		try {
+			try(DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(FORMAT_VERSION);
+				out.writeUTF(entry.key);
+				out.writeLong(entry.storedAt);
+				out.writeUTF(entry.eTag);
+				out.writeUTF(entry.lastModified);
+				out.writeUTF(entry.charset);
+				out.writeUTF(entry.url);
+				out.writeInt(entry.body.length);
+				out.write(entry.body);
+			}
+
+			Files.move(temp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temp.delete();
+		}
+
+		synchronized(this) {
+			IndexEntry old = index.put(fileName,
+					new IndexEntry(file.length(), entry.storedAt));
+
+			if(old != null)
+				totalBytes -= old.size;
+			totalBytes += file.length();
+
+			evict(fileName);
+		}
+	}
+
+	private synchronized void touch(String fileName, File file, long now) {
+		IndexEntry entry = index.get(fileName);
+
+		if(entry != null) {
+			entry.lastAccess = now;
+			//keeps the order of use across restarts
+			file.setLastModified(now);
+		}
+	}
+
+	private void evict(String keep) {
+		if(totalBytes <= maxBytes) {
+			return;
+		}
+
+		List<Map.Entry<String, IndexEntry>> entries =
+				new ArrayList<>(index.entrySet());
+		entries.sort((a, b) ->
+				Long.compare(a.getValue().lastAccess, b.getValue().lastAccess));
+
+		for(Map.Entry<String, IndexEntry> entry:entries) {
+			if(totalBytes <= maxBytes) {
+				break;
+			}
+			if(entry.getKey().equals(keep)) {
+				continue;
+			}
+
+			new File(directory, entry.getKey()).delete();
+			index.remove(entry.getKey());
+			totalBytes -= entry.getValue().size;
+			evictions.incrementAndGet();
+		}
+	}
+
+	private static final class IndexEntry {
+		private final long size;
+		private long lastAccess;
+
+		private IndexEntry(long size, long lastAccess) {
+			this.size = size;
+			this.lastAccess = lastAccess;
+		}
+	}
+
+	private static final class Entry {
+		private final String key;
+		private final long storedAt;
+		private final String eTag;
+		private final String lastModified;
+		private final String charset;
+		private final String url;
+		private final byte[] body;
+
+		private Entry(
+				String key,
+				long storedAt,
+				String eTag,
+				String lastModified,
+				String charset,
+				String url,
+				byte[] body) {
+			this.key = key;
+			this.storedAt = storedAt;
+			this.eTag = eTag;
+			this.lastModified = lastModified;
+			this.charset = charset;
+			this.url = url;
+			this.body = body;
+		}
+
+		private SplusResponse toResponse() {
+			Map<String, String> headers = new HashMap<>();
+
+			if(!eTag.isEmpty())
+				headers.put("ETag", eTag);
+			if(!lastModified.isEmpty())
+				headers.put("Last-Modified", lastModified);
+
+			return new SplusResponse(200, url, headers,
+					charset.isEmpty() ? null : charset, body);
+		}
+	}
+}
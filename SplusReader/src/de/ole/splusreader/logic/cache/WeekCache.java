@@ -0,0 +1,326 @@
+package de.ole.splusreader.logic.cache;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import de.ole.splusreader.logic.MissingSettingException;
+import de.ole.splusreader.logic.Option;
+import de.ole.splusreader.logic.SplusEvent;
+
+/**
+ * An in-memory cache for the parsed events of single weeks.
+ *
+ * It keeps at most a fixed number of weeks, dropping the least recently used
+ * one first, and every week expires a fixed time after it has been loaded.
+ * Callers asking for a week that is being loaded at that moment wait for that
+ * load instead of starting their own.
+ *
+ * The cached lists are unmodifiable.
+ */
+public class WeekCache {
+
+	/**
+	 * Loads the events of a week on a cache miss.
+	 */
+	public interface Loader {
+		List<SplusEvent> load() throws MissingSettingException, IOException;
+	}
+
+	private final int maxEntries;
+	private final long timeToLive;
+
+	private final LinkedHashMap<Key, Entry> entries =
+			new LinkedHashMap<>(16, 0.75f, true);
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param maxEntries        The maximum number of weeks kept
+	 * @param timeToLiveMillis  How long a loaded week is served
+	 */
+	public WeekCache(int maxEntries, long timeToLiveMillis) {
+		if(maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be at least 1");
+		}
+
+		this.maxEntries = maxEntries;
+		this.timeToLive = timeToLiveMillis;
+	}
+
+	/**
+	 * Returns the cached events of the week or loads them with the loader.
+	 *
+	 * @param key                       The week to get
+	 * @param loader                    Loads the week on a miss
+	 * @return                          The unmodifiable list of events
+	 * @throws MissingSettingException  If the loader throws it
+	 * @throws IOException              If the loader throws it or the waiting
+	 *                                  for another load gets interrupted
+	 */
+	public List<SplusEvent> get(Key key, Loader loader)
+			throws MissingSettingException, IOException {
+		Entry entry;
+		boolean loading = false;
+
+		synchronized(this) {
+			entry = entries.get(key);
+
+			if(entry != null && entry.isExpired(System.currentTimeMillis())) {
+				entries.remove(key);
+				entry = null;
+			}
+
+			if(entry == null) {
+				entry = new Entry();
+				entries.put(key, entry);
+				loading = true;
+				trim();
+			}
+		}
+
+		if(loading) {
+			return load(key, entry, loader);
+		}
+
+		hits.incrementAndGet();
+
+		try {
+			return entry.events.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"Interrupted while waiting for week " + key.week);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+
+			if(cause instanceof IOException)
+				throw (IOException) cause;
+			if(cause instanceof MissingSettingException)
+				throw (MissingSettingException) cause;
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if(cause instanceof Error)
+				throw (Error) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	private List<SplusEvent> load(Key key, Entry entry, Loader loader)
+			throws MissingSettingException, IOException {
+		misses.incrementAndGet();
+
+		try {
+			List<SplusEvent> events = Collections.unmodifiableList(
+					new ArrayList<>(loader.load()));
+
+			entry.expiresAt = System.currentTimeMillis() + timeToLive;
+			entry.events.complete(events);
+
+			return events;
+		} catch (MissingSettingException | IOException | RuntimeException
+				| Error e) {
+			//failures are not cached, the next caller tries again
+			synchronized(this) {
+				entries.remove(key, entry);
+			}
+			entry.events.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the cached events of the week without loading it, e.g. to
+	 * find the weeks still to be fetched.
+	 *
+	 * @param key  The week to get
+	 * @return     The unmodifiable list of events or null if the week isn't
+	 *             loaded yet
+	 */
+	public List<SplusEvent> getIfPresent(Key key) {
+		Entry entry;
+
+		synchronized(this) {
+			entry = entries.get(key);
+
+			if(entry == null || !entry.events.isDone()
+					|| entry.events.isCompletedExceptionally()
+					|| entry.isExpired(System.currentTimeMillis())) {
+				return null;
+			}
+		}
+
+		hits.incrementAndGet();
+		return entry.events.join();
+	}
+
+	private void trim() {
+		Iterator<Entry> iterator = entries.values().iterator();
+
+		while(entries.size() > maxEntries && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Removes a single week.
+	 *
+	 * @param key the week to be removed
+	 */
+	public synchronized void invalidate(Key key) {
+		entries.remove(key);
+	}
+
+	/**
+	 * Removes all weeks matching the predicate, e.g. all weeks of a study path.
+	 *
+	 * @param predicate selects the weeks to be removed
+	 */
+	public synchronized void invalidateIf(Predicate<Key> predicate) {
+		entries.keySet().removeIf(predicate);
+	}
+
+	/**
+	 * Removes all weeks.
+	 */
+	public synchronized void invalidateAll() {
+		entries.clear();
+	}
+
+	/**
+	 * @return the number of weeks currently cached or being loaded
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return a copy of the keys of all cached weeks
+	 */
+	public synchronized List<Key> keys() {
+		return new ArrayList<>(entries.keySet());
+	}
+
+	/**
+	 * @return the number of requests answered from the cache
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of requests that had to be loaded
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public String toString() {
+		return "hits: " + hits + ", misses: " + misses;
+	}
+
+	private static final class Entry {
+		private final CompletableFuture<List<SplusEvent>> events =
+				new CompletableFuture<>();
+		private volatile long expiresAt = Long.MAX_VALUE;
+
+		private boolean isExpired(long now) {
+			return events.isDone() && now >= expiresAt;
+		}
+	}
+
+	/**
+	 * Identifies the week of a selection on a splus installation.
+	 */
+	public static final class Key {
+		private final String baseUrl;
+		private final Option plan;
+		private final Option studyPath;
+		private final Option group;
+		private final int week;
+
+		public Key(
+				String baseUrl,
+				Option plan,
+				Option studyPath,
+				Option group,
+				int week) {
+			this.baseUrl = baseUrl;
+			this.plan = plan;
+			this.studyPath = studyPath;
+			this.group = group;
+			this.week = week;
+		}
+
+		public String getBaseUrl() {
+			return baseUrl;
+		}
+
+		public Option getPlan() {
+			return plan;
+		}
+
+		public Option getStudyPath() {
+			return studyPath;
+		}
+
+		public Option getGroup() {
+			return group;
+		}
+
+		public int getWeek() {
+			return week;
+		}
+
+		public String toString() {
+			return baseUrl + " " + plan + " / " + studyPath + " / " + group
+					+ " / " + week;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result
+					+ ((baseUrl == null) ? 0 : baseUrl.hashCode());
+			result = prime * result + ((plan == null) ? 0 : plan.hashCode());
+			result = prime * result
+					+ ((studyPath == null) ? 0 : studyPath.hashCode());
+			result = prime * result + ((group == null) ? 0 : group.hashCode());
+			result = prime * result + week;
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			Key other = (Key) obj;
+			return week == other.week
+					&& (baseUrl == null
+							? other.baseUrl == null
+							: baseUrl.equals(other.baseUrl))
+					&& equal(plan, other.plan)
+					&& equal(studyPath, other.studyPath)
+					&& equal(group, other.group);
+		}
+
+		private static boolean equal(Option a, Option b) {
+			return a == null ? b == null : a.equals(b);
+		}
+	}
+}
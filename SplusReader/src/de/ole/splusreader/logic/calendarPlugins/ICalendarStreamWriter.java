@@ -0,0 +1,330 @@
+package de.ole.splusreader.logic.calendarPlugins;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+import de.ole.splusreader.logic.SplusEvent;
+
+/**
+ * Writes an iCalendar (RFC 5545) event by event without building the calendar
+ * in memory first.
+ *
+ * The header is written on construction, every call to {@link #write} appends
+ * one VEVENT and {@link #close} writes the footer. A writer whose events
+ * couldn't be written completely should not be closed, so the calendar
+ * doesn't end as if it were complete. Only a single content line
+ * and a small output buffer are held at any time, no matter how many events
+ * are written.
+ *
+ * Content lines are folded after 75 octets of UTF-8 without splitting a
+ * character, and text values are escaped as required by the RFC. Apart from
+ * UID, DTSTAMP and PRODID the content is the same biweekly writes for the
+ * events. The UID is taken from the content hash of the event, so an event
+ * keeps its UID in every calendar it is written to.
+ *
+ * Instances are not thread-safe.
+ */
+public class ICalendarStreamWriter implements Closeable, Flushable {
+
+	private static final int MAX_LINE_OCTETS = 75;
+	private static final String PRODUCT_ID = "-//splusReader//SplusToICalendar//DE";
+
+	private static final DateTimeFormatter DATE_TIME = DateTimeFormatter
+			.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+			.withZone(ZoneOffset.UTC);
+
+	private final WritableByteChannel channel;
+	private final OutputStream outputstream;
+	private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+	private final StringBuilder line = new StringBuilder(256);
+	private final String timeStamp;
+
+	//The content hash of the last event and how often it came in a row
+	private long lastHash;
+	private int repeats;
+
+	private boolean closed;
+	private long bytesWritten;
+
+	/**
+	 * Writes the calendar to the output stream, which is flushed but not
+	 * closed by {@link #close}.
+	 *
+	 * @param outputstream  The stream to write to
+	 * @throws IOException  If the header can't be written
+	 */
+	public ICalendarStreamWriter(OutputStream outputstream)
+			throws IOException {
+		this(Channels.newChannel(outputstream), outputstream);
+	}
+
+	/**
+	 * Writes the calendar to the channel, which is not closed by
+	 * {@link #close}.
+	 *
+	 * @param channel       The channel to write to
+	 * @throws IOException  If the header can't be written
+	 */
+	public ICalendarStreamWriter(WritableByteChannel channel)
+			throws IOException {
+		this(channel, null);
+	}
+
+	private ICalendarStreamWriter(
+			WritableByteChannel channel,
+			OutputStream outputstream)
+			throws IOException {
+		this.channel = channel;
+		this.outputstream = outputstream;
+		this.timeStamp = DATE_TIME.format(new Date().toInstant());
+
+		writeLine("BEGIN:VCALENDAR");
+		writeLine("VERSION:2.0");
+		line.append("PRODID:").append(PRODUCT_ID);
+		writeLine();
+	}
+
+	/**
+	 * Appends the event as a VEVENT.
+	 *
+	 * @param event         The event to write
+	 * @throws IOException  If the event can't be written
+	 */
+	public void write(SplusEvent event) throws IOException {
+		if(closed) {
+			throw new IOException("The calendar has already been closed");
+		}
+
+		writeLine("BEGIN:VEVENT");
+
+		long hash = event.getContentHash();
+		repeats = hash == lastHash ? repeats + 1 : 0;
+		lastHash = hash;
+
+		line.append("UID:").append(Long.toHexString(hash));
+		//the same event twice still needs two UIDs
+		if(repeats > 0)
+			line.append('-').append(repeats);
+		line.append("@splusreader");
+		writeLine();
+
+		line.append("DTSTAMP:").append(timeStamp);
+		writeLine();
+
+		if(event.getLocation() != null) {
+			line.append("LOCATION:");
+			appendText(event.getLocation());
+			writeLine();
+		}
+
+		line.append("ORGANIZER");
+		if(event.getPresenter() != null) {
+			line.append(";CN=");
+			appendParameter(event.getPresenter());
+		}
+		line.append(":mailto:");
+		writeLine();
+
+		line.append("SUMMARY;LANGUAGE=de-de:");
+		appendText(event.getTitle() == null ? "" : event.getTitle());
+		if(event.getDescription() != null && !event.getDescription().isEmpty()) {
+			appendText(" -- ");
+			appendText(event.getDescription());
+		}
+		writeLine();
+
+		appendDate("DTSTART:", event.getStart());
+		appendDate("DTEND:", event.getEnd());
+
+		writeLine("END:VEVENT");
+	}
+
+	/**
+	 * Writes out everything buffered so far.
+	 */
+	@Override
+	public void flush() throws IOException {
+		drain();
+
+		if(outputstream != null) {
+			outputstream.flush();
+		}
+	}
+
+	/**
+	 * Writes the footer and flushes the calendar. The underlying stream or
+	 * channel stays open.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+
+		closed = true;
+		writeLine("END:VCALENDAR");
+		flush();
+	}
+
+	/**
+	 * @return the number of bytes handed to the stream or channel so far
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	private void appendDate(String name, Date date) throws IOException {
+		if(date != null) {
+			line.append(name);
+			DATE_TIME.formatTo(date.toInstant(), line);
+			writeLine();
+		}
+	}
+
+	private void appendText(String text) {
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+
+			switch(c) {
+			case '\\':
+				line.append("\\\\");
+				break;
+			case ';':
+				line.append("\\;");
+				break;
+			case ',':
+				line.append("\\,");
+				break;
+			case '\r':
+				//\r\n is a single line break
+				if(i + 1 < text.length() && text.charAt(i + 1) == '\n')
+					i++;
+				line.append("\\n");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			default:
+				line.append(c);
+			}
+		}
+	}
+
+	private void appendParameter(String value) {
+		int start = line.length();
+		boolean quote = false;
+
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if(c == '\r' || c == '\n') {
+				if(c == '\r' && i + 1 < value.length()
+						&& value.charAt(i + 1) == '\n')
+					i++;
+				line.append(' ');
+			}
+			else if(c == '"') {
+				//quotes can't be escaped in parameter values
+				line.append('\'');
+			}
+			else if(c < 0x20 && c != '\t' || c == 0x7F) {
+				//control characters aren't allowed at all
+			}
+			else {
+				quote |= c == ',' || c == ':' || c == ';';
+				line.append(c);
+			}
+		}
+
+		if(quote) {
+			line.insert(start, '"').append('"');
+		}
+	}
+
+	private void writeLine(String content) throws IOException {
+		line.append(content);
+		writeLine();
+	}
+
+	/**
+	 * Encodes the current line as UTF-8, folding it where necessary, and
+	 * clears it for the next one.
+	 */
+	private void writeLine() throws IOException {
+		int octets = 0;
+
+		for(int i = 0; i < line.length(); i++) {
+			int codePoint = Character.codePointAt(line, i);
+
+			if(Character.isSurrogate((char) codePoint)
+					&& codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT)
+				codePoint = '?';
+
+			int length = codePoint < 0x80 ? 1
+					: codePoint < 0x800 ? 2
+					: codePoint < 0x10000 ? 3 : 4;
+
+			if(octets + length > MAX_LINE_OCTETS) {
+				put((byte) '\r');
+				put((byte) '\n');
+				put((byte) ' ');
+				octets = 1;
+			}
+
+			switch(length) {
+			case 1:
+				put((byte) codePoint);
+				break;
+			case 2:
+				put((byte) (0xC0 | codePoint >> 6));
+				put((byte) (0x80 | codePoint & 0x3F));
+				break;
+			case 3:
+				put((byte) (0xE0 | codePoint >> 12));
+				put((byte) (0x80 | codePoint >> 6 & 0x3F));
+				put((byte) (0x80 | codePoint & 0x3F));
+				break;
+			default:
+				put((byte) (0xF0 | codePoint >> 18));
+				put((byte) (0x80 | codePoint >> 12 & 0x3F));
+				put((byte) (0x80 | codePoint >> 6 & 0x3F));
+				put((byte) (0x80 | codePoint & 0x3F));
+				i++;
+			}
+
+			octets += length;
+		}
+
+		put((byte) '\r');
+		put((byte) '\n');
+		line.setLength(0);
+	}
+
+	private void drain() throws IOException {
+		//called on Buffer, as the ByteBuffer overrides only exist since Java 9
+		((Buffer) buffer).flip();
+
+		while(buffer.hasRemaining()) {
+			bytesWritten += channel.write(buffer);
+		}
+
+		((Buffer) buffer).clear();
+	}
+
+	private void put(byte b) throws IOException {
+		if(!buffer.hasRemaining()) {
+			drain();
+		}
+
+		buffer.put(b);
+	}
+}
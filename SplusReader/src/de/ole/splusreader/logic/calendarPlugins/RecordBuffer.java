@@ -0,0 +1,242 @@
+package de.ole.splusreader.logic.calendarPlugins;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The output of a {@link RecordExporter}: a direct buffer that is drained
+ * into a channel whenever it is full.
+ *
+ * Texts are encoded as UTF-8 and numbers and dates are formatted right into
+ * the buffer, so writing a record creates no objects. A buffer is reused for
+ * every file written by its thread.
+ */
+final class RecordBuffer {
+
+	private static final int CAPACITY = 64 * 1024;
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(CAPACITY);
+	private final byte[] digits = new byte[20];
+
+	private WritableByteChannel channel;
+	private long bytesWritten;
+
+	/**
+	 * Starts writing to a channel.
+	 */
+	void open(WritableByteChannel channel) {
+		this.channel = channel;
+		this.bytesWritten = 0;
+		((Buffer) buffer).clear();
+	}
+
+	/**
+	 * Forgets the channel, dropping anything not flushed.
+	 */
+	void release() {
+		channel = null;
+		((Buffer) buffer).clear();
+	}
+
+	boolean isOpen() {
+		return channel != null;
+	}
+
+	/**
+	 * @return the number of bytes handed to the channel so far
+	 */
+	long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	void flush() throws IOException {
+		//called on Buffer, as the ByteBuffer overrides only exist since Java 9
+		((Buffer) buffer).flip();
+
+		while(buffer.hasRemaining()) {
+			bytesWritten += channel.write(buffer);
+		}
+
+		((Buffer) buffer).clear();
+	}
+
+	private void ensure(int bytes) throws IOException {
+		if(buffer.remaining() < bytes) {
+			flush();
+		}
+	}
+
+	void put(byte b) throws IOException {
+		if(!buffer.hasRemaining()) {
+			flush();
+		}
+
+		buffer.put(b);
+	}
+
+	void putInt(int value) throws IOException {
+		ensure(4);
+		buffer.putInt(value);
+	}
+
+	void putLong(long value) throws IOException {
+		ensure(8);
+		buffer.putLong(value);
+	}
+
+	/**
+	 * @param text  Text of characters below 0x80 only
+	 */
+	void putAscii(String text) throws IOException {
+		for(int i = 0; i < text.length(); i++) {
+			put((byte) text.charAt(i));
+		}
+	}
+
+	void putUtf8(String text) throws IOException {
+		for(int i = 0; i < text.length(); ) {
+			int codePoint = text.codePointAt(i);
+			i += Character.charCount(codePoint);
+			putCodePoint(codePoint);
+		}
+	}
+
+	/**
+	 * Writes a character as UTF-8, a lone surrogate as '?'.
+	 */
+	void putCodePoint(int codePoint) throws IOException {
+		if(codePoint < 0x80) {
+			put((byte) codePoint);
+			return;
+		}
+
+		if(codePoint >= Character.MIN_SURROGATE
+				&& codePoint <= Character.MAX_SURROGATE) {
+			put((byte) '?');
+			return;
+		}
+
+		ensure(4);
+
+		if(codePoint < 0x800) {
+			buffer.put((byte) (0xC0 | codePoint >> 6));
+			buffer.put((byte) (0x80 | codePoint & 0x3F));
+		}
+		else if(codePoint < 0x10000) {
+			buffer.put((byte) (0xE0 | codePoint >> 12));
+			buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+			buffer.put((byte) (0x80 | codePoint & 0x3F));
+		}
+		else {
+			buffer.put((byte) (0xF0 | codePoint >> 18));
+			buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+			buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+			buffer.put((byte) (0x80 | codePoint & 0x3F));
+		}
+	}
+
+	/**
+	 * @return the number of bytes {@link #putUtf8(String)} writes for the
+	 *         text
+	 */
+	static int utf8Length(String text) {
+		int length = 0;
+
+		for(int i = 0; i < text.length(); ) {
+			int codePoint = text.codePointAt(i);
+			i += Character.charCount(codePoint);
+
+			length += codePoint < 0x80 ? 1
+					: codePoint >= Character.MIN_SURROGATE
+							&& codePoint <= Character.MAX_SURROGATE ? 1
+					: codePoint < 0x800 ? 2
+					: codePoint < 0x10000 ? 3 : 4;
+		}
+
+		return length;
+	}
+
+	/**
+	 * Writes a number in decimal.
+	 */
+	void putDecimal(long value) throws IOException {
+		if(value == Long.MIN_VALUE) {
+			putAscii("-9223372036854775808");
+			return;
+		}
+
+		if(value < 0) {
+			put((byte) '-');
+			value = -value;
+		}
+
+		int count = 0;
+
+		do {
+			digits[count++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while(value > 0);
+
+		while(count > 0) {
+			put(digits[--count]);
+		}
+	}
+
+	/**
+	 * Writes a number of at least width digits, padded with zeros.
+	 */
+	private void putDigits(long value, int width) throws IOException {
+		long limit = 1;
+		for(int i = 1; i < width; i++) {
+			limit *= 10;
+		}
+
+		for(; limit > 1 && value < limit; limit /= 10) {
+			put((byte) '0');
+		}
+
+		putDecimal(value);
+	}
+
+	/**
+	 * Writes a point in time as ISO 8601 in UTC, e.g. 2016-10-04T08:15:00Z.
+	 */
+	void putInstant(long millis) throws IOException {
+		long seconds = Math.floorDiv(millis, 1000L);
+		long days = Math.floorDiv(seconds, 86400L);
+		int secondOfDay = (int) Math.floorMod(seconds, 86400L);
+
+		//the date of the day, counted in eras of 400 years from 0000-03-01
+		long shifted = days + 719468;
+		long era = Math.floorDiv(shifted, 146097L);
+		long dayOfEra = shifted - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524
+				- dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra
+				- (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long monthFromMarch = (5 * dayOfYear + 2) / 153;
+		long day = dayOfYear - (153 * monthFromMarch + 2) / 5 + 1;
+		long month = monthFromMarch < 10 ? monthFromMarch + 3 : monthFromMarch - 9;
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+		if(year < 0) {
+			put((byte) '-');
+			year = -year;
+		}
+
+		putDigits(year, 4);
+		put((byte) '-');
+		putDigits(month, 2);
+		put((byte) '-');
+		putDigits(day, 2);
+		put((byte) 'T');
+		putDigits(secondOfDay / 3600, 2);
+		put((byte) ':');
+		putDigits(secondOfDay / 60 % 60, 2);
+		put((byte) ':');
+		putDigits(secondOfDay % 60, 2);
+		put((byte) 'Z');
+	}
+}
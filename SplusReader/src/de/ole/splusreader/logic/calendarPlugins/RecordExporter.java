@@ -0,0 +1,165 @@
+package de.ole.splusreader.logic.calendarPlugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import de.ole.splusreader.base.SplusEventToCalendar;
+import de.ole.splusreader.logic.SplusEvent;
+import de.ole.splusreader.logic.metrics.MetricsListener;
+
+/**
+ * Writes events as flat records, one after another, for tools that only need
+ * the fields of every event rather than a calendar.
+ *
+ * The records are written through a direct buffer straight into a channel.
+ * Every thread reuses its buffer for all files, so the time taken is that of
+ * the disk rather than of allocating and encoding. A file is written next to
+ * its final name and replaces it atomically once complete, so readers see
+ * either the old or the new file.
+ *
+ * Instances can be shared between threads.
+ */
+public abstract class RecordExporter implements SplusEventToCalendar {
+
+	private static final ThreadLocal<RecordBuffer> BUFFERS =
+			ThreadLocal.withInitial(RecordBuffer::new);
+
+	//Gets told how long writing each file takes
+	private volatile MetricsListener metricsListener = MetricsListener.NONE;
+
+	RecordExporter() {
+	}
+
+	/**
+	 * Writes what comes before the first record.
+	 */
+	void writeHeader(RecordBuffer out) throws IOException {
+	}
+
+	/**
+	 * Writes a single event.
+	 */
+	abstract void writeRecord(SplusEvent event, RecordBuffer out)
+			throws IOException;
+
+	@Override
+	public void writeToFile(List<SplusEvent> eventList, File file)
+			throws IOException {
+		writeToFile(eventList.stream(), file);
+	}
+
+	@Override
+	public void writeToStream(List<SplusEvent> eventList, OutputStream outputstream)
+			throws IOException {
+		writeToStream(eventList.stream(), outputstream);
+	}
+
+	/**
+	 * Writes each event as soon as it arrives. The file is replaced only
+	 * once all events have been written.
+	 */
+	@Override
+	public void writeToFile(Stream<SplusEvent> events, File file)
+			throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile("export", ".tmp", directory);
+
+		try {
+			try(FileChannel channel = FileChannel.open(temp.toPath(),
+					StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				writeToChannel(events, channel);
+			}
+
+			Files.move(temp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Writes each event as soon as it arrives. The stream is flushed but not
+	 * closed.
+	 */
+	@Override
+	public void writeToStream(Stream<SplusEvent> events, OutputStream outputstream)
+			throws IOException {
+		writeToChannel(events, Channels.newChannel(outputstream));
+		outputstream.flush();
+	}
+
+	/**
+	 * Writes the events as they arrive directly to a channel, e.g. a
+	 * FileChannel or a SocketChannel. The channel is not closed.
+	 *
+	 * @param events        The events to write
+	 * @param channel       The channel to write to
+	 * @throws IOException  If writing fails or the events can't be fetched
+	 */
+	public void writeToChannel(Stream<SplusEvent> events, WritableByteChannel channel)
+			throws IOException {
+		long start = System.nanoTime();
+		int[] count = new int[1];
+
+		RecordBuffer out = BUFFERS.get();
+
+		//a stream writing another file on the way needs a buffer of its own
+		if(out.isOpen()) {
+			out = new RecordBuffer();
+		}
+
+		RecordBuffer buffer = out;
+		buffer.open(channel);
+
+		try {
+			writeHeader(buffer);
+
+			events.forEachOrdered(event -> {
+				try {
+					writeRecord(event, buffer);
+					count[0]++;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+
+			buffer.flush();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			buffer.release();
+		}
+
+		metricsListener.calendarWritten(count[0], buffer.getBytesWritten(),
+				System.nanoTime() - start);
+	}
+
+	/**
+	 * @return the listener told about every written file
+	 */
+	public MetricsListener getMetricsListener() {
+		return metricsListener;
+	}
+
+	/**
+	 * By default nothing is measured.
+	 *
+	 * @param metricsListener the listener told about every written file, null
+	 *                        for none
+	 */
+	public void setMetricsListener(MetricsListener metricsListener) {
+		this.metricsListener = metricsListener == null
+				? MetricsListener.NONE : metricsListener;
+	}
+}
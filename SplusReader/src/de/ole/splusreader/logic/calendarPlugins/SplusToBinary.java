@@ -0,0 +1,140 @@
+package de.ole.splusreader.logic.calendarPlugins;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.ole.splusreader.logic.SplusEvent;
+
+/**
+ * Writes the events in a compact binary format, big-endian like a
+ * DataOutputStream:
+ *
+ * The file starts with the int 0x53504C42 ("SPLB") and the int version 1.
+ * Every event follows as a record starting with an int holding the number of
+ * bytes after it, so readers can skip records they don't need. The record
+ * holds the start and end as longs in milliseconds since the epoch, or
+ * SplusEvent.NO_DATE, followed by title, description, location and presenter,
+ * each an int with the number of bytes of UTF-8 following it, or -1 for a
+ * missing value.
+ */
+public class SplusToBinary extends RecordExporter {
+
+	public static final int MAGIC = 0x53504C42;
+	public static final int FORMAT_VERSION = 1;
+
+	@Override
+	void writeHeader(RecordBuffer out) throws IOException {
+		out.putInt(MAGIC);
+		out.putInt(FORMAT_VERSION);
+	}
+
+	@Override
+	void writeRecord(SplusEvent event, RecordBuffer out) throws IOException {
+		String title = event.getTitle();
+		String description = event.getDescription();
+		String location = event.getLocation();
+		String presenter = event.getPresenter();
+
+		int titleLength = length(title);
+		int descriptionLength = length(description);
+		int locationLength = length(location);
+		int presenterLength = length(presenter);
+
+		out.putInt(8 + 8 + 4 * 4
+				+ Math.max(0, titleLength) + Math.max(0, descriptionLength)
+				+ Math.max(0, locationLength) + Math.max(0, presenterLength));
+		out.putLong(event.getStartMillis());
+		out.putLong(event.getEndMillis());
+		putString(title, titleLength, out);
+		putString(description, descriptionLength, out);
+		putString(location, locationLength, out);
+		putString(presenter, presenterLength, out);
+	}
+
+	private static int length(String text) {
+		return text == null ? -1 : RecordBuffer.utf8Length(text);
+	}
+
+	private static void putString(String text, int length, RecordBuffer out)
+			throws IOException {
+		out.putInt(length);
+
+		if(text != null) {
+			out.putUtf8(text);
+		}
+	}
+
+	/**
+	 * @param file          A file written by this exporter
+	 * @return              The events in the file
+	 * @throws IOException  If the file can't be read or is in no known format
+	 */
+	public static List<SplusEvent> readFromFile(File file) throws IOException {
+		try(InputStream in = new FileInputStream(file)) {
+			return readFromStream(in);
+		}
+	}
+
+	/**
+	 * @param in            A stream of the format written by this exporter,
+	 *                      which is read to its end but not closed
+	 * @return              The events in the stream
+	 * @throws IOException  If the stream can't be read or is in no known
+	 *                      format
+	 */
+	public static List<SplusEvent> readFromStream(InputStream in)
+			throws IOException {
+		DataInputStream data = new DataInputStream(
+				new BufferedInputStream(in, 64 * 1024));
+
+		if(data.readInt() != MAGIC) {
+			throw new IOException("Not an event export");
+		}
+
+		int version = data.readInt();
+		if(version != FORMAT_VERSION) {
+			throw new IOException("Unknown export version " + version);
+		}
+
+		List<SplusEvent> events = new ArrayList<>();
+
+		while(true) {
+			try {
+				data.readInt();
+			} catch (EOFException e) {
+				return events;
+			}
+
+			long start = data.readLong();
+			long end = data.readLong();
+			String title = readString(data);
+			String description = readString(data);
+			String location = readString(data);
+			String presenter = readString(data);
+
+			events.add(new SplusEvent(start, end,
+					title, description, location, presenter));
+		}
+	}
+
+	private static String readString(DataInputStream data) throws IOException {
+		int length = data.readInt();
+
+		if(length < 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		data.readFully(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
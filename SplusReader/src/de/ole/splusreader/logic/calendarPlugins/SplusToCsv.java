@@ -0,0 +1,108 @@
+package de.ole.splusreader.logic.calendarPlugins;
+
+import java.io.IOException;
+
+import de.ole.splusreader.logic.SplusEvent;
+
+/**
+ * Writes the events as CSV (RFC 4180): a header line followed by a line per
+ * event with start, end, title, description, location and presenter.
+ *
+ * Start and end are written in UTC like 2016-10-04T08:15:00Z. Fields
+ * containing a separator, quote or line break are quoted, missing values are
+ * left empty.
+ */
+public class SplusToCsv extends RecordExporter {
+
+	private final char separator;
+
+	/**
+	 * Separates the fields with commas.
+	 */
+	public SplusToCsv() {
+		this(',');
+	}
+
+	/**
+	 * @param separator  The character between two fields, e.g. ';' for
+	 *                   spreadsheets expecting the German format
+	 */
+	public SplusToCsv(char separator) {
+		if(separator == '"' || separator == '\r' || separator == '\n'
+				|| separator >= 0x80) {
+			throw new IllegalArgumentException(
+					"Invalid separator '" + separator + "'");
+		}
+
+		this.separator = separator;
+	}
+
+	@Override
+	void writeHeader(RecordBuffer out) throws IOException {
+		out.putAscii("start");
+		out.put((byte) separator);
+		out.putAscii("end");
+		out.put((byte) separator);
+		out.putAscii("title");
+		out.put((byte) separator);
+		out.putAscii("description");
+		out.put((byte) separator);
+		out.putAscii("location");
+		out.put((byte) separator);
+		out.putAscii("presenter");
+		out.putAscii("\r\n");
+	}
+
+	@Override
+	void writeRecord(SplusEvent event, RecordBuffer out) throws IOException {
+		if(event.getStartMillis() != SplusEvent.NO_DATE)
+			out.putInstant(event.getStartMillis());
+		out.put((byte) separator);
+		if(event.getEndMillis() != SplusEvent.NO_DATE)
+			out.putInstant(event.getEndMillis());
+		out.put((byte) separator);
+		putField(event.getTitle(), out);
+		out.put((byte) separator);
+		putField(event.getDescription(), out);
+		out.put((byte) separator);
+		putField(event.getLocation(), out);
+		out.put((byte) separator);
+		putField(event.getPresenter(), out);
+		out.putAscii("\r\n");
+	}
+
+	private void putField(String text, RecordBuffer out) throws IOException {
+		if(text == null) {
+			return;
+		}
+
+		if(!needsQuotes(text)) {
+			out.putUtf8(text);
+			return;
+		}
+
+		out.put((byte) '"');
+
+		for(int i = 0; i < text.length(); ) {
+			int c = text.codePointAt(i);
+			i += Character.charCount(c);
+
+			if(c == '"')
+				out.put((byte) '"');
+			out.putCodePoint(c);
+		}
+
+		out.put((byte) '"');
+	}
+
+	private boolean needsQuotes(String text) {
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+
+			if(c == separator || c == '"' || c == '\r' || c == '\n')
+				return true;
+		}
+
+		return false;
+	}
+}
@@ -1,55 +1,127 @@
 package de.ole.splusreader.logic.calendarPlugins;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.stream.Stream;
 
-import biweekly.Biweekly;
-import biweekly.ICalendar;
-import biweekly.component.VEvent;
-import biweekly.property.Organizer;
-import biweekly.property.Summary;
 import de.ole.splusreader.base.SplusEventToCalendar;
 import de.ole.splusreader.logic.SplusEvent;
+import de.ole.splusreader.logic.metrics.MetricsListener;
 
 public class SplusToICalendar implements SplusEventToCalendar{
+	
+	//Gets told how long writing each calendar takes
+	private volatile MetricsListener metricsListener = MetricsListener.NONE;
 
 	@Override
 	public void writeToFile(List<SplusEvent> eventList, File file) 
 			throws IOException  {
-		OutputStream outputstream = new FileOutputStream(file);
-		
-		writeToStream(eventList, outputstream);
+		writeToFile(eventList.stream(), file);
 	}
 
 	@Override
 	public void writeToStream(List<SplusEvent> eventList, OutputStream outputstream) 
 			throws IOException {
-		ICalendar ical = new ICalendar();
+		writeToStream(eventList.stream(), outputstream);
+	}
+	
+	/**
+	 * Writes each event as soon as it arrives. The file is replaced only 
+	 * once the whole calendar has been written.
+	 */
+	@Override
+	public void writeToFile(Stream<SplusEvent> events, File file) 
+			throws IOException  {
+		File directory = file.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile("calendar", ".tmp", directory);
 		
-		for(SplusEvent event:eventList) {
-			VEvent vEvent = new VEvent();
-			vEvent.setLocation(event.getLocation());
-			vEvent.setOrganizer(new Organizer(event.getPresenter(), ""));
-			
-			String summaryString = event.getTitle();
-			
-			if(!event.getDescription().isEmpty())
-				summaryString += " -- " + event.getDescription();
+		try {
+			try(FileChannel channel = FileChannel.open(temp.toPath(), 
+					StandardOpenOption.WRITE, 
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				writeToChannel(events, channel);
+			}
 			
-			Summary summary = vEvent.setSummary(summaryString);
-			
-			summary.setLanguage("de-de");
-			
-			vEvent.setDateStart(event.getStart());
-			vEvent.setDateEnd(event.getEnd());
-			
-			ical.addEvent(vEvent);
+			Files.move(temp.toPath(), file.toPath(), 
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temp.delete();
 		}
+	}
+	
+	/**
+	 * Writes each event as soon as it arrives, so the output starts while 
+	 * later weeks are still being fetched. If the events can't be fetched, 
+	 * the calendar is left without its end.
+	 */
+	@Override
+	public void writeToStream(Stream<SplusEvent> events, OutputStream outputstream) 
+			throws IOException {
+		write(events, new ICalendarStreamWriter(outputstream));
+	}
+	
+	/**
+	 * Writes the events as they arrive directly to a channel, e.g. a
+	 * FileChannel or a SocketChannel. The channel is not closed.
+	 * 
+	 * @param events        The events to write
+	 * @param channel       The channel to write to
+	 * @throws IOException  If writing fails or the events can't be fetched
+	 */
+	public void writeToChannel(Stream<SplusEvent> events, WritableByteChannel channel) 
+			throws IOException {
+		write(events, new ICalendarStreamWriter(channel));
+	}
+	
+	/**
+	 * @return the listener told about every written calendar
+	 */
+	public MetricsListener getMetricsListener() {
+		return metricsListener;
+	}
+	
+	/**
+	 * By default nothing is measured.
+	 * 
+	 * @param metricsListener the listener told about every written calendar,
+	 *                        null for none
+	 */
+	public void setMetricsListener(MetricsListener metricsListener) {
+		this.metricsListener = metricsListener == null 
+				? MetricsListener.NONE : metricsListener;
+	}
+	
+	private void write(Stream<SplusEvent> events, ICalendarStreamWriter writer) 
+			throws IOException {
+		long start = System.nanoTime();
+		int[] count = new int[1];
+		
+		try {
+			events.forEachOrdered(event -> {
+				try {
+					writer.write(event);
+					count[0]++;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		
+		//a calendar that failed halfway mustn't look complete
+		writer.close();
 		
-		Biweekly.write(ical).go(outputstream);
+		metricsListener.calendarWritten(count[0], writer.getBytesWritten(), 
+				System.nanoTime() - start);
 	}
 
 }
@@ -0,0 +1,96 @@
+package de.ole.splusreader.logic.calendarPlugins;
+
+import java.io.IOException;
+
+import de.ole.splusreader.logic.SplusEvent;
+
+/**
+ * Writes every event as a JSON object on a line of its own (JSON Lines),
+ * e.g.
+ *
+ * {"start":"2016-10-04T08:15:00Z","end":"2016-10-04T09:45:00Z",
+ * "title":"Programmieren","description":"Vorlesung","location":"A204",
+ * "presenter":"Dr. Krüger"}
+ *
+ * Start and end are written in UTC, missing values as null.
+ */
+public class SplusToJsonLines extends RecordExporter {
+
+	private static final byte[] HEX = {
+		'0', '1', '2', '3', '4', '5', '6', '7',
+		'8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+	};
+
+	@Override
+	void writeRecord(SplusEvent event, RecordBuffer out) throws IOException {
+		out.putAscii("{\"start\":");
+		putInstant(event.getStartMillis(), out);
+		out.putAscii(",\"end\":");
+		putInstant(event.getEndMillis(), out);
+		out.putAscii(",\"title\":");
+		putString(event.getTitle(), out);
+		out.putAscii(",\"description\":");
+		putString(event.getDescription(), out);
+		out.putAscii(",\"location\":");
+		putString(event.getLocation(), out);
+		out.putAscii(",\"presenter\":");
+		putString(event.getPresenter(), out);
+		out.putAscii("}\n");
+	}
+
+	private static void putInstant(long millis, RecordBuffer out)
+			throws IOException {
+		if(millis == SplusEvent.NO_DATE) {
+			out.putAscii("null");
+			return;
+		}
+
+		out.put((byte) '"');
+		out.putInstant(millis);
+		out.put((byte) '"');
+	}
+
+	private static void putString(String text, RecordBuffer out)
+			throws IOException {
+		if(text == null) {
+			out.putAscii("null");
+			return;
+		}
+
+		out.put((byte) '"');
+
+		for(int i = 0; i < text.length(); ) {
+			int c = text.codePointAt(i);
+			i += Character.charCount(c);
+
+			switch(c) {
+			case '"':
+				out.putAscii("\\\"");
+				break;
+			case '\\':
+				out.putAscii("\\\\");
+				break;
+			case '\n':
+				out.putAscii("\\n");
+				break;
+			case '\r':
+				out.putAscii("\\r");
+				break;
+			case '\t':
+				out.putAscii("\\t");
+				break;
+			default:
+				if(c < 0x20) {
+					out.putAscii("\\u00");
+					out.put(HEX[c >> 4]);
+					out.put(HEX[c & 0xF]);
+				}
+				else {
+					out.putCodePoint(c);
+				}
+			}
+		}
+
+		out.put((byte) '"');
+	}
+}
@@ -0,0 +1,260 @@
+package de.ole.splusreader.logic.diff;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import de.ole.splusreader.logic.SplusEvent;
+import de.ole.splusreader.logic.WeekBatchResult;
+
+/**
+ * The events of a range of weeks as fetched at one time.
+ *
+ * A snapshot is taken with {@link
+ * de.ole.splusreader.logic.SplusEventFactory#takeSnapshot(int, int)}, saved
+ * after an export and loaded before the next one, so {@link #diff} can tell
+ * which events have changed in between.
+ *
+ * Snapshots are immutable.
+ */
+public final class Snapshot {
+
+	private static final int MAGIC = 0x53504C53;
+	private static final int FORMAT_VERSION = 1;
+
+	private final long createdAt;
+	private final SortedMap<Integer, WeekSnapshot> weeks;
+
+	/**
+	 * @param createdAt  The time the weeks were fetched in milliseconds since
+	 *                   the epoch
+	 * @param weeks      The fetched weeks
+	 */
+	public Snapshot(long createdAt, Collection<WeekSnapshot> weeks) {
+		SortedMap<Integer, WeekSnapshot> map = new TreeMap<>();
+
+		for(WeekSnapshot week:weeks) {
+			map.put(week.getWeek(), week);
+		}
+
+		this.createdAt = createdAt;
+		this.weeks = Collections.unmodifiableSortedMap(map);
+	}
+
+	/**
+	 * Takes the successfully fetched weeks of a batch. Failed weeks are left
+	 * out, so a diff against the snapshot does not report their events as
+	 * removed.
+	 *
+	 * @param result  The result of fetching a range of weeks
+	 * @return        The snapshot of the weeks fetched now
+	 */
+	public static Snapshot of(WeekBatchResult result) {
+		List<WeekSnapshot> weeks = new ArrayList<>();
+
+		for(Map.Entry<Integer, List<SplusEvent>> entry:
+				result.getEventsByWeek().entrySet()) {
+			weeks.add(new WeekSnapshot(entry.getKey(), entry.getValue()));
+		}
+
+		return new Snapshot(System.currentTimeMillis(), weeks);
+	}
+
+	/**
+	 * @return the time the weeks were fetched in milliseconds since the epoch
+	 */
+	public long getCreatedAt() {
+		return createdAt;
+	}
+
+	/**
+	 * @return the fetched weeks ordered by week
+	 */
+	public SortedMap<Integer, WeekSnapshot> getWeeks() {
+		return weeks;
+	}
+
+	/**
+	 * @param week  The week as numbered by splus
+	 * @return      The snapshot of the week or null if it wasn't fetched
+	 */
+	public WeekSnapshot getWeek(int week) {
+		return weeks.get(week);
+	}
+
+	/**
+	 * @return a hash of the weeks and their content, the same for two
+	 *         snapshots of the same unchanged weeks
+	 */
+	public long getContentHash() {
+		long hash = 0xCBF29CE484222325L;
+
+		for(WeekSnapshot week:weeks.values()) {
+			hash = (hash ^ week.getWeek()) * 0x100000001B3L;
+
+			long value = week.getContentHash();
+			for(int shift = 56; shift >= 0; shift -= 8) {
+				hash = (hash ^ (value >>> shift & 0xFF)) * 0x100000001B3L;
+			}
+		}
+
+		return hash;
+	}
+
+	/**
+	 * @return all events of the snapshot in week order
+	 */
+	public List<SplusEvent> getEvents() {
+		List<SplusEvent> events = new ArrayList<>();
+
+		for(WeekSnapshot week:weeks.values()) {
+			events.addAll(week.getEvents());
+		}
+
+		return events;
+	}
+
+	/**
+	 * Compares this snapshot with an earlier one.
+	 *
+	 * Only the weeks of this snapshot are compared: a week missing here, e.g.
+	 * because fetching it failed, reports nothing. A week only in this
+	 * snapshot reports all its events as added. Weeks with the same content
+	 * hash cost just that comparison.
+	 *
+	 * @param previous  The earlier snapshot, null if there is none
+	 * @return          What has changed since the earlier snapshot
+	 */
+	public SnapshotDiff diff(Snapshot previous) {
+		List<WeekDiff> diffs = new ArrayList<>();
+
+		for(WeekSnapshot week:weeks.values()) {
+			WeekSnapshot before = previous == null
+					? null : previous.getWeek(week.getWeek());
+			diffs.add(WeekDiff.between(before, week));
+		}
+
+		return new SnapshotDiff(diffs);
+	}
+
+	/**
+	 * Saves the snapshot compressed. The file is replaced atomically, so
+	 * concurrent readers see either the old or the new snapshot.
+	 *
+	 * @param file          The file to write
+	 * @throws IOException  If the file can't be written
+	 */
+	public void save(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile("snapshot", ".tmp", directory);
+
+		try {
+			try(DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new GZIPOutputStream(
+							new FileOutputStream(temp))))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeLong(createdAt);
+				out.writeInt(weeks.size());
+
+				for(WeekSnapshot week:weeks.values()) {
+					out.writeInt(week.getWeek());
+					out.writeInt(week.getEvents().size());
+
+					for(SplusEvent event:week.getEvents()) {
+						writeEvent(out, event);
+					}
+				}
+			}
+
+			Files.move(temp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * @param file          A file written by {@link #save(File)}
+	 * @return              The snapshot in the file
+	 * @throws IOException  If the file can't be read or is no snapshot
+	 */
+	public static Snapshot load(File file) throws IOException {
+		try(DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new GZIPInputStream(
+						new FileInputStream(file))))) {
+			if(in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				throw new IOException(file + " is no snapshot");
+			}
+
+			long createdAt = in.readLong();
+			int weekCount = in.readInt();
+			List<WeekSnapshot> weeks = new ArrayList<>(weekCount);
+
+			for(int i = 0; i < weekCount; i++) {
+				int week = in.readInt();
+				int eventCount = in.readInt();
+				List<SplusEvent> events = new ArrayList<>(eventCount);
+
+				for(int j = 0; j < eventCount; j++) {
+					events.add(readEvent(in));
+				}
+
+				weeks.add(new WeekSnapshot(week, events));
+			}
+
+			return new Snapshot(createdAt, weeks);
+		}
+	}
+
+	private static void writeEvent(DataOutputStream out, SplusEvent event)
+			throws IOException {
+		out.writeLong(event.getStartMillis());
+		out.writeLong(event.getEndMillis());
+		writeString(out, event.getTitle());
+		writeString(out, event.getDescription());
+		writeString(out, event.getLocation());
+		writeString(out, event.getPresenter());
+	}
+
+	private static SplusEvent readEvent(DataInputStream in) throws IOException {
+		long start = in.readLong();
+		long end = in.readLong();
+
+		return new SplusEvent(start, end,
+				readString(in), readString(in), readString(in), readString(in));
+	}
+
+	private static void writeString(DataOutputStream out, String value)
+			throws IOException {
+		out.writeBoolean(value != null);
+		if(value != null)
+			out.writeUTF(value);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	public String toString() {
+		return "snapshot of " + weeks.size() + " weeks from "
+				+ new Date(createdAt);
+	}
+}
@@ -0,0 +1,111 @@
+package de.ole.splusreader.logic.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import de.ole.splusreader.logic.SplusEvent;
+
+/**
+ * The changes between two snapshots, week by week.
+ *
+ * Diffs are immutable.
+ *
+ * @see Snapshot#diff(Snapshot)
+ */
+public final class SnapshotDiff {
+
+	private final SortedMap<Integer, WeekDiff> weeks;
+
+	public SnapshotDiff(List<WeekDiff> weeks) {
+		SortedMap<Integer, WeekDiff> map = new TreeMap<>();
+
+		for(WeekDiff week:weeks) {
+			map.put(week.getWeek(), week);
+		}
+
+		this.weeks = Collections.unmodifiableSortedMap(map);
+	}
+
+	/**
+	 * @return the diff of every compared week, ordered by week
+	 */
+	public SortedMap<Integer, WeekDiff> getWeeks() {
+		return weeks;
+	}
+
+	/**
+	 * @return the weeks in which something has changed
+	 */
+	public SortedSet<Integer> getChangedWeeks() {
+		SortedSet<Integer> changed = new TreeSet<>();
+
+		for(WeekDiff week:weeks.values()) {
+			if(!week.isEmpty())
+				changed.add(week.getWeek());
+		}
+
+		return changed;
+	}
+
+	/**
+	 * @return the events added in all weeks, in week order
+	 */
+	public List<SplusEvent> getAdded() {
+		List<SplusEvent> added = new ArrayList<>();
+
+		for(WeekDiff week:weeks.values()) {
+			added.addAll(week.getAdded());
+		}
+
+		return added;
+	}
+
+	/**
+	 * @return the events removed in all weeks, in week order
+	 */
+	public List<SplusEvent> getRemoved() {
+		List<SplusEvent> removed = new ArrayList<>();
+
+		for(WeekDiff week:weeks.values()) {
+			removed.addAll(week.getRemoved());
+		}
+
+		return removed;
+	}
+
+	/**
+	 * @return the events changed in all weeks, in week order
+	 */
+	public List<WeekDiff.Change> getChanged() {
+		List<WeekDiff.Change> changed = new ArrayList<>();
+
+		for(WeekDiff week:weeks.values()) {
+			changed.addAll(week.getChanged());
+		}
+
+		return changed;
+	}
+
+	/**
+	 * @return true if nothing has changed in any week
+	 */
+	public boolean isEmpty() {
+		for(WeekDiff week:weeks.values()) {
+			if(!week.isEmpty())
+				return false;
+		}
+
+		return true;
+	}
+
+	public String toString() {
+		return getAdded().size() + " added, " + getRemoved().size()
+				+ " removed, " + getChanged().size() + " changed in weeks "
+				+ getChangedWeeks();
+	}
+}
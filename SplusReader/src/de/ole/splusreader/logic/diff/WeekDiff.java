@@ -0,0 +1,182 @@
+package de.ole.splusreader.logic.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import de.ole.splusreader.logic.SplusEvent;
+
+/**
+ * The changes to the events of a single week between two snapshots.
+ *
+ * Events with the same content hash in both snapshots are unchanged. Of the
+ * remaining ones an event starting at the same time with the same title as a
+ * removed one, e.g. moved to another room, counts as changed. Everything else
+ * has been added or removed.
+ *
+ * Diffs are immutable.
+ */
+public final class WeekDiff {
+
+	/**
+	 * An event that is still there but shown differently.
+	 */
+	public static final class Change {
+		private final SplusEvent before;
+		private final SplusEvent after;
+
+		public Change(SplusEvent before, SplusEvent after) {
+			this.before = before;
+			this.after = after;
+		}
+
+		/**
+		 * @return the event as in the earlier snapshot
+		 */
+		public SplusEvent getBefore() {
+			return before;
+		}
+
+		/**
+		 * @return the event as in the later snapshot
+		 */
+		public SplusEvent getAfter() {
+			return after;
+		}
+
+		public String toString() {
+			return before.getTitle() + " at " + before.getStart()
+					+ " changed";
+		}
+	}
+
+	private final int week;
+	private final List<SplusEvent> added;
+	private final List<SplusEvent> removed;
+	private final List<Change> changed;
+
+	public WeekDiff(
+			int week,
+			List<SplusEvent> added,
+			List<SplusEvent> removed,
+			List<Change> changed
+			) {
+		this.week = week;
+		this.added = Collections.unmodifiableList(new ArrayList<>(added));
+		this.removed = Collections.unmodifiableList(new ArrayList<>(removed));
+		this.changed = Collections.unmodifiableList(new ArrayList<>(changed));
+	}
+
+	/**
+	 * Compares two snapshots of a week.
+	 *
+	 * @param before  The earlier snapshot, null if the week is new
+	 * @param after   The later snapshot
+	 * @return        The changes from the earlier to the later snapshot
+	 */
+	public static WeekDiff between(WeekSnapshot before, WeekSnapshot after) {
+		List<SplusEvent> none = Collections.emptyList();
+
+		if(before == null) {
+			return new WeekDiff(after.getWeek(), after.getEvents(), none,
+					Collections.<Change>emptyList());
+		}
+		if(before.hasSameContent(after)) {
+			return new WeekDiff(after.getWeek(), none, none,
+					Collections.<Change>emptyList());
+		}
+
+		//drop every event that is in both, duplicates counted
+		Map<Long, LinkedList<SplusEvent>> old = new HashMap<>();
+		for(SplusEvent event:before.getEvents()) {
+			old.computeIfAbsent(event.getContentHash(),
+					hash -> new LinkedList<>()).add(event);
+		}
+
+		List<SplusEvent> added = new ArrayList<>();
+		for(SplusEvent event:after.getEvents()) {
+			LinkedList<SplusEvent> same = old.get(event.getContentHash());
+
+			if(same == null || same.isEmpty())
+				added.add(event);
+			else
+				same.removeFirst();
+		}
+
+		List<SplusEvent> removed = new ArrayList<>();
+		for(SplusEvent event:before.getEvents()) {
+			LinkedList<SplusEvent> left = old.get(event.getContentHash());
+
+			if(!left.isEmpty() && left.getFirst() == event) {
+				removed.add(left.removeFirst());
+			}
+		}
+
+		//pair what is left by start and title
+		List<Change> changed = new ArrayList<>();
+		Iterator<SplusEvent> iterator = added.iterator();
+
+		while(iterator.hasNext()) {
+			SplusEvent event = iterator.next();
+
+			for(Iterator<SplusEvent> i = removed.iterator(); i.hasNext();) {
+				SplusEvent candidate = i.next();
+
+				if(candidate.getStartMillis() == event.getStartMillis()
+						&& Objects.equals(candidate.getTitle(), event.getTitle())) {
+					changed.add(new Change(candidate, event));
+					i.remove();
+					iterator.remove();
+					break;
+				}
+			}
+		}
+
+		return new WeekDiff(after.getWeek(), added, removed, changed);
+	}
+
+	/**
+	 * @return the week as numbered by splus
+	 */
+	public int getWeek() {
+		return week;
+	}
+
+	/**
+	 * @return the events only in the later snapshot
+	 */
+	public List<SplusEvent> getAdded() {
+		return added;
+	}
+
+	/**
+	 * @return the events only in the earlier snapshot
+	 */
+	public List<SplusEvent> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * @return the events in both snapshots that are shown differently
+	 */
+	public List<Change> getChanged() {
+		return changed;
+	}
+
+	/**
+	 * @return true if nothing has changed in the week
+	 */
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+	}
+
+	public String toString() {
+		return "week " + week + ": " + added.size() + " added, "
+				+ removed.size() + " removed, " + changed.size() + " changed";
+	}
+}
@@ -0,0 +1,96 @@
+package de.ole.splusreader.logic.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.ole.splusreader.logic.SplusEvent;
+
+/**
+ * The events of a single week as fetched at one time, together with a hash of
+ * their content.
+ *
+ * The hash does not depend on the order of the events, so two fetches of an
+ * unchanged week have the same hash and comparing them costs no more than
+ * comparing two numbers.
+ *
+ * Snapshots are immutable.
+ */
+public final class WeekSnapshot {
+
+	private final int week;
+	private final long contentHash;
+	private final List<SplusEvent> events;
+
+	/**
+	 * @param week    The week as numbered by splus
+	 * @param events  The events of the week
+	 */
+	public WeekSnapshot(int week, List<SplusEvent> events) {
+		this.week = week;
+		this.events = Collections.unmodifiableList(new ArrayList<>(events));
+		this.contentHash = hash(this.events);
+	}
+
+	/**
+	 * Computes the hash of the content of a week.
+	 *
+	 * @param events  The events of the week in any order
+	 * @return        The FNV-1a hash of the sorted content hashes of the
+	 *                events
+	 * @see SplusEvent#getContentHash()
+	 */
+	public static long hash(List<SplusEvent> events) {
+		long[] hashes = new long[events.size()];
+
+		for(int i = 0; i < hashes.length; i++) {
+			hashes[i] = events.get(i).getContentHash();
+		}
+
+		Arrays.sort(hashes);
+
+		long hash = 0xCBF29CE484222325L;
+		for(long value:hashes) {
+			for(int shift = 56; shift >= 0; shift -= 8) {
+				hash = (hash ^ (value >>> shift & 0xFF)) * 0x100000001B3L;
+			}
+		}
+
+		return hash;
+	}
+
+	/**
+	 * @return the week as numbered by splus
+	 */
+	public int getWeek() {
+		return week;
+	}
+
+	/**
+	 * @return the hash of the content of the week
+	 */
+	public long getContentHash() {
+		return contentHash;
+	}
+
+	/**
+	 * @return the unmodifiable list of events of the week
+	 */
+	public List<SplusEvent> getEvents() {
+		return events;
+	}
+
+	/**
+	 * @param other  Another snapshot of the week
+	 * @return       true if both have the same content
+	 */
+	public boolean hasSameContent(WeekSnapshot other) {
+		return contentHash == other.contentHash;
+	}
+
+	public String toString() {
+		return "week " + week + ": " + events.size() + " events, hash "
+				+ Long.toHexString(contentHash);
+	}
+}
@@ -0,0 +1,225 @@
+package de.ole.splusreader.logic.feed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+import de.ole.splusreader.base.SplusEventToCalendar;
+import de.ole.splusreader.logic.MissingSettingException;
+import de.ole.splusreader.logic.Selection;
+import de.ole.splusreader.logic.SplusEventFactory;
+import de.ole.splusreader.logic.diff.Snapshot;
+
+/**
+ * The calendar of a single selection served by a {@link FeedServer}.
+ *
+ * The calendar is kept rendered, plain and gzip-compressed, and only rendered
+ * again when the content hash of its weeks has changed, so its ETag stays the
+ * same as long as the weeks do. The ETag is the digest of the rendered bytes,
+ * as the rendering carries a time stamp of its own.
+ */
+public final class Feed {
+
+	/**
+	 * The bytes served for a feed between two changes.
+	 */
+	static final class Rendering {
+		final byte[] body;
+		final byte[] gzipped;
+		final String eTag;
+		final String gzipETag;
+		final long lastModified;
+		final long contentHash;
+		final int eventCount;
+
+		private Rendering(
+				byte[] body,
+				byte[] gzipped,
+				long contentHash,
+				int eventCount) {
+			this.body = body;
+			this.gzipped = gzipped;
+			String digest = digest(body);
+			this.eTag = "\"" + digest + "\"";
+			//gzip writes no time stamp, so the same body compresses the same
+			this.gzipETag = "\"" + digest + "-gz\"";
+			this.lastModified = System.currentTimeMillis();
+			this.contentHash = contentHash;
+			this.eventCount = eventCount;
+		}
+
+		/**
+		 * @return the SHA-1 of the bytes in hex
+		 */
+		private static String digest(byte[] bytes) {
+			try {
+				byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+				StringBuilder hex = new StringBuilder();
+
+				for(byte b:digest) {
+					hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+					hex.append(Character.forDigit(b & 0xF, 16));
+				}
+
+				return hex.toString();
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private final String path;
+	private final String faculty;
+	private final String plan;
+	private final String studyPath;
+	private final String group;
+
+	private Selection selection;
+
+	private volatile Rendering rendering;
+	private volatile Exception lastFailure;
+	private volatile long lastRefresh;
+
+	Feed(String path, String faculty, String plan, String studyPath, String group) {
+		this.path = path;
+		this.faculty = faculty;
+		this.plan = plan;
+		this.studyPath = studyPath;
+		this.group = group;
+	}
+
+	/**
+	 * Fetches the weeks again and renders the calendar if they have changed.
+	 * A failure keeps the calendar rendered before.
+	 */
+	synchronized void refresh(
+			SplusEventFactory template,
+			int firstWeek,
+			int lastWeek,
+			SplusEventToCalendar writer,
+			boolean gzip) {
+		try {
+			//all feeds are fetched by the template, each with its selection
+			if(selection == null) {
+				selection = template.select(faculty, plan, studyPath, group);
+			}
+
+			Snapshot snapshot = 
+					template.takeSnapshot(selection, firstWeek, lastWeek);
+			Rendering current = rendering;
+
+			if(current == null
+					|| current.contentHash != snapshot.getContentHash()
+					|| (current.gzipped != null) != gzip) {
+				rendering = render(snapshot, writer, gzip);
+			}
+
+			lastFailure = null;
+		} catch (MissingSettingException | IOException | RuntimeException e) {
+			lastFailure = e;
+		}
+
+		lastRefresh = System.currentTimeMillis();
+	}
+
+	private static Rendering render(
+			Snapshot snapshot,
+			SplusEventToCalendar writer,
+			boolean gzip) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+		writer.writeToStream(snapshot.getEvents(), body);
+
+		byte[] gzipped = null;
+
+		if(gzip) {
+			ByteArrayOutputStream compressed =
+					new ByteArrayOutputStream(body.size() / 4);
+
+			try(GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+				body.writeTo(out);
+			}
+
+			gzipped = compressed.toByteArray();
+		}
+
+		return new Rendering(body.toByteArray(), gzipped,
+				snapshot.getContentHash(), snapshot.getEvents().size());
+	}
+
+	Rendering getRendering() {
+		return rendering;
+	}
+
+	/**
+	 * @return the path of the feed on the server, not URL-encoded
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	public String getFaculty() {
+		return faculty;
+	}
+
+	public String getPlan() {
+		return plan;
+	}
+
+	public String getStudyPath() {
+		return studyPath;
+	}
+
+	/**
+	 * @return the title of the group or null if it is chosen automatically
+	 */
+	public String getGroup() {
+		return group;
+	}
+
+	/**
+	 * @return true once the calendar has been rendered
+	 */
+	public boolean isReady() {
+		return rendering != null;
+	}
+
+	/**
+	 * @return the number of events in the calendar, 0 before it is ready
+	 */
+	public int getEventCount() {
+		Rendering current = rendering;
+		return current == null ? 0 : current.eventCount;
+	}
+
+	/**
+	 * @return the time the calendar last changed in milliseconds since the
+	 *         epoch, 0 before it is ready
+	 */
+	public long getLastModified() {
+		Rendering current = rendering;
+		return current == null ? 0 : current.lastModified;
+	}
+
+	/**
+	 * @return the time of the last refresh in milliseconds since the epoch,
+	 *         0 before the first one
+	 */
+	public long getLastRefresh() {
+		return lastRefresh;
+	}
+
+	/**
+	 * @return the reason the last refresh failed or null if it succeeded
+	 */
+	public Exception getLastFailure() {
+		return lastFailure;
+	}
+
+	public String toString() {
+		return path + (isReady() ? " (" + getEventCount() + " events)"
+				: " (not ready)")
+				+ (lastFailure == null ? "" : " failed: " + lastFailure);
+	}
+}
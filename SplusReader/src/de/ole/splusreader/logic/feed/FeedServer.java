@@ -0,0 +1,357 @@
+package de.ole.splusreader.logic.feed;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLEncoder;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.ole.splusreader.logic.SplusEventFactory;
+import de.ole.splusreader.logic.calendarPlugins.SplusToICalendar;
+
+/**
+ * A small HTTP server offering the calendar of every added selection as an
+ * iCalendar feed, e.g. for calendar apps subscribing to it.
+ *
+ * The calendars are fetched and rendered in the background, once when a feed
+ * is added and then again every refresh interval. Requests are answered from
+ * the rendered bytes only and never cause a request to splus: a feed that
+ * isn't ready yet is answered with 503.
+ *
+ * Every calendar carries a strong ETag derived from the bytes served, which
+ * stay the same while the content of its weeks does, so clients asking again
+ * with If-None-Match get a 304 until something has actually changed. Clients
+ * accepting gzip get the compressed calendar.
+ *
+ * The feed of a selection is found at
+ * /faculty/plan/study path[/group].ics, see {@link #getUrl(Feed)}.
+ */
+public class FeedServer implements Closeable {
+
+	private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter
+			.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+	private final SplusEventFactory template;
+	private final int firstWeek;
+	private final int lastWeek;
+	private final SplusToICalendar writer = new SplusToICalendar();
+
+	private final Map<String, Feed> feeds = new ConcurrentHashMap<>();
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final ScheduledExecutorService scheduler;
+
+	private volatile boolean gzip = true;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong notModified = new AtomicLong();
+
+	/**
+	 * Starts the server.
+	 *
+	 * @param template       The factory fetching every feed with a selection
+	 *                       of its own; its own selection doesn't matter
+	 * @param address        The address to listen on, port 0 for any free one
+	 * @param firstWeek      The first week of every calendar
+	 * @param lastWeek       The last week of every calendar
+	 * @param refreshMillis  The time between two refreshes of all feeds
+	 * @throws IOException   If the address can't be bound
+	 */
+	public FeedServer(
+			SplusEventFactory template,
+			InetSocketAddress address,
+			int firstWeek,
+			int lastWeek,
+			long refreshMillis) throws IOException {
+		if(refreshMillis <= 0) {
+			throw new IllegalArgumentException(
+					"refreshMillis must be positive");
+		}
+
+		this.template = template;
+		this.firstWeek = firstWeek;
+		this.lastWeek = lastWeek;
+		writer.setMetricsListener(template.getMetricsListener());
+
+		server = HttpServer.create(address, 0);
+		executor = Executors.newFixedThreadPool(
+				Math.max(2, Runtime.getRuntime().availableProcessors()),
+				runnable -> {
+					Thread thread = new Thread(runnable, "splus-feed");
+					thread.setDaemon(true);
+					return thread;
+				});
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "splus-feed-refresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+
+		scheduler.scheduleWithFixedDelay(this::refresh,
+				refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Offers the calendar of a selection. It is fetched in the background
+	 * right away.
+	 *
+	 * @param faculty    The title of the faculty
+	 * @param plan       The title of the plan
+	 * @param studyPath  The title of the study path
+	 * @param group      The title of the group or null to choose the only
+	 *                   group of the study path automatically
+	 * @return           The feed of the selection
+	 */
+	public Feed addFeed(
+			String faculty,
+			String plan,
+			String studyPath,
+			String group) {
+		String path = "/" + faculty + "/" + plan + "/" + studyPath
+				+ (group == null ? "" : "/" + group) + ".ics";
+
+		Feed feed = feeds.get(path);
+
+		if(feed == null) {
+			Feed added = new Feed(path, faculty, plan, studyPath, group);
+			feed = feeds.putIfAbsent(path, added);
+
+			if(feed == null) {
+				feed = added;
+				scheduler.execute(() -> refresh(added));
+			}
+		}
+
+		return feed;
+	}
+
+	/**
+	 * @return all feeds added so far
+	 */
+	public List<Feed> getFeeds() {
+		return new ArrayList<>(feeds.values());
+	}
+
+	/**
+	 * Fetches all feeds again now, on the calling thread.
+	 */
+	public void refresh() {
+		for(Feed feed:feeds.values()) {
+			refresh(feed);
+		}
+	}
+
+	private void refresh(Feed feed) {
+		feed.refresh(template, firstWeek, lastWeek, writer, gzip);
+	}
+
+	/**
+	 * @param feed  A feed of this server
+	 * @return      The URL to subscribe to
+	 */
+	public String getUrl(Feed feed) {
+		StringBuilder url = new StringBuilder("http://")
+				.append(server.getAddress().getHostString())
+				.append(':').append(server.getAddress().getPort());
+
+		try {
+			for(String segment:feed.getPath().substring(1).split("/")) {
+				url.append('/').append(URLEncoder.encode(segment, "UTF-8")
+						.replace("+", "%20"));
+			}
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+
+		return url.toString();
+	}
+
+	/**
+	 * @return the address the server listens on
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * @return true if calendars are kept gzip-compressed as well
+	 */
+	public boolean isGzip() {
+		return gzip;
+	}
+
+	/**
+	 * @param gzip true to keep the calendars gzip-compressed as well, for
+	 *             clients accepting it; true by default. Takes effect with
+	 *             the next refresh.
+	 */
+	public void setGzip(boolean gzip) {
+		this.gzip = gzip;
+	}
+
+	/**
+	 * @return the number of requests answered so far
+	 */
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	/**
+	 * @return the number of requests answered with 304 so far
+	 */
+	public long getNotModifiedCount() {
+		return notModified.get();
+	}
+
+	/**
+	 * Stops the server and the refreshing at once.
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+		scheduler.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+
+		try {
+			String method = exchange.getRequestMethod();
+			Headers headers = exchange.getResponseHeaders();
+
+			if(!method.equals("GET") && !method.equals("HEAD")) {
+				headers.set("Allow", "GET, HEAD");
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+
+			Feed feed = feeds.get(exchange.getRequestURI().getPath());
+
+			if(feed == null) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			Feed.Rendering rendering = feed.getRendering();
+
+			if(rendering == null) {
+				headers.set("Retry-After", "30");
+				exchange.sendResponseHeaders(503, -1);
+				return;
+			}
+
+			boolean gzipped = rendering.gzipped != null && acceptsGzip(
+					exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+			String eTag = gzipped ? rendering.gzipETag : rendering.eTag;
+
+			headers.set("ETag", eTag);
+			headers.set("Last-Modified", HTTP_DATE.format(
+					Instant.ofEpochMilli(rendering.lastModified)));
+			headers.set("Vary", "Accept-Encoding");
+
+			if(matches(exchange.getRequestHeaders().getFirst("If-None-Match"),
+					eTag)) {
+				notModified.incrementAndGet();
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+
+			headers.set("Content-Type", "text/calendar; charset=utf-8");
+			if(gzipped)
+				headers.set("Content-Encoding", "gzip");
+
+			byte[] body = gzipped ? rendering.gzipped : rendering.body;
+
+			if(method.equals("HEAD")) {
+				//-1 would announce an empty body instead of the one of GET
+				headers.set("Content-Length", Integer.toString(body.length));
+				exchange.sendResponseHeaders(200, -1);
+				return;
+			}
+
+			exchange.sendResponseHeaders(200, body.length);
+
+			try(OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * @return true if the Accept-Encoding header allows gzip
+	 */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if(acceptEncoding == null) {
+			return false;
+		}
+
+		for(String coding:acceptEncoding.split(",")) {
+			String[] parts = coding.split(";");
+			String name = parts[0].trim();
+
+			if(name.equalsIgnoreCase("gzip") || name.equals("*")) {
+				//"gzip;q=0" explicitly refuses it
+				for(int i = 1; i < parts.length; i++) {
+					String parameter = parts[i].trim().replace(" ", "");
+					if(parameter.matches("[qQ]=0(\\.0*)?")) {
+						return false;
+					}
+				}
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return true if the If-None-Match header names the ETag, compared
+	 *         weakly as required for If-None-Match
+	 */
+	static boolean matches(String ifNoneMatch, String eTag) {
+		if(ifNoneMatch == null) {
+			return false;
+		}
+
+		for(String candidate:ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+
+			if(candidate.equals("*")) {
+				return true;
+			}
+			if(candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if(candidate.equals(eTag)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,143 @@
+package de.ole.splusreader.logic.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts recorded values in buckets growing with the value, so percentiles
+ * of anything from nanoseconds to hours can be read with an error of at most
+ * an eighth of the value, in constant memory.
+ *
+ * Recording is lock-free and may happen from several threads at once.
+ */
+public final class Histogram {
+
+	//8 exact buckets for 0 to 7, then 8 buckets per power of two
+	private static final int SUB_BUCKETS = 8;
+	private static final int BUCKETS = SUB_BUCKETS + 60 * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * @param value  The value to record, negative values count as 0
+	 */
+	public void record(long value) {
+		value = Math.max(value, 0);
+
+		counts.incrementAndGet(bucket(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		min.accumulateAndGet(value, Math::min);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	private static int bucket(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+
+		return SUB_BUCKETS + (exponent - 3) * SUB_BUCKETS + sub;
+	}
+
+	private static long highestValue(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 3;
+		long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		long lowest = (SUB_BUCKETS + sub) << (exponent - 3);
+
+		return lowest + (1L << (exponent - 3)) - 1;
+	}
+
+	/**
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return the sum of all recorded values
+	 */
+	public long getSum() {
+		return sum.get();
+	}
+
+	/**
+	 * @return the smallest recorded value, 0 if there is none
+	 */
+	public long getMin() {
+		return count.get() == 0 ? 0 : min.get();
+	}
+
+	/**
+	 * @return the largest recorded value, 0 if there is none
+	 */
+	public long getMax() {
+		return count.get() == 0 ? 0 : max.get();
+	}
+
+	/**
+	 * @return the mean of all recorded values, 0 if there is none
+	 */
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+
+	/**
+	 * @param percentile  The percentile between 0 and 100, e.g. 99
+	 * @return            A value at least as large as that share of the
+	 *                    recorded values and at most an eighth larger than
+	 *                    the actual percentile, 0 if there is none
+	 */
+	public long getPercentile(double percentile) {
+		long n = count.get();
+
+		if(n == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(n * percentile / 100));
+		long seen = 0;
+
+		for(int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += counts.get(bucket);
+
+			if(seen >= rank) {
+				return Math.min(highestValue(bucket), getMax());
+			}
+		}
+
+		return getMax();
+	}
+
+	/**
+	 * Forgets all recorded values.
+	 */
+	public void reset() {
+		for(int bucket = 0; bucket < BUCKETS; bucket++) {
+			counts.set(bucket, 0);
+		}
+
+		count.set(0);
+		sum.set(0);
+		min.set(Long.MAX_VALUE);
+		max.set(Long.MIN_VALUE);
+	}
+
+	public String toString() {
+		return "count " + getCount() + ", mean " + Math.round(getMean())
+				+ ", p50 " + getPercentile(50) + ", p99 " + getPercentile(99)
+				+ ", max " + getMax();
+	}
+}
@@ -0,0 +1,177 @@
+package de.ole.splusreader.logic.metrics;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.ole.splusreader.logic.transport.SplusRequest;
+
+/**
+ * Keeps histograms of all phases in memory: the latency and size of the
+ * requests to splus, the time to parse a week and its number of events and
+ * the time to write a calendar.
+ *
+ * Its {@link #toString()} is a short report telling which phase the time
+ * went to.
+ */
+public class InMemoryMetrics implements MetricsListener {
+
+	private final Histogram requestNanos = new Histogram();
+	private final Histogram requestBytes = new Histogram();
+	private final Map<Integer, AtomicLong> statusCodes = new ConcurrentHashMap<>();
+	private final AtomicLong failedRequests = new AtomicLong();
+
+	private final Histogram parseNanos = new Histogram();
+	private final Histogram eventsPerWeek = new Histogram();
+
+	private final Histogram writeNanos = new Histogram();
+	private final Histogram writtenBytes = new Histogram();
+	private final AtomicLong writtenEvents = new AtomicLong();
+
+	@Override
+	public void requestCompleted(
+			SplusRequest request, 
+			int statusCode, 
+			long bytes, 
+			long nanos) {
+		requestNanos.record(nanos);
+		requestBytes.record(bytes);
+		statusCodes.computeIfAbsent(statusCode, code -> new AtomicLong())
+				.incrementAndGet();
+	}
+
+	@Override
+	public void requestFailed(
+			SplusRequest request, 
+			IOException exception, 
+			long nanos) {
+		requestNanos.record(nanos);
+		failedRequests.incrementAndGet();
+	}
+
+	@Override
+	public void weekParsed(int week, int eventCount, long nanos) {
+		parseNanos.record(nanos);
+		eventsPerWeek.record(eventCount);
+	}
+
+	@Override
+	public void calendarWritten(int eventCount, long bytes, long nanos) {
+		writeNanos.record(nanos);
+		writtenBytes.record(bytes);
+		writtenEvents.addAndGet(eventCount);
+	}
+
+	/**
+	 * @return the latency of all requests to splus, answered or failed, in
+	 *         nanoseconds
+	 */
+	public Histogram getRequestNanos() {
+		return requestNanos;
+	}
+
+	/**
+	 * @return the size of the bodies received from splus
+	 */
+	public Histogram getRequestBytes() {
+		return requestBytes;
+	}
+
+	/**
+	 * @return the number of responses per HTTP status
+	 */
+	public SortedMap<Integer, Long> getStatusCodes() {
+		SortedMap<Integer, Long> counts = new TreeMap<>();
+
+		for(Map.Entry<Integer, AtomicLong> entry:statusCodes.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().get());
+		}
+
+		return counts;
+	}
+
+	/**
+	 * @return the number of requests that failed without a response
+	 */
+	public long getFailedRequests() {
+		return failedRequests.get();
+	}
+
+	/**
+	 * @return the time to parse a week in nanoseconds
+	 */
+	public Histogram getParseNanos() {
+		return parseNanos;
+	}
+
+	/**
+	 * @return the number of events of every parsed week
+	 */
+	public Histogram getEventsPerWeek() {
+		return eventsPerWeek;
+	}
+
+	/**
+	 * @return the time to write a calendar in nanoseconds
+	 */
+	public Histogram getWriteNanos() {
+		return writeNanos;
+	}
+
+	/**
+	 * @return the size of every written calendar
+	 */
+	public Histogram getWrittenBytes() {
+		return writtenBytes;
+	}
+
+	/**
+	 * @return the number of events written to all calendars
+	 */
+	public long getWrittenEvents() {
+		return writtenEvents.get();
+	}
+
+	/**
+	 * Forgets everything recorded so far.
+	 */
+	public void reset() {
+		requestNanos.reset();
+		requestBytes.reset();
+		statusCodes.clear();
+		failedRequests.set(0);
+		parseNanos.reset();
+		eventsPerWeek.reset();
+		writeNanos.reset();
+		writtenBytes.reset();
+		writtenEvents.set(0);
+	}
+
+	public String toString() {
+		return "fetch: " + requestNanos.getCount() + " requests "
+				+ getStatusCodes() + ", " + failedRequests.get() + " failed, "
+				+ requestBytes.getSum() + " bytes, " + times(requestNanos)
+				+ System.lineSeparator()
+				+ "parse: " + parseNanos.getCount() + " weeks, "
+				+ eventsPerWeek.getSum() + " events, " + times(parseNanos)
+				+ System.lineSeparator()
+				+ "write: " + writeNanos.getCount() + " calendars, "
+				+ writtenEvents.get() + " events, " + writtenBytes.getSum()
+				+ " bytes, " + times(writeNanos);
+	}
+
+	private static String times(Histogram nanos) {
+		return "total " + millis(nanos.getSum())
+				+ ", p50 " + millis(nanos.getPercentile(50))
+				+ ", p99 " + millis(nanos.getPercentile(99))
+				+ ", max " + millis(nanos.getMax());
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.1f ms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+}
@@ -0,0 +1,138 @@
+package de.ole.splusreader.logic.metrics;
+
+import java.io.IOException;
+
+import de.ole.splusreader.logic.transport.SplusRequest;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Turns every phase into a JDK Flight Recorder event, so exports can be
+ * looked at in a recording next to garbage collection, I/O and locks, e.g.
+ * started with -XX:StartFlightRecording.
+ *
+ * The events are recorded when their phase has finished and carry its
+ * duration as a field. They cost next to nothing while no recording is
+ * running. This class needs a JVM with the jdk.jfr module, Java 11 or a
+ * Java 8 from update 262 on; nothing else in the library depends on it.
+ */
+public class JfrMetricsListener implements MetricsListener {
+
+	@Name("de.ole.splusreader.Request")
+	@Label("Splus Request")
+	@Category("splusReader")
+	static class RequestEvent extends Event {
+		@Label("Method")
+		String method;
+
+		@Label("URL")
+		String url;
+
+		@Label("Status")
+		int statusCode;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		@Label("Latency")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+
+		@Label("Failure")
+		String failure;
+	}
+
+	@Name("de.ole.splusreader.WeekParsed")
+	@Label("Week Parsed")
+	@Category("splusReader")
+	static class WeekParsedEvent extends Event {
+		@Label("Week")
+		int week;
+
+		@Label("Events")
+		int eventCount;
+
+		@Label("Parse Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long parseTime;
+	}
+
+	@Name("de.ole.splusreader.CalendarWritten")
+	@Label("Calendar Written")
+	@Category("splusReader")
+	static class CalendarWrittenEvent extends Event {
+		@Label("Events")
+		int eventCount;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		@Label("Write Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long writeTime;
+	}
+
+	@Override
+	public void requestCompleted(
+			SplusRequest request, 
+			int statusCode, 
+			long bytes, 
+			long nanos) {
+		RequestEvent event = new RequestEvent();
+
+		if(event.isEnabled()) {
+			event.method = request.getMethod().name();
+			event.url = request.getUrl();
+			event.statusCode = statusCode;
+			event.bytes = bytes;
+			event.latency = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void requestFailed(
+			SplusRequest request, 
+			IOException exception, 
+			long nanos) {
+		RequestEvent event = new RequestEvent();
+
+		if(event.isEnabled()) {
+			event.method = request.getMethod().name();
+			event.url = request.getUrl();
+			event.latency = nanos;
+			event.failure = exception.toString();
+			event.commit();
+		}
+	}
+
+	@Override
+	public void weekParsed(int week, int eventCount, long nanos) {
+		WeekParsedEvent event = new WeekParsedEvent();
+
+		if(event.isEnabled()) {
+			event.week = week;
+			event.eventCount = eventCount;
+			event.parseTime = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void calendarWritten(int eventCount, long bytes, long nanos) {
+		CalendarWrittenEvent event = new CalendarWrittenEvent();
+
+		if(event.isEnabled()) {
+			event.eventCount = eventCount;
+			event.bytes = bytes;
+			event.writeTime = nanos;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package de.ole.splusreader.logic.metrics;
+
+import java.io.IOException;
+
+import de.ole.splusreader.logic.transport.SplusRequest;
+
+/**
+ * Gets told how long every phase of an export takes: the requests to splus,
+ * parsing the weeks and writing the calendar.
+ *
+ * Listeners are called on the threads doing the work, possibly several at
+ * once, and should return quickly. All methods do nothing by default, so a
+ * listener only overrides what it is interested in.
+ *
+ * @see InMemoryMetrics
+ * @see JfrMetricsListener
+ */
+public interface MetricsListener {
+
+	/**
+	 * A listener ignoring everything.
+	 */
+	public static final MetricsListener NONE = new MetricsListener() {};
+
+	/**
+	 * A request has been answered by splus. Pages served from the response
+	 * cache without asking splus are not reported.
+	 *
+	 * @param request     The request
+	 * @param statusCode  The HTTP status of the response
+	 * @param bytes       The size of the body received
+	 * @param nanos       The time from sending the request to having read
+	 *                    the whole response
+	 */
+	public default void requestCompleted(
+			SplusRequest request, 
+			int statusCode, 
+			long bytes, 
+			long nanos) {
+	}
+
+	/**
+	 * A request to splus has failed without a response.
+	 *
+	 * @param request    The request
+	 * @param exception  The reason
+	 * @param nanos      The time until the request failed
+	 */
+	public default void requestFailed(
+			SplusRequest request, 
+			IOException exception, 
+			long nanos) {
+	}
+
+	/**
+	 * The timetable of a week has been parsed. Parsing includes building the
+	 * events, as both happen in the same pass over the page.
+	 *
+	 * @param week        The week as numbered by splus
+	 * @param eventCount  The number of events in the week
+	 * @param nanos       The time spent parsing
+	 */
+	public default void weekParsed(int week, int eventCount, long nanos) {
+	}
+
+	/**
+	 * A calendar has been written.
+	 *
+	 * @param eventCount  The number of events written
+	 * @param bytes       The size of the calendar
+	 * @param nanos       The time spent writing, including waiting for the
+	 *                    events if they came from a lazy stream
+	 */
+	public default void calendarWritten(int eventCount, long bytes, long nanos) {
+	}
+
+	/**
+	 * @param listeners  The listeners to tell
+	 * @return           A listener telling all of them in turn
+	 */
+	public static MetricsListener all(MetricsListener... listeners) {
+		MetricsListener[] copy = listeners.clone();
+
+		return new MetricsListener() {
+			@Override
+			public void requestCompleted(
+					SplusRequest request, int statusCode, long bytes, long nanos) {
+				for(MetricsListener listener:copy)
+					listener.requestCompleted(request, statusCode, bytes, nanos);
+			}
+
+			@Override
+			public void requestFailed(
+					SplusRequest request, IOException exception, long nanos) {
+				for(MetricsListener listener:copy)
+					listener.requestFailed(request, exception, nanos);
+			}
+
+			@Override
+			public void weekParsed(int week, int eventCount, long nanos) {
+				for(MetricsListener listener:copy)
+					listener.weekParsed(week, eventCount, nanos);
+			}
+
+			@Override
+			public void calendarWritten(int eventCount, long bytes, long nanos) {
+				for(MetricsListener listener:copy)
+					listener.calendarWritten(eventCount, bytes, nanos);
+			}
+		};
+	}
+}
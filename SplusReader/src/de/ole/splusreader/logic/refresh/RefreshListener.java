@@ -0,0 +1,48 @@
+package de.ole.splusreader.logic.refresh;
+
+import java.util.List;
+
+import de.ole.splusreader.logic.Selection;
+import de.ole.splusreader.logic.diff.WeekDiff;
+import de.ole.splusreader.logic.diff.WeekSnapshot;
+
+/**
+ * Gets told by a {@link RefreshScheduler} when a watched week has changed.
+ *
+ * Listeners are called on the thread of the scheduler and should return
+ * quickly. A runtime exception thrown by a listener is ignored. Both methods
+ * do nothing by default, so a listener only overrides what it is interested
+ * in.
+ */
+public interface RefreshListener {
+
+	/**
+	 * A week has been fetched for the first time or its content differs from
+	 * the last time it was fetched.
+	 *
+	 * @param selection  The selection of the week as passed to
+	 *                   {@link RefreshScheduler#watch}
+	 * @param diff       The changes since the last time, all events added
+	 *                   when the week is fetched for the first time
+	 * @param current    The week as fetched now
+	 */
+	public default void weekChanged(
+			Selection selection,
+			WeekDiff diff,
+			WeekSnapshot current) {
+	}
+
+	/**
+	 * Fetching weeks has failed. They are tried again later, until then the
+	 * last fetched content stays valid.
+	 *
+	 * @param selection  The selection of the weeks
+	 * @param weeks      The weeks that couldn't be fetched
+	 * @param exception  The reason
+	 */
+	public default void refreshFailed(
+			Selection selection,
+			List<Integer> weeks,
+			Exception exception) {
+	}
+}
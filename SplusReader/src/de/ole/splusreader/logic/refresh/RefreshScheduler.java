@@ -0,0 +1,427 @@
+package de.ole.splusreader.logic.refresh;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.ole.splusreader.logic.MissingSettingException;
+import de.ole.splusreader.logic.Selection;
+import de.ole.splusreader.logic.SplusEventFactory;
+import de.ole.splusreader.logic.diff.Snapshot;
+import de.ole.splusreader.logic.diff.WeekDiff;
+import de.ole.splusreader.logic.diff.WeekSnapshot;
+
+/**
+ * Keeps the weeks of several selections up to date in the background, asking
+ * splus about each week only as often as it is likely to change.
+ *
+ * The current and the next week are fetched every minimum interval. Every
+ * week further ahead doubles the interval, up to the maximum interval. Weeks
+ * that are over are fetched once and then never again. A week that has just
+ * changed is fetched more often for a while, as changes tend to come in
+ * bursts, and slowly returns to its usual interval while it stays the same.
+ *
+ * All weeks of a selection due at the same time are fetched in as few
+ * requests as the factory allows. Every change is told to the registered
+ * listeners.
+ */
+public class RefreshScheduler implements Closeable {
+
+	private static final long WEEK_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+	//A change shortens the interval four times for each of these
+	private static final int MAX_RECENT_CHANGES = 3;
+
+	/**
+	 * The state of a single watched week.
+	 */
+	private static final class WatchedWeek {
+		private final int week;
+		private final long start;
+
+		private volatile WeekSnapshot snapshot;
+		private volatile long nextRefresh;
+		private int recentChanges;
+
+		private WatchedWeek(int week, long start) {
+			this.week = week;
+			this.start = start;
+		}
+	}
+
+	private final SplusEventFactory factory;
+	private final int yearOfFirstWeek;
+	private final Clock clock;
+
+	private final Map<Selection, Map<Integer, WatchedWeek>> selections =
+			new ConcurrentHashMap<>();
+	private final List<RefreshListener> listeners =
+			new CopyOnWriteArrayList<>();
+
+	private final ScheduledExecutorService scheduler;
+	//The next run of the scheduler, guarded by scheduler
+	private ScheduledFuture<?> nextRun;
+
+	private volatile long minIntervalMillis = TimeUnit.MINUTES.toMillis(15);
+	private volatile long maxIntervalMillis = TimeUnit.DAYS.toMillis(1);
+
+	private final AtomicLong fetchedWeeks = new AtomicLong();
+	private final AtomicLong changedWeeks = new AtomicLong();
+
+	/**
+	 * @param factory          The factory fetching every selection; its own
+	 *                         selection doesn't matter
+	 * @param yearOfFirstWeek  The ISO week year the weeks are counted from,
+	 *                         e.g. 2016 for the winter semester 2016/17
+	 */
+	public RefreshScheduler(SplusEventFactory factory, int yearOfFirstWeek) {
+		this(factory, yearOfFirstWeek, Clock.systemUTC());
+	}
+
+	/**
+	 * @param factory          The factory fetching every selection; its own
+	 *                         selection doesn't matter
+	 * @param yearOfFirstWeek  The ISO week year the weeks are counted from
+	 * @param clock            The clock telling which weeks are over, near or
+	 *                         far and when they are due
+	 */
+	public RefreshScheduler(
+			SplusEventFactory factory,
+			int yearOfFirstWeek,
+			Clock clock) {
+		this.factory = factory;
+		this.yearOfFirstWeek = yearOfFirstWeek;
+		this.clock = clock;
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "splus-refresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Keeps the weeks between two weeks (inclusively) of a selection up to
+	 * date. Weeks not watched before are fetched in the background right
+	 * away. Watching weeks again changes nothing.
+	 *
+	 * @param selection  The selection, e.g. from
+	 *                   {@link SplusEventFactory#select}
+	 * @param firstWeek  The first week as numbered by splus
+	 * @param lastWeek   The last week as numbered by splus
+	 */
+	public void watch(Selection selection, int firstWeek, int lastWeek) {
+		Map<Integer, WatchedWeek> weeks = selections.computeIfAbsent(
+				selection, key -> new ConcurrentSkipListMap<>());
+		ZoneId zone = factory.getDateCalculator().getZone();
+
+		for(int week = firstWeek; week <= lastWeek; week++) {
+			long start = factory.getDateCalculator()
+					.week(yearOfFirstWeek, week).getMonday()
+					.atStartOfDay(zone).toInstant().toEpochMilli();
+
+			weeks.putIfAbsent(week, new WatchedWeek(week, start));
+		}
+
+		scheduler.execute(this::run);
+	}
+
+	/**
+	 * Stops fetching all weeks of a selection.
+	 *
+	 * @param selection  The selection
+	 */
+	public void unwatch(Selection selection) {
+		selections.remove(selection);
+	}
+
+	/**
+	 * @return all selections watched
+	 */
+	public List<Selection> getSelections() {
+		return new ArrayList<>(selections.keySet());
+	}
+
+	/**
+	 * @param selection  A watched selection
+	 * @return           The weeks of the selection as last fetched, without
+	 *                   those not fetched yet, or null if the selection isn't
+	 *                   watched
+	 */
+	public Snapshot getSnapshot(Selection selection) {
+		Map<Integer, WatchedWeek> weeks = selections.get(selection);
+
+		if(weeks == null) {
+			return null;
+		}
+
+		List<WeekSnapshot> fetched = new ArrayList<>();
+
+		for(WatchedWeek week:weeks.values()) {
+			WeekSnapshot snapshot = week.snapshot;
+			if(snapshot != null)
+				fetched.add(snapshot);
+		}
+
+		return new Snapshot(clock.millis(), fetched);
+	}
+
+	/**
+	 * @param listener the listener to tell about changes from now on
+	 */
+	public void addListener(RefreshListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @param listener the listener to tell about changes no more
+	 */
+	public void removeListener(RefreshListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Fetches all weeks that are due now, on the calling thread.
+	 */
+	public synchronized void refreshDue() {
+		long now = clock.millis();
+
+		for(Map.Entry<Selection, Map<Integer, WatchedWeek>> entry:
+				selections.entrySet()) {
+			List<WatchedWeek> due = new ArrayList<>();
+
+			for(WatchedWeek week:entry.getValue().values()) {
+				if(week.nextRefresh <= now)
+					due.add(week);
+			}
+
+			if(!due.isEmpty()) {
+				refresh(entry.getKey(), due, now);
+			}
+		}
+	}
+
+	private void refresh(Selection selection, List<WatchedWeek> due, long now) {
+		List<Integer> numbers = new ArrayList<>(due.size());
+
+		for(WatchedWeek week:due) {
+			numbers.add(week.week);
+
+			//the week cache would answer with the week as fetched before
+			factory.invalidateWeek(selection, week.week);
+		}
+
+		List<WeekSnapshot> snapshots;
+
+		try {
+			snapshots = factory.getWeekSnapshots(selection, numbers);
+		} catch (MissingSettingException | IOException | RuntimeException e) {
+			for(WatchedWeek week:due) {
+				week.nextRefresh = now + Math.min(
+						minIntervalMillis, interval(week, now));
+			}
+
+			for(RefreshListener listener:listeners) {
+				try {
+					listener.refreshFailed(selection, numbers, e);
+				} catch (RuntimeException listenerFailure) {
+					//a broken listener mustn't keep the others uninformed
+				}
+			}
+			return;
+		}
+
+		fetchedWeeks.addAndGet(due.size());
+
+		List<WeekDiff> diffs = new ArrayList<>();
+		List<WeekSnapshot> changed = new ArrayList<>();
+
+		//every week is due again later before anyone is told, so a failing
+		//listener can't leave weeks due right away
+		for(int i = 0; i < due.size(); i++) {
+			WatchedWeek week = due.get(i);
+			WeekSnapshot before = week.snapshot;
+			WeekSnapshot after = snapshots.get(i);
+			boolean hasChanged = before == null || !before.hasSameContent(after);
+
+			if(before != null) {
+				week.recentChanges = hasChanged
+						? Math.min(MAX_RECENT_CHANGES, week.recentChanges + 1)
+						: Math.max(0, week.recentChanges - 1);
+			}
+
+			week.snapshot = after;
+			week.nextRefresh = nextRefresh(week, now);
+
+			if(hasChanged) {
+				changedWeeks.incrementAndGet();
+				diffs.add(WeekDiff.between(before, after));
+				changed.add(after);
+			}
+		}
+
+		for(int i = 0; i < diffs.size(); i++) {
+			for(RefreshListener listener:listeners) {
+				try {
+					listener.weekChanged(
+							selection, diffs.get(i), changed.get(i));
+				} catch (RuntimeException e) {
+					//a broken listener mustn't keep the others uninformed
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the time a fetched week is due again, Long.MAX_VALUE for never
+	 */
+	private long nextRefresh(WatchedWeek week, long now) {
+		long interval = interval(week, now);
+
+		if(interval == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+
+		long next = now + interval;
+		long weeksAhead = (week.start - now) / WEEK_MILLIS;
+
+		//the interval gets shorter as soon as the week comes a week closer
+		if(weeksAhead > 0) {
+			next = Math.min(next, week.start - weeksAhead * WEEK_MILLIS);
+		}
+
+		return next;
+	}
+
+	/**
+	 * @return the time between two fetches of a week, Long.MAX_VALUE if it
+	 *         is over
+	 */
+	private long interval(WatchedWeek week, long now) {
+		if(week.start + WEEK_MILLIS <= now) {
+			return Long.MAX_VALUE;
+		}
+
+		long min = minIntervalMillis;
+		long max = Math.max(min, maxIntervalMillis);
+
+		//0 for the current and the next week
+		long weeksAhead = Math.max(0, (week.start - now) / WEEK_MILLIS);
+
+		long interval = min;
+		for(long i = 0; i < weeksAhead && interval < max; i++) {
+			interval *= 2;
+		}
+		interval = Math.min(interval, max);
+
+		return Math.max(min, interval >> 2 * week.recentChanges);
+	}
+
+	/**
+	 * Fetches what is due and waits for the next week to become due.
+	 */
+	private void run() {
+		try {
+			refreshDue();
+		} finally {
+			long next = Long.MAX_VALUE;
+
+			for(Map<Integer, WatchedWeek> weeks:selections.values()) {
+				for(WatchedWeek week:weeks.values()) {
+					next = Math.min(next, week.nextRefresh);
+				}
+			}
+
+			synchronized(scheduler) {
+				if(nextRun != null) {
+					nextRun.cancel(false);
+				}
+
+				nextRun = next == Long.MAX_VALUE || scheduler.isShutdown()
+						? null
+						: scheduler.schedule(this::run,
+								Math.max(0, next - clock.millis()),
+								TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * @return the time between two fetches of the current and the next week
+	 */
+	public long getMinIntervalMillis() {
+		return minIntervalMillis;
+	}
+
+	/**
+	 * Also the shortest time between two fetches of a week that has just
+	 * changed. 15 minutes by default. Takes effect with the next fetch of
+	 * each week.
+	 *
+	 * @param minIntervalMillis the time between two fetches of the current
+	 *                          and the next week
+	 */
+	public void setMinIntervalMillis(long minIntervalMillis) {
+		if(minIntervalMillis <= 0) {
+			throw new IllegalArgumentException(
+					"minIntervalMillis must be positive");
+		}
+		this.minIntervalMillis = minIntervalMillis;
+	}
+
+	/**
+	 * @return the longest time between two fetches of a week
+	 */
+	public long getMaxIntervalMillis() {
+		return maxIntervalMillis;
+	}
+
+	/**
+	 * One day by default. Takes effect with the next fetch of each week.
+	 *
+	 * @param maxIntervalMillis the longest time between two fetches of a
+	 *                          week that isn't over yet
+	 */
+	public void setMaxIntervalMillis(long maxIntervalMillis) {
+		if(maxIntervalMillis <= 0) {
+			throw new IllegalArgumentException(
+					"maxIntervalMillis must be positive");
+		}
+		this.maxIntervalMillis = maxIntervalMillis;
+	}
+
+	/**
+	 * @return the number of weeks fetched so far
+	 */
+	public long getFetchedWeekCount() {
+		return fetchedWeeks.get();
+	}
+
+	/**
+	 * @return the number of fetched weeks that had changed, including the
+	 *         first fetch of every week
+	 */
+	public long getChangedWeekCount() {
+		return changedWeeks.get();
+	}
+
+	/**
+	 * Stops the refreshing at once.
+	 */
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+	}
+}
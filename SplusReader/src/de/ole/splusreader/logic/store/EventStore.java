@@ -0,0 +1,678 @@
+package de.ole.splusreader.logic.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.ole.splusreader.logic.SplusEvent;
+import de.ole.splusreader.logic.diff.WeekSnapshot;
+
+/**
+ * Keeps fetched weeks on disk, so weeks that are over can be read again
+ * without asking splus, even after a restart.
+ *
+ * Weeks are identified by their monday rather than by the number splus
+ * gives them, as splus counts the weeks of every plan from the start of its
+ * semester, so the same number means different weeks in different years.
+ *
+ * Every selection (plan, study path and group) gets a file of its own in the
+ * directory of the store. After a header naming the selection and the year
+ * its plan counts the weeks from, the file is a log of weeks, each stored as
+ * a record holding
+ * <ul>
+ * <li>the monday of the week, the time it was fetched and the hash of its
+ * content,</li>
+ * <li>the events of the week sorted by start, with start and end in minutes
+ * and their texts as ids of a string table,</li>
+ * <li>the string table, every distinct text of the week once.</li>
+ * </ul>
+ * Every record is memory-mapped on its own. Queries find the weeks of a range
+ * in an index of the mondays and the events with a binary search in each
+ * week, reading the mapped records directly; only the events returned are
+ * built.
+ *
+ * Storing a week that hasn't changed just updates its time in place. A
+ * changed week is appended as a new record, which costs no more than the
+ * events of the week and leaves the records of the other weeks untouched.
+ * The records replaced by newer ones are dropped when the file is opened the
+ * next time and they take up more than half of it.
+ *
+ * A file is read once, when its selection is used first; weeks stored by
+ * other processes later on are not seen. Mapped files are never replaced, as
+ * Windows doesn't allow that: on Windows dropping replaced records is skipped
+ * while another process still has the file open, and only happens later.
+ *
+ * The store can be shared between several factories and threads.
+ */
+public class EventStore implements Closeable {
+
+	private static final int MAGIC = 0x53504C45;
+	private static final int FORMAT_VERSION = 4;
+
+	//magic, version, year of the first week and the length of the selection,
+	//followed by the latter
+	private static final int HEADER_BYTES = 16;
+	private static final int YEAR_OF_FIRST_WEEK = 8;
+
+	//length, monday, time fetched, hash, event count and string count
+	private static final int RECORD_BYTES = 32;
+	private static final int FETCHED_AT = 8;
+	private static final int CONTENT_HASH = 16;
+	private static final int EVENT_BYTES = 24;
+
+	private static final long MILLIS_PER_MINUTE = 60 * 1000;
+	private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+	private final File directory;
+	private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+
+	/**
+	 * @param directory     The directory for the files, created if necessary
+	 * @throws IOException  If the directory can't be created
+	 */
+	public EventStore(File directory) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can't create " + directory);
+		}
+
+		this.directory = directory;
+	}
+
+	/**
+	 * Stores the events of a week, replacing those stored for it before.
+	 *
+	 * @param selection     The selection the week belongs to, e.g. its plan,
+	 *                      study path and group
+	 * @param monday        The monday of the week
+	 * @param events        All events of the week
+	 * @throws IOException  If the file of the selection can't be written
+	 */
+	public void put(String selection, LocalDate monday, List<SplusEvent> events)
+			throws IOException {
+		segment(selection).put(day(monday), events, System.currentTimeMillis());
+	}
+
+	/**
+	 * @param selection     The selection the week belongs to
+	 * @param monday        The monday of the week
+	 * @return              true if the week is stored, even if it has no events
+	 * @throws IOException  If the file of the selection can't be read
+	 */
+	public boolean hasWeek(String selection, LocalDate monday)
+			throws IOException {
+		return segment(selection).getFetchedAt(day(monday)) != 0;
+	}
+
+	/**
+	 * @param selection     The selection the week belongs to
+	 * @param monday        The monday of the week
+	 * @return              The time the week was stored last in milliseconds
+	 *                      since the epoch, 0 if it isn't stored
+	 * @throws IOException  If the file of the selection can't be read
+	 */
+	public long getFetchedAt(String selection, LocalDate monday)
+			throws IOException {
+		return segment(selection).getFetchedAt(day(monday));
+	}
+
+	/**
+	 * Remembers the ISO week year the plan of a selection counts its weeks
+	 * from, so the weeks of a range of dates can be numbered without asking
+	 * splus.
+	 *
+	 * @param selection     A selection
+	 * @param year          The year splus counts the weeks from
+	 * @throws IOException  If the file of the selection can't be written
+	 */
+	public void setYearOfFirstWeek(String selection, int year)
+			throws IOException {
+		segment(selection).setYearOfFirstWeek(year);
+	}
+
+	/**
+	 * @param selection     A selection
+	 * @return              The year splus counted the weeks of the selection
+	 *                      from when it was stored last, 0 if it isn't known
+	 * @throws IOException  If the file of the selection can't be read
+	 */
+	public int getYearOfFirstWeek(String selection) throws IOException {
+		return segment(selection).getYearOfFirstWeek();
+	}
+
+	/**
+	 * @param selection     A selection
+	 * @return              The mondays of the stored weeks of the selection
+	 * @throws IOException  If the file of the selection can't be read
+	 */
+	public SortedSet<LocalDate> getWeeks(String selection) throws IOException {
+		SortedSet<LocalDate> mondays = new TreeSet<>();
+
+		for(int day:segment(selection).getWeeks()) {
+			mondays.add(LocalDate.ofEpochDay(day));
+		}
+
+		return mondays;
+	}
+
+	/**
+	 * @param selection     A selection
+	 * @param fromMillis    The earliest start in milliseconds since the epoch
+	 * @param toMillis      The start the events have to be before
+	 * @return              The stored events starting in the range, sorted by
+	 *                      start
+	 * @throws IOException  If the file of the selection can't be read
+	 */
+	public List<SplusEvent> getEventsBetween(
+			String selection,
+			long fromMillis,
+			long toMillis) throws IOException {
+		return segment(selection).getEventsBetween(fromMillis, toMillis);
+	}
+
+	/**
+	 * Forgets the open files. Stored weeks stay on disk.
+	 */
+	@Override
+	public void close() {
+		segments.clear();
+	}
+
+	private Segment segment(String selection) throws IOException {
+		Segment segment = segments.get(selection);
+
+		if(segment == null) {
+			Segment opened = new Segment(selection,
+					new File(directory, fileName(selection)));
+			segment = segments.putIfAbsent(selection, opened);
+
+			if(segment == null) {
+				segment = opened;
+			}
+		}
+
+		return segment;
+	}
+
+	private static int day(LocalDate monday) {
+		return Math.toIntExact(monday.toEpochDay());
+	}
+
+	private static String fileName(String selection) {
+		long hash = 0xCBF29CE484222325L;
+
+		for(int i = 0; i < selection.length(); i++) {
+			hash = (hash ^ selection.charAt(i)) * 0x100000001B3L;
+		}
+
+		return Long.toHexString(hash) + ".events";
+	}
+
+	public String toString() {
+		return "event store in " + directory;
+	}
+
+	/**
+	 * The mapped record of a single week.
+	 */
+	private static final class Record {
+		private final MappedByteBuffer buffer;
+		private final int eventCount;
+		private final int offsetsAt;
+		private final int stringsAt;
+		private final String[] strings;
+
+		private Record(MappedByteBuffer buffer) {
+			this.buffer = buffer;
+			this.eventCount = buffer.getInt(24);
+			this.offsetsAt = RECORD_BYTES + eventCount * EVENT_BYTES;
+
+			int stringCount = buffer.getInt(28);
+			this.stringsAt = offsetsAt + (stringCount + 1) * 4;
+			this.strings = new String[stringCount];
+		}
+
+		private String string(int id) {
+			if(id == StringDictionary.NULL) {
+				return null;
+			}
+
+			String value = strings[id];
+
+			if(value == null) {
+				int start = buffer.getInt(offsetsAt + id * 4);
+				int end = buffer.getInt(offsetsAt + id * 4 + 4);
+
+				//called on the super classes, as the overrides only exist
+				//since Java 9 and 17
+				ByteBuffer bytes = ((ByteBuffer) buffer).duplicate();
+				((Buffer) bytes).limit(stringsAt + end)
+						.position(stringsAt + start);
+				value = StandardCharsets.UTF_8.decode(bytes).toString();
+				strings[id] = value;
+			}
+
+			return value;
+		}
+
+		private int start(int index) {
+			return buffer.getInt(RECORD_BYTES + index * EVENT_BYTES);
+		}
+
+		/**
+		 * @return the index of the first event starting at or after the
+		 *         minute, the event count if there is none
+		 */
+		private int firstStartingAt(long minute) {
+			int low = 0;
+			int high = eventCount;
+
+			while(low < high) {
+				int middle = (low + high) >>> 1;
+
+				if(start(middle) < minute) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+
+			return low;
+		}
+
+		private SplusEvent event(int index) {
+			int at = RECORD_BYTES + index * EVENT_BYTES;
+
+			return new SplusEvent(
+					buffer.getInt(at) * MILLIS_PER_MINUTE,
+					buffer.getInt(at + 4) * MILLIS_PER_MINUTE,
+					string(buffer.getInt(at + 8)),
+					string(buffer.getInt(at + 12)),
+					string(buffer.getInt(at + 16)),
+					string(buffer.getInt(at + 20)));
+		}
+	}
+
+	/**
+	 * The file of a single selection.
+	 */
+	private static final class Segment {
+		private final String selection;
+		private final File file;
+
+		//the latest record of every stored week by the epoch day of its monday
+		private final TreeMap<Integer, Record> weeks = new TreeMap<>();
+
+		//0 until it is known
+		private int yearOfFirstWeek;
+
+		private Segment(String selection, File file) throws IOException {
+			this.selection = selection;
+			this.file = file;
+
+			if(file.exists()) {
+				open();
+			}
+		}
+
+		/**
+		 * Reads the index of the records, dropping replaced records first if
+		 * they take up more than half of the file, and maps the others.
+		 */
+		private void open() throws IOException {
+			TreeMap<Integer, long[]> latest = new TreeMap<>();
+			long headerBytes;
+			long end;
+			long live = 0;
+
+			try(FileChannel channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				//the header is written along with the first week
+				if(channel.size() == 0) {
+					return;
+				}
+
+				ByteBuffer header = read(channel, 0, HEADER_BYTES);
+
+				if(header == null || header.getInt(0) != MAGIC) {
+					throw new IOException(file + " is no event store");
+				}
+
+				//weeks stored by an older version are fetched again
+				if(header.getInt(4) != FORMAT_VERSION) {
+					channel.truncate(0);
+					return;
+				}
+
+				ByteBuffer name = read(channel, HEADER_BYTES, header.getInt(12));
+				String owner = name == null ? null
+						: StandardCharsets.UTF_8.decode(name).toString();
+
+				//guarding against two selections with the same file name
+				if(!selection.equals(owner)) {
+					throw new IOException(file + " belongs to " + owner);
+				}
+
+				headerBytes = HEADER_BYTES + header.getInt(12);
+				yearOfFirstWeek = header.getInt(YEAR_OF_FIRST_WEEK);
+				end = headerBytes;
+
+				while(true) {
+					ByteBuffer record = read(channel, end, RECORD_BYTES);
+
+					if(record == null || record.getInt(0) < RECORD_BYTES
+							|| end + record.getInt(0) > channel.size()) {
+						break;
+					}
+
+					long[] previous = latest.put(record.getInt(4),
+							new long[] {end, record.getInt(0)});
+
+					live += record.getInt(0)
+							- (previous == null ? 0 : previous[1]);
+					end += record.getInt(0);
+				}
+
+				//a record cut off while it was written
+				if(end < channel.size()) {
+					channel.truncate(end);
+				}
+			}
+
+			if(end - headerBytes > 2 * live) {
+				compact(latest, headerBytes, live);
+			}
+
+			try(FileChannel channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				for(Map.Entry<Integer, long[]> entry:latest.entrySet()) {
+					long[] at = entry.getValue();
+
+					//the mappings stay valid after the channel is closed
+					weeks.put(entry.getKey(), new Record(channel.map(
+							FileChannel.MapMode.READ_WRITE, at[0], at[1])));
+				}
+			}
+		}
+
+		/**
+		 * Copies the latest records to a new file replacing this one and
+		 * updates their positions. Keeps this file if it can't be replaced,
+		 * e.g. because it is mapped by another process on Windows.
+		 */
+		private void compact(
+				TreeMap<Integer, long[]> latest,
+				long headerBytes,
+				long live) throws IOException {
+			File temp = File.createTempFile("events", ".tmp",
+					file.getAbsoluteFile().getParentFile());
+			List<long[]> moved = new ArrayList<>(latest.size());
+
+			try {
+				try(FileChannel from = FileChannel.open(file.toPath(),
+						StandardOpenOption.READ);
+						FileChannel to = FileChannel.open(temp.toPath(),
+						StandardOpenOption.WRITE)) {
+					copy(from, 0, headerBytes, to);
+
+					for(long[] at:latest.values()) {
+						moved.add(new long[] {to.position(), at[1]});
+						copy(from, at[0], at[1], to);
+					}
+				}
+
+				Files.move(temp.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				return;
+			} finally {
+				temp.delete();
+			}
+
+			int i = 0;
+			for(Map.Entry<Integer, long[]> entry:latest.entrySet()) {
+				entry.setValue(moved.get(i++));
+			}
+		}
+
+		private static void copy(
+				FileChannel from,
+				long position,
+				long count,
+				FileChannel to) throws IOException {
+			while(count > 0) {
+				long copied = from.transferTo(position, count, to);
+				position += copied;
+				count -= copied;
+			}
+		}
+
+		/**
+		 * @return the bytes at the position or null if the file ends before
+		 */
+		private static ByteBuffer read(
+				FileChannel channel,
+				long position,
+				int count) throws IOException {
+			if(count < 0 || position + count > channel.size()) {
+				return null;
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate(count);
+
+			while(buffer.hasRemaining()) {
+				if(channel.read(buffer, position + buffer.position()) < 0) {
+					return null;
+				}
+			}
+
+			((Buffer) buffer).flip();
+			return buffer;
+		}
+
+		private synchronized long getFetchedAt(int monday) {
+			Record record = weeks.get(monday);
+			return record == null ? 0 : record.buffer.getLong(FETCHED_AT);
+		}
+
+		private synchronized int getYearOfFirstWeek() {
+			return yearOfFirstWeek;
+		}
+
+		private synchronized void setYearOfFirstWeek(int year)
+				throws IOException {
+			if(year == yearOfFirstWeek) {
+				return;
+			}
+
+			yearOfFirstWeek = year;
+
+			try(FileChannel channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				if(channel.size() == 0) {
+					write(channel, 0, header());
+					return;
+				}
+
+				write(channel, YEAR_OF_FIRST_WEEK,
+						ByteBuffer.allocate(4).putInt(0, year));
+			}
+		}
+
+		private synchronized SortedSet<Integer> getWeeks() {
+			return new TreeSet<>(weeks.keySet());
+		}
+
+		private synchronized List<SplusEvent> getEventsBetween(
+				long fromMillis,
+				long toMillis) {
+			long from = ceilMinutes(fromMillis);
+			long to = ceilMinutes(toMillis);
+			List<SplusEvent> events = new ArrayList<>();
+
+			//a week of another time zone may start a day before its monday
+			int firstMonday = (int) Math.floorDiv(fromMillis, MILLIS_PER_DAY) - 7;
+			int lastMonday = (int) Math.floorDiv(toMillis, MILLIS_PER_DAY) + 1;
+
+			if(firstMonday > lastMonday) {
+				return events;
+			}
+
+			for(Record record:weeks.subMap(
+					firstMonday, true, lastMonday, true).values()) {
+				for(int i = record.firstStartingAt(from);
+						i < record.eventCount && record.start(i) < to; i++) {
+					events.add(record.event(i));
+				}
+			}
+
+			//the weeks are in order already, so this just checks
+			Collections.sort(events);
+			return events;
+		}
+
+		private static long ceilMinutes(long millis) {
+			return -Math.floorDiv(-millis, MILLIS_PER_MINUTE);
+		}
+
+		private synchronized void put(
+				int monday,
+				List<SplusEvent> events,
+				long fetchedAt) throws IOException {
+			long hash = WeekSnapshot.hash(events);
+			Record stored = weeks.get(monday);
+
+			if(stored != null && stored.buffer.getLong(CONTENT_HASH) == hash) {
+				stored.buffer.putLong(FETCHED_AT, fetchedAt);
+				return;
+			}
+
+			ByteBuffer record = encode(monday, fetchedAt, hash, events);
+
+			try(FileChannel channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE)) {
+				if(channel.size() == 0) {
+					write(channel, 0, header());
+				}
+
+				long position = channel.size();
+				int length = record.remaining();
+
+				write(channel, position, record);
+
+				weeks.put(monday, new Record(channel.map(
+						FileChannel.MapMode.READ_WRITE, position, length)));
+			}
+		}
+
+		private static void write(
+				FileChannel channel,
+				long position,
+				ByteBuffer bytes) throws IOException {
+			while(bytes.hasRemaining()) {
+				position += channel.write(bytes, position);
+			}
+		}
+
+		private ByteBuffer header() {
+			byte[] name = selection.getBytes(StandardCharsets.UTF_8);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + name.length);
+
+			header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(yearOfFirstWeek)
+					.putInt(name.length).put(name);
+			((Buffer) header).flip();
+
+			return header;
+		}
+
+		private static ByteBuffer encode(
+				int monday,
+				long fetchedAt,
+				long hash,
+				List<SplusEvent> events) {
+			List<SplusEvent> sorted = new ArrayList<>(events);
+			//stable, so events starting together keep their order
+			Collections.sort(sorted);
+
+			StringDictionary dictionary = new StringDictionary();
+			int[][] columns = new int[sorted.size()][];
+
+			for(int i = 0; i < columns.length; i++) {
+				SplusEvent event = sorted.get(i);
+
+				columns[i] = new int[] {
+						toMinutes(event.getStartMillis()),
+						toMinutes(event.getEndMillis()),
+						dictionary.intern(event.getTitle()),
+						dictionary.intern(event.getDescription()),
+						dictionary.intern(event.getLocation()),
+						dictionary.intern(event.getPresenter())};
+			}
+
+			byte[][] strings = new byte[dictionary.size()][];
+			int stringBytes = 0;
+
+			for(int id = 0; id < strings.length; id++) {
+				strings[id] = dictionary.get(id).getBytes(StandardCharsets.UTF_8);
+				stringBytes += strings[id].length;
+			}
+
+			int length = RECORD_BYTES + columns.length * EVENT_BYTES
+					+ (strings.length + 1) * 4 + stringBytes;
+			ByteBuffer record = ByteBuffer.allocate(length);
+
+			record.putInt(length);
+			record.putInt(monday);
+			record.putLong(fetchedAt);
+			record.putLong(hash);
+			record.putInt(columns.length);
+			record.putInt(strings.length);
+
+			for(int[] event:columns) {
+				for(int value:event) {
+					record.putInt(value);
+				}
+			}
+
+			int offset = 0;
+			record.putInt(0);
+			for(byte[] bytes:strings) {
+				offset += bytes.length;
+				record.putInt(offset);
+			}
+
+			for(byte[] bytes:strings) {
+				record.put(bytes);
+			}
+
+			((Buffer) record).flip();
+			return record;
+		}
+
+		private static int toMinutes(long millis) {
+			if(millis == SplusEvent.NO_DATE) {
+				throw new IllegalArgumentException(
+						"Only events with a start and an end can be stored");
+			}
+
+			return Math.toIntExact(Math.floorDiv(millis, MILLIS_PER_MINUTE));
+		}
+	}
+}
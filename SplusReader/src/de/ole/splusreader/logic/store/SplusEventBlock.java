@@ -0,0 +1,261 @@
+package de.ole.splusreader.logic.store;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import de.ole.splusreader.logic.SplusEvent;
+
+/**
+ * A compact store for many events, e.g. those of a whole faculty and year.
+ *
+ * The events are kept in columns: start and end as minutes since the epoch,
+ * title, description, location and presenter as ids of a
+ * {@link StringDictionary}. An event costs 24 bytes this way, while a
+ * SplusEvent with its own strings easily takes several hundred. Blocks sharing
+ * a dictionary share their strings, too.
+ *
+ * {@link #get(int)} hands out a new SplusEvent for an event, referencing the
+ * strings of the dictionary. Seconds and milliseconds of start and end are
+ * dropped, splus only knows quarter hours anyway.
+ *
+ * Like an ArrayList, a block may be read by many threads but must not be
+ * added to while it is read.
+ */
+public final class SplusEventBlock implements Iterable<SplusEvent> {
+
+	private static final long MILLIS_PER_MINUTE = 60 * 1000;
+
+	private final StringDictionary dictionary;
+
+	private int[] starts;
+	private int[] ends;
+	private int[] titles;
+	private int[] descriptions;
+	private int[] locations;
+	private int[] presenters;
+	private int size;
+
+	/**
+	 * Creates an empty block with a dictionary of its own.
+	 */
+	public SplusEventBlock() {
+		this(new StringDictionary());
+	}
+
+	/**
+	 * @param dictionary  The dictionary for the texts, may be shared
+	 */
+	public SplusEventBlock(StringDictionary dictionary) {
+		this(dictionary, 64);
+	}
+
+	/**
+	 * @param dictionary  The dictionary for the texts, may be shared
+	 * @param capacity    The number of events to make room for
+	 */
+	public SplusEventBlock(StringDictionary dictionary, int capacity) {
+		this.dictionary = dictionary;
+
+		capacity = Math.max(capacity, 1);
+		starts = new int[capacity];
+		ends = new int[capacity];
+		titles = new int[capacity];
+		descriptions = new int[capacity];
+		locations = new int[capacity];
+		presenters = new int[capacity];
+	}
+
+	/**
+	 * @param events      The events to store
+	 * @param dictionary  The dictionary for the texts, may be shared
+	 * @return            A block of the events, in the same order
+	 */
+	public static SplusEventBlock of(
+			List<SplusEvent> events,
+			StringDictionary dictionary) {
+		SplusEventBlock block = new SplusEventBlock(dictionary, events.size());
+		block.addAll(events);
+		return block;
+	}
+
+	/**
+	 * @param event  The event to store
+	 * @throws IllegalArgumentException  If the event has no start or end
+	 */
+	public void add(SplusEvent event) {
+		if(event.getStartMillis() == SplusEvent.NO_DATE
+				|| event.getEndMillis() == SplusEvent.NO_DATE) {
+			throw new IllegalArgumentException(
+					"Only events with a start and an end can be stored");
+		}
+
+		if(size == starts.length) {
+			grow();
+		}
+
+		starts[size] = toMinutes(event.getStartMillis());
+		ends[size] = toMinutes(event.getEndMillis());
+		titles[size] = dictionary.intern(event.getTitle());
+		descriptions[size] = dictionary.intern(event.getDescription());
+		locations[size] = dictionary.intern(event.getLocation());
+		presenters[size] = dictionary.intern(event.getPresenter());
+		size++;
+	}
+
+	/**
+	 * @param events  The events to store
+	 */
+	public void addAll(Iterable<SplusEvent> events) {
+		for(SplusEvent event:events) {
+			add(event);
+		}
+	}
+
+	private static int toMinutes(long millis) {
+		return Math.toIntExact(Math.floorDiv(millis, MILLIS_PER_MINUTE));
+	}
+
+	private void grow() {
+		int capacity = starts.length + (starts.length >> 1) + 1;
+
+		starts = Arrays.copyOf(starts, capacity);
+		ends = Arrays.copyOf(ends, capacity);
+		titles = Arrays.copyOf(titles, capacity);
+		descriptions = Arrays.copyOf(descriptions, capacity);
+		locations = Arrays.copyOf(locations, capacity);
+		presenters = Arrays.copyOf(presenters, capacity);
+	}
+
+	/**
+	 * Frees the room made for events that weren't added.
+	 */
+	public void trimToSize() {
+		if(size < starts.length) {
+			int capacity = Math.max(size, 1);
+
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			titles = Arrays.copyOf(titles, capacity);
+			descriptions = Arrays.copyOf(descriptions, capacity);
+			locations = Arrays.copyOf(locations, capacity);
+			presenters = Arrays.copyOf(presenters, capacity);
+		}
+	}
+
+	/**
+	 * @return the number of events
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param index  The index of an event
+	 * @return       A new SplusEvent of the stored event
+	 */
+	public SplusEvent get(int index) {
+		checkIndex(index);
+
+		return new SplusEvent(
+				starts[index] * MILLIS_PER_MINUTE,
+				ends[index] * MILLIS_PER_MINUTE,
+				dictionary.get(titles[index]),
+				dictionary.get(descriptions[index]),
+				dictionary.get(locations[index]),
+				dictionary.get(presenters[index]));
+	}
+
+	/**
+	 * @param index  The index of an event
+	 * @return       The start of the event in milliseconds since the epoch
+	 */
+	public long getStartMillis(int index) {
+		checkIndex(index);
+		return starts[index] * MILLIS_PER_MINUTE;
+	}
+
+	/**
+	 * @param index  The index of an event
+	 * @return       The end of the event in milliseconds since the epoch
+	 */
+	public long getEndMillis(int index) {
+		checkIndex(index);
+		return ends[index] * MILLIS_PER_MINUTE;
+	}
+
+	/**
+	 * @param index  The index of an event
+	 * @return       The dictionary id of the title, e.g. to count events per
+	 *               module without building any string
+	 */
+	public int getTitleId(int index) {
+		checkIndex(index);
+		return titles[index];
+	}
+
+	/**
+	 * @param index  The index of an event
+	 * @return       The dictionary id of the location
+	 */
+	public int getLocationId(int index) {
+		checkIndex(index);
+		return locations[index];
+	}
+
+	/**
+	 * @param index  The index of an event
+	 * @return       The dictionary id of the presenter
+	 */
+	public int getPresenterId(int index) {
+		checkIndex(index);
+		return presenters[index];
+	}
+
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(
+					"Index " + index + ", size " + size);
+		}
+	}
+
+	/**
+	 * @return the dictionary of the texts
+	 */
+	public StringDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * @return a read-only list of the events, building each one when it is
+	 *         read, for code expecting a list, e.g. a calendar writer
+	 */
+	public List<SplusEvent> asList() {
+		return new Events();
+	}
+
+	@Override
+	public Iterator<SplusEvent> iterator() {
+		return asList().iterator();
+	}
+
+	private final class Events extends AbstractList<SplusEvent>
+			implements RandomAccess {
+
+		@Override
+		public SplusEvent get(int index) {
+			return SplusEventBlock.this.get(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	public String toString() {
+		return "block of " + size + " events, " + dictionary;
+	}
+}
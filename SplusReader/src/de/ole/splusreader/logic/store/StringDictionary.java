@@ -0,0 +1,84 @@
+package de.ole.splusreader.logic.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Numbers distinct strings, so repeated titles, rooms and presenters are kept
+ * once and referenced by an int.
+ *
+ * Ids are handed out in the order the strings are first seen, starting at 0.
+ * null always has the id {@link #NULL}. A dictionary only grows; it can be
+ * shared by many blocks and threads.
+ */
+public final class StringDictionary {
+
+	/**
+	 * The id of null.
+	 */
+	public static final int NULL = -1;
+
+	private final Map<String, Integer> ids = new HashMap<>();
+
+	//replaced when growing, so get needs no lock
+	private volatile String[] strings = new String[256];
+	private int size;
+
+	/**
+	 * @param value  A string or null
+	 * @return       The id of the string, a new one if it wasn't seen before
+	 */
+	public synchronized int intern(String value) {
+		if(value == null) {
+			return NULL;
+		}
+
+		Integer id = ids.get(value);
+
+		if(id != null) {
+			return id;
+		}
+
+		String[] current = strings;
+
+		if(size == current.length) {
+			current = Arrays.copyOf(current, size * 2);
+		}
+
+		current[size] = value;
+		strings = current;
+		ids.put(value, size);
+
+		return size++;
+	}
+
+	/**
+	 * @param id  An id handed out by {@link #intern(String)}
+	 * @return    The string of the id, null for {@link #NULL}
+	 */
+	public String get(int id) {
+		if(id == NULL) {
+			return null;
+		}
+
+		String[] current = strings;
+
+		if(id < 0 || id >= current.length || current[id] == null) {
+			throw new IndexOutOfBoundsException("Unknown id " + id);
+		}
+
+		return current[id];
+	}
+
+	/**
+	 * @return the number of distinct strings
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	public String toString() {
+		return "dictionary of " + size() + " strings";
+	}
+}
@@ -0,0 +1,47 @@
+package de.ole.splusreader.logic.transport;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.jsoup.Connection;
+import org.jsoup.Connection.Response;
+import org.jsoup.Jsoup;
+
+/**
+ * A transport fetching every request with a new jsoup connection, as all
+ * pages were fetched before the {@link PooledHttpTransport} became the
+ * default.
+ */
+public class JsoupTransport implements SplusTransport {
+
+	@Override
+	public SplusResponse execute(SplusRequest request) throws IOException {
+		Connection connection = Jsoup.connect(request.getUrl())
+				.ignoreHttpErrors(true);
+
+		if(request.getMethod() == SplusRequest.Method.GET) {
+			//pages have always been fetched with a timeout of one second
+			connection.timeout(1000).method(Connection.Method.GET);
+		}
+		else {
+			connection.method(Connection.Method.POST);
+		}
+
+		for(Map.Entry<String, String> field:request.getData()) {
+			connection.data(field.getKey(), field.getValue());
+		}
+
+		for(Map.Entry<String, String> header:request.getHeaders().entrySet()) {
+			connection.header(header.getKey(), header.getValue());
+		}
+
+		Response response = connection.execute();
+
+		return new SplusResponse(
+				response.statusCode(),
+				response.url().toExternalForm(),
+				response.headers(),
+				response.charset(),
+				response.bodyAsBytes());
+	}
+}
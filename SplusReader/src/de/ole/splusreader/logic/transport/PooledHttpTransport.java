@@ -0,0 +1,254 @@
+package de.ole.splusreader.logic.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A transport keeping its connections to splus open between requests and
+ * asking for compressed pages.
+ *
+ * It uses the HttpURLConnection of the JDK, which puts a connection back into
+ * its keep-alive pool once the response has been read completely, so
+ * following requests to the same host skip the TCP and TLS handshakes. The
+ * number of idle connections kept per host is set by the system property
+ * http.maxConnections, 5 by default.
+ *
+ * Pages are requested with gzip or deflate and returned decompressed. The
+ * timeouts for connecting and for waiting on data can be set independently.
+ */
+public class PooledHttpTransport implements SplusTransport {
+
+	private volatile int connectTimeoutMillis = 5000;
+	private volatile int readTimeoutMillis = 10000;
+	private volatile boolean compression = true;
+
+	@Override
+	public SplusResponse execute(SplusRequest request) throws IOException {
+		boolean post = request.getMethod() == SplusRequest.Method.POST;
+		byte[] form = encodeForm(request.getData());
+		String url = request.getUrl();
+
+		//a GET carries its data in the query, as with jsoup
+		if(!post && form.length > 0) {
+			url += (url.contains("?") ? "&" : "?")
+					+ new String(form, StandardCharsets.UTF_8);
+		}
+
+		HttpURLConnection connection =
+				(HttpURLConnection) new URL(url).openConnection();
+
+		connection.setConnectTimeout(connectTimeoutMillis);
+		connection.setReadTimeout(readTimeoutMillis);
+		connection.setInstanceFollowRedirects(true);
+		connection.setUseCaches(false);
+
+		if(compression) {
+			connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
+		}
+
+		for(Map.Entry<String, String> header:request.getHeaders().entrySet()) {
+			connection.setRequestProperty(header.getKey(), header.getValue());
+		}
+
+		if(post) {
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setFixedLengthStreamingMode(form.length);
+			connection.setRequestProperty("Content-Type",
+					"application/x-www-form-urlencoded; charset=UTF-8");
+
+			try(OutputStream out = connection.getOutputStream()) {
+				out.write(form);
+			}
+		}
+
+		int statusCode = connection.getResponseCode();
+		Map<String, String> headers = new HashMap<>();
+
+		for(Map.Entry<String, List<String>> header:
+				connection.getHeaderFields().entrySet()) {
+			//the status line comes without a name
+			if(header.getKey() != null && !header.getValue().isEmpty()) {
+				headers.put(header.getKey(),
+						String.join(", ", header.getValue()));
+			}
+		}
+
+		String encoding = connection.getContentEncoding();
+		byte[] body = read(connection, statusCode, encoding);
+
+		//the body is passed on decompressed
+		if(encoding != null && !encoding.equalsIgnoreCase("identity")) {
+			headers.keySet().removeIf(name ->
+					name.equalsIgnoreCase("Content-Encoding")
+					|| name.equalsIgnoreCase("Content-Length"));
+		}
+
+		return new SplusResponse(
+				statusCode,
+				connection.getURL().toExternalForm(),
+				headers,
+				charsetOf(connection.getContentType()),
+				body);
+	}
+
+	private static byte[] read(
+			HttpURLConnection connection,
+			int statusCode,
+			String encoding) throws IOException {
+		InputStream raw = statusCode >= 400
+				? connection.getErrorStream() : connection.getInputStream();
+
+		if(raw == null) {
+			return new byte[0];
+		}
+
+		//nothing to decompress, even if the headers name an encoding
+		if(statusCode == 204 || statusCode == 304) {
+			raw.close();
+			return new byte[0];
+		}
+
+		//reading to the end and closing returns the connection to the pool
+		try(InputStream in = decode(raw, encoding)) {
+			ByteArrayOutputStream body = new ByteArrayOutputStream(
+					Math.max(connection.getContentLength(), 8192));
+			byte[] buffer = new byte[8192];
+			int read;
+
+			while((read = in.read(buffer)) >= 0) {
+				body.write(buffer, 0, read);
+			}
+
+			return body.toByteArray();
+		}
+	}
+
+	private static InputStream decode(InputStream raw, String encoding)
+			throws IOException {
+		if(encoding == null) {
+			return raw;
+		}
+		if(encoding.equalsIgnoreCase("gzip")
+				|| encoding.equalsIgnoreCase("x-gzip")) {
+			return new GZIPInputStream(raw);
+		}
+		if(encoding.equalsIgnoreCase("deflate")) {
+			//servers send deflate with and without the zlib wrapper
+			PushbackInputStream in = new PushbackInputStream(raw, 2);
+			byte[] header = new byte[2];
+			int read = in.read(header);
+
+			if(read > 0) {
+				in.unread(header, 0, read);
+			}
+
+			boolean zlib = read == 2 && (header[0] & 0x0F) == 8
+					&& ((header[0] & 0xFF) << 8 | header[1] & 0xFF) % 31 == 0;
+
+			return new InflaterInputStream(in, new Inflater(!zlib));
+		}
+
+		return raw;
+	}
+
+	private static byte[] encodeForm(List<Map.Entry<String, String>> data)
+			throws IOException {
+		StringBuilder form = new StringBuilder();
+
+		for(Map.Entry<String, String> field:data) {
+			if(form.length() > 0)
+				form.append('&');
+			form.append(URLEncoder.encode(field.getKey(), "UTF-8"))
+					.append('=')
+					.append(URLEncoder.encode(field.getValue(), "UTF-8"));
+		}
+
+		return form.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the charset named in the Content-Type or null if there is none
+	 */
+	static String charsetOf(String contentType) {
+		if(contentType == null) {
+			return null;
+		}
+
+		for(String parameter:contentType.split(";")) {
+			parameter = parameter.trim();
+
+			if(parameter.regionMatches(true, 0, "charset=", 0, 8)) {
+				String charset = parameter.substring(8).trim();
+
+				if(charset.length() > 1 && charset.startsWith("\"")
+						&& charset.endsWith("\"")) {
+					charset = charset.substring(1, charset.length() - 1);
+				}
+
+				return charset.isEmpty() ? null : charset;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return the time to wait for a connection in milliseconds
+	 */
+	public int getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	/**
+	 * @param connectTimeoutMillis the time to wait for a connection in
+	 *                             milliseconds, 5000 by default, 0 to wait
+	 *                             forever
+	 */
+	public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	/**
+	 * @return the time to wait for data in milliseconds
+	 */
+	public int getReadTimeoutMillis() {
+		return readTimeoutMillis;
+	}
+
+	/**
+	 * @param readTimeoutMillis the time to wait for the next data of a
+	 *                          response in milliseconds, 10000 by default, 0
+	 *                          to wait forever
+	 */
+	public void setReadTimeoutMillis(int readTimeoutMillis) {
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
+	/**
+	 * @return true if compressed responses are asked for
+	 */
+	public boolean isCompression() {
+		return compression;
+	}
+
+	/**
+	 * @param compression true to ask for gzip or deflate, true by default
+	 */
+	public void setCompression(boolean compression) {
+		this.compression = compression;
+	}
+}
@@ -0,0 +1,85 @@
+package de.ole.splusreader.logic.transport;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Passes every request on to another transport and stores the raw response
+ * in a directory, one file per request.
+ *
+ * A {@link ReplayTransport} on the same directory answers the recorded
+ * requests later without any network access, e.g. to run the parser against
+ * real pages offline or to measure it without the jitter of the network.
+ * Recording the same request again replaces the old response.
+ */
+public class RecordingTransport implements SplusTransport {
+
+	static final int MAGIC = 0x53505253;
+	static final int FORMAT_VERSION = 1;
+	static final String SUFFIX = ".response";
+
+	private final SplusTransport delegate;
+	private final File directory;
+
+	/**
+	 * @param delegate      The transport actually executing the requests
+	 * @param directory     The directory for the recordings, created if
+	 *                      necessary
+	 * @throws IOException  If the directory can't be created
+	 */
+	public RecordingTransport(SplusTransport delegate, File directory)
+			throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create recording directory "
+					+ directory);
+		}
+
+		this.delegate = delegate;
+		this.directory = directory;
+	}
+
+	@Override
+	public SplusResponse execute(SplusRequest request) throws IOException {
+		SplusResponse response = delegate.execute(request);
+
+		//conditional requests only get partial answers, e.g. 304
+		if(request.getHeaders().isEmpty()) {
+			record(request, response);
+		}
+
+		return response;
+	}
+
+	private void record(SplusRequest request, SplusResponse response)
+			throws IOException {
+		File file = new File(directory, request.getDigest() + SUFFIX);
+		File temp = File.createTempFile("splus", ".tmp", directory);
+
+		try {
+			try(DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeUTF(request.getKey());
+				response.writeTo(out);
+			}
+
+			Files.move(temp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * @return the directory holding the recordings
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+}
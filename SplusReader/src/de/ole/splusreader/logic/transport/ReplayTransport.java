@@ -0,0 +1,65 @@
+package de.ole.splusreader.logic.transport;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Answers requests from the responses a {@link RecordingTransport} stored,
+ * without any network access.
+ *
+ * Requests are matched by method, URL and form data. Asking for a request
+ * that has not been recorded is an error, so a replay never silently differs
+ * from the recording.
+ */
+public class ReplayTransport implements SplusTransport {
+
+	private final File directory;
+
+	/**
+	 * @param directory     The directory a RecordingTransport wrote to
+	 * @throws IOException  If the directory does not exist
+	 */
+	public ReplayTransport(File directory) throws IOException {
+		if(!directory.isDirectory()) {
+			throw new FileNotFoundException("No recording directory "
+					+ directory);
+		}
+
+		this.directory = directory;
+	}
+
+	@Override
+	public SplusResponse execute(SplusRequest request) throws IOException {
+		File file = new File(directory,
+				request.getDigest() + RecordingTransport.SUFFIX);
+
+		if(!file.isFile()) {
+			throw new FileNotFoundException("No recorded response for "
+					+ request);
+		}
+
+		try(DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			if(in.readInt() != RecordingTransport.MAGIC
+					|| in.readInt() != RecordingTransport.FORMAT_VERSION) {
+				throw new IOException(file + " is no recorded response");
+			}
+			if(!in.readUTF().equals(request.getKey())) {
+				throw new IOException(file + " was recorded for another request");
+			}
+
+			return SplusResponse.readFrom(in);
+		}
+	}
+
+	/**
+	 * @return the directory holding the recordings
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+}
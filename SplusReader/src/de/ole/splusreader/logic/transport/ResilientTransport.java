@@ -0,0 +1,321 @@
+package de.ole.splusreader.logic.transport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps another transport to be polite to splus and to survive it being slow
+ * or down for a while.
+ *
+ * <ul>
+ * <li>Requests to a host are limited by a token bucket: at most a number of
+ * requests per second on average, with short bursts allowed. Callers wait
+ * for their turn.</li>
+ * <li>Timeouts and 5xx responses are tried again a few times, waiting a
+ * random time up to an exponentially growing limit in between, so parallel
+ * callers don't retry in lockstep.</li>
+ * <li>After a number of failures in a row the circuit for the host opens and
+ * requests fail at once with a {@link CircuitOpenException} instead of
+ * waiting for timeouts. After a while a single trial request is let through
+ * and closes the circuit again if it succeeds.</li>
+ * </ul>
+ *
+ * Together with a DiskResponseCache serving stale pages on errors, exports go
+ * on with the pages seen last while splus is down.
+ */
+public class ResilientTransport implements SplusTransport {
+
+	/**
+	 * Thrown without asking the host while its circuit is open.
+	 */
+	public static class CircuitOpenException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public CircuitOpenException(String host) {
+			super("The circuit for " + host + " is open");
+		}
+	}
+
+	private final SplusTransport delegate;
+
+	private volatile double requestsPerSecond = 5;
+	private volatile int burst = 10;
+
+	private volatile int maxAttempts = 3;
+	private volatile long baseDelayMillis = 200;
+	private volatile long maxDelayMillis = 5000;
+
+	private volatile int failureThreshold = 5;
+	private volatile long openMillis = 30000;
+
+	private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+	/**
+	 * The token bucket and circuit of a single host.
+	 */
+	private final class Host {
+		private final String name;
+
+		private double tokens = burst;
+		private long refilledAt = System.nanoTime();
+
+		private int failures;
+		private long openUntil;
+		private boolean trialRunning;
+
+		private Host(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Waits for a token.
+		 */
+		private void acquire() throws InterruptedIOException {
+			long waitNanos;
+
+			synchronized(this) {
+				long now = System.nanoTime();
+				double rate = requestsPerSecond;
+
+				tokens = Math.min(burst,
+						tokens + (now - refilledAt) * rate / 1e9);
+				refilledAt = now;
+
+				//the token is taken now and paid off while waiting
+				tokens--;
+				waitNanos = tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+			}
+
+			sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+		}
+
+		/**
+		 * @param claimTrial  true to let the request be the trial if it is
+		 *                    time for one
+		 * @return            true if the request is the trial
+		 * @throws CircuitOpenException if the circuit is open and it isn't
+		 *                              time for a trial yet
+		 */
+		private synchronized boolean checkCircuit(boolean claimTrial)
+				throws CircuitOpenException {
+			if(failures < failureThreshold) {
+				return false;
+			}
+
+			if(System.currentTimeMillis() < openUntil || trialRunning) {
+				throw new CircuitOpenException(name);
+			}
+
+			trialRunning = claimTrial;
+			return claimTrial;
+		}
+
+		private synchronized void succeeded() {
+			failures = 0;
+			trialRunning = false;
+		}
+
+		private synchronized void failed() {
+			failures++;
+
+			if(trialRunning || failures >= failureThreshold) {
+				openUntil = System.currentTimeMillis() + openMillis;
+			}
+			trialRunning = false;
+		}
+
+		/**
+		 * A request ended without telling anything about the host, e.g. as
+		 * the caller was interrupted.
+		 */
+		private synchronized void abandoned(boolean trial) {
+			if(trial) {
+				trialRunning = false;
+			}
+		}
+
+		private synchronized boolean isOpen() {
+			return failures >= failureThreshold;
+		}
+	}
+
+	/**
+	 * @param delegate  The transport actually carrying the requests
+	 */
+	public ResilientTransport(SplusTransport delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public SplusResponse execute(SplusRequest request) throws IOException {
+		Host host = host(request);
+
+		for(int attempt = 1; ; attempt++) {
+			//fails fast before waiting for a token
+			host.checkCircuit(false);
+			host.acquire();
+
+			//the trial is claimed only once it is sure to be sent
+			boolean trial = host.checkCircuit(true);
+
+			SplusResponse response;
+
+			try {
+				response = delegate.execute(request);
+			} catch (SocketTimeoutException e) {
+				host.failed();
+
+				if(attempt >= maxAttempts) {
+					throw e;
+				}
+
+				backOff(attempt);
+				continue;
+			} catch (InterruptedIOException e) {
+				//the caller gave up, which says nothing about the host
+				host.abandoned(trial);
+				throw e;
+			} catch (IOException e) {
+				//a refused connection or unknown host won't get better soon
+				host.failed();
+				throw e;
+			} catch (RuntimeException | Error e) {
+				host.abandoned(trial);
+				throw e;
+			}
+
+			if(response.getStatusCode() < 500) {
+				host.succeeded();
+				return response;
+			}
+
+			host.failed();
+
+			if(attempt >= maxAttempts) {
+				return response;
+			}
+
+			backOff(attempt);
+		}
+	}
+
+	private Host host(SplusRequest request) throws IOException {
+		String name = new URL(request.getUrl()).getAuthority();
+		return hosts.computeIfAbsent(name, Host::new);
+	}
+
+	/**
+	 * Waits a random time up to the limit for the attempt, "full jitter".
+	 */
+	private void backOff(int attempt) throws InterruptedIOException {
+		long limit = Math.min(maxDelayMillis,
+				baseDelayMillis << Math.min(attempt - 1, 30));
+
+		sleep(ThreadLocalRandom.current().nextLong(limit + 1));
+	}
+
+	private static void sleep(long millis) throws InterruptedIOException {
+		if(millis <= 0) {
+			return;
+		}
+
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting");
+		}
+	}
+
+	/**
+	 * @param host  The host and port, e.g. "splus.ostfalia.de"
+	 * @return      true if requests to the host currently fail fast
+	 */
+	public boolean isCircuitOpen(String host) {
+		Host state = hosts.get(host);
+		return state != null && state.isOpen();
+	}
+
+	/**
+	 * @return the average number of requests per second to a host
+	 */
+	public double getRequestsPerSecond() {
+		return requestsPerSecond;
+	}
+
+	/**
+	 * @param requestsPerSecond the average number of requests per second to a
+	 *                          host, 5 by default
+	 * @param burst             the number of requests that may be sent at
+	 *                          once after a pause, 10 by default
+	 */
+	public void setRateLimit(double requestsPerSecond, int burst) {
+		if(requestsPerSecond <= 0 || burst < 1) {
+			throw new IllegalArgumentException(
+					"The rate must be positive and the burst at least 1");
+		}
+		this.requestsPerSecond = requestsPerSecond;
+		this.burst = burst;
+	}
+
+	/**
+	 * @return the number of requests that may be sent at once
+	 */
+	public int getBurst() {
+		return burst;
+	}
+
+	/**
+	 * @param maxAttempts      the number of tries for a timeout or 5xx, 3 by
+	 *                         default
+	 * @param baseDelayMillis  the limit of the first wait, doubled for every
+	 *                         further one, 200 by default
+	 * @param maxDelayMillis   the highest limit of a wait, 5000 by default
+	 */
+	public void setRetries(
+			int maxAttempts,
+			long baseDelayMillis,
+			long maxDelayMillis) {
+		if(maxAttempts < 1) {
+			throw new IllegalArgumentException("maxAttempts must be at least 1");
+		}
+		this.maxAttempts = maxAttempts;
+		this.baseDelayMillis = baseDelayMillis;
+		this.maxDelayMillis = maxDelayMillis;
+	}
+
+	/**
+	 * @return the number of tries for a timeout or 5xx
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * @param failureThreshold  the number of failures in a row opening the
+	 *                          circuit, 5 by default
+	 * @param openMillis        the time the circuit stays open before a
+	 *                          trial, 30 seconds by default
+	 */
+	public void setCircuitBreaker(int failureThreshold, long openMillis) {
+		if(failureThreshold < 1) {
+			throw new IllegalArgumentException(
+					"failureThreshold must be at least 1");
+		}
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * @return the number of failures in a row opening the circuit
+	 */
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+}
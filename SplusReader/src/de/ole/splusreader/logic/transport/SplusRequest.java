@@ -0,0 +1,145 @@
+package de.ole.splusreader.logic.transport;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A request to splus: the method, the URL, the form data and, for conditional
+ * requests, additional headers.
+ *
+ * Requests are immutable. Two requests with the same method, URL and form data
+ * have the same {@link #getKey() key}, which identifies the response in caches
+ * and recordings.
+ */
+public final class SplusRequest {
+
+	public enum Method {
+		GET,
+		POST
+	}
+
+	private final Method method;
+	private final String url;
+	private final List<Map.Entry<String, String>> data;
+	private final Map<String, String> headers;
+
+	private SplusRequest(
+			Method method,
+			String url,
+			List<Map.Entry<String, String>> data,
+			Map<String, String> headers) {
+		this.method = method;
+		this.url = url;
+		this.data = Collections.unmodifiableList(data);
+		this.headers = Collections.unmodifiableMap(headers);
+	}
+
+	/**
+	 * @param url  The URL of the page
+	 * @return     A GET request for the page
+	 */
+	public static SplusRequest get(String url) {
+		return new SplusRequest(Method.GET, url,
+				new ArrayList<>(), new LinkedHashMap<>());
+	}
+
+	/**
+	 * @param url  The URL of the form
+	 * @return     A POST request without form data yet
+	 */
+	public static SplusRequest post(String url) {
+		return new SplusRequest(Method.POST, url,
+				new ArrayList<>(), new LinkedHashMap<>());
+	}
+
+	/**
+	 * @param key    The name of the form field
+	 * @param value  The value of the form field
+	 * @return       A copy of this request with the field added
+	 */
+	public SplusRequest data(String key, String value) {
+		List<Map.Entry<String, String>> data = new ArrayList<>(this.data);
+		data.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
+		return new SplusRequest(method, url, data, new LinkedHashMap<>(headers));
+	}
+
+	/**
+	 * @param name   The name of the header
+	 * @param value  The value of the header
+	 * @return       A copy of this request with the header set
+	 */
+	public SplusRequest header(String name, String value) {
+		Map<String, String> headers = new LinkedHashMap<>(this.headers);
+		headers.put(name, value);
+		return new SplusRequest(method, url, new ArrayList<>(data), headers);
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return the form fields in the order they were added
+	 */
+	public List<Map.Entry<String, String>> getData() {
+		return data;
+	}
+
+	/**
+	 * @return the additional headers
+	 */
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * @return method, URL and form data, identifying the response
+	 */
+	public String getKey() {
+		StringBuilder key = new StringBuilder();
+		key.append(method).append(' ').append(url);
+
+		for(Map.Entry<String, String> field:data) {
+			key.append('\n').append(field.getKey())
+					.append('=').append(field.getValue());
+		}
+
+		return key.toString();
+	}
+
+	/**
+	 * @return the SHA-1 of the {@link #getKey() key} in hex, e.g. to name
+	 *         files after the request
+	 */
+	public String getDigest() {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1")
+					.digest(getKey().getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+
+			for(byte b:digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+				hex.append(Character.forDigit(b & 0xF, 16));
+			}
+
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public String toString() {
+		return getKey().replace('\n', ' ');
+	}
+}
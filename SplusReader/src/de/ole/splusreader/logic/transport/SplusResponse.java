@@ -0,0 +1,159 @@
+package de.ole.splusreader.logic.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * The raw answer of splus to a {@link SplusRequest}.
+ *
+ * Responses are immutable and can be written to and read from a data stream,
+ * which the response cache and the recording use.
+ */
+public final class SplusResponse {
+
+	private final int statusCode;
+	private final String url;
+	private final Map<String, String> headers;
+	private final String charset;
+	private final byte[] body;
+
+	/**
+	 * @param statusCode  The HTTP status
+	 * @param url         The URL the response came from after redirects
+	 * @param headers     The response headers, looked up ignoring case
+	 * @param charset     The charset of the body or null if it is unknown
+	 * @param body        The body as it was received
+	 */
+	public SplusResponse(
+			int statusCode,
+			String url,
+			Map<String, String> headers,
+			String charset,
+			byte[] body) {
+		this.statusCode = statusCode;
+		this.url = url;
+		TreeMap<String, String> sorted =
+				new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		sorted.putAll(headers);
+		this.headers = Collections.unmodifiableMap(sorted);
+		this.charset = charset;
+		this.body = body;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @param name  The name of the header, in any case
+	 * @return      The value of the header or null
+	 */
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * @return the charset of the body or null if it has to be detected
+	 */
+	public String getCharset() {
+		return charset;
+	}
+
+	/**
+	 * @return the body; the array must not be modified
+	 */
+	public byte[] getBody() {
+		return body;
+	}
+
+	/**
+	 * @return true for a 2xx status
+	 */
+	public boolean isSuccessful() {
+		return statusCode >= 200 && statusCode < 300;
+	}
+
+	/**
+	 * @return                     This response
+	 * @throws HttpStatusException If the status is not 2xx
+	 */
+	public SplusResponse checkStatus() throws HttpStatusException {
+		if(!isSuccessful()) {
+			throw new HttpStatusException("HTTP error fetching URL",
+					statusCode, url);
+		}
+		return this;
+	}
+
+	/**
+	 * @return              The body parsed as HTML
+	 * @throws IOException  If the body can't be decoded
+	 */
+	public Document parse() throws IOException {
+		return Jsoup.parse(new ByteArrayInputStream(body), charset, url);
+	}
+
+	/**
+	 * @param out           The stream to write the response to
+	 * @throws IOException  If writing fails
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		out.writeInt(statusCode);
+		out.writeUTF(url);
+		out.writeUTF(charset == null ? "" : charset);
+		out.writeInt(headers.size());
+
+		for(Map.Entry<String, String> header:headers.entrySet()) {
+			out.writeUTF(header.getKey());
+			out.writeUTF(header.getValue());
+		}
+
+		out.writeInt(body.length);
+		out.write(body);
+	}
+
+	/**
+	 * @param in            A stream written by {@link #writeTo}
+	 * @return              The response read from the stream
+	 * @throws IOException  If reading fails
+	 */
+	public static SplusResponse readFrom(DataInputStream in)
+			throws IOException {
+		int statusCode = in.readInt();
+		String url = in.readUTF();
+		String charset = in.readUTF();
+		int headerCount = in.readInt();
+		Map<String, String> headers = new TreeMap<>();
+
+		for(int i = 0; i < headerCount; i++) {
+			headers.put(in.readUTF(), in.readUTF());
+		}
+
+		byte[] body = new byte[in.readInt()];
+		in.readFully(body);
+
+		return new SplusResponse(statusCode, url, headers,
+				charset.isEmpty() ? null : charset, body);
+	}
+
+	public String toString() {
+		return statusCode + " " + url + " (" + body.length + " bytes)";
+	}
+}
@@ -0,0 +1,49 @@
+package de.ole.splusreader.logic.transport;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Carries requests to splus and brings back the responses.
+ *
+ * Every page the SplusEventFactory needs is fetched through a transport, so
+ * the network can be replaced, e.g. by a {@link ReplayTransport} for offline
+ * work. Implementations must be thread-safe.
+ */
+public interface SplusTransport {
+
+	/**
+	 * Executes the request. Responses with an error status are returned, not
+	 * thrown, so callers can tell e.g. a 304 from a 500.
+	 *
+	 * @param request       The request to execute
+	 * @return              The response
+	 * @throws IOException  If there is no response at all
+	 */
+	public SplusResponse execute(SplusRequest request) throws IOException;
+	
+	/**
+	 * Executes the request on the executor, so the caller can go on with 
+	 * other work meanwhile.
+	 * 
+	 * @param request   The request to execute
+	 * @param executor  The executor blocking for the response
+	 * @return          The response, completed exceptionally with the 
+	 *                  IOException if there is none
+	 */
+	public default CompletableFuture<SplusResponse> executeAsync(
+			SplusRequest request, Executor executor) {
+		CompletableFuture<SplusResponse> future = new CompletableFuture<>();
+		
+		executor.execute(() -> {
+			try {
+				future.complete(execute(request));
+			} catch (IOException | RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		
+		return future;
+	}
+}
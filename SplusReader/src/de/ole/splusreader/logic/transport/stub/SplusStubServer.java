@@ -0,0 +1,426 @@
+package de.ole.splusreader.logic.transport.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A small local imitation of splus, serving the same kinds of pages the
+ * SplusEventFactory reads: the faculty list, the plans of a faculty, the
+ * study paths of a plan, the groups of a study path in a
+ * "Studentensetpläne" plan and the timetable of a week.
+ *
+ * The site has two faculties, each with a "Semesterpläne" and a
+ * "Studentensetpläne" plan. The timetables come from a
+ * {@link StubTimetable}, so they are synthetic but repeatable. Pointing a
+ * factory at {@link #getBaseUrl()} allows working and measuring without the
+ * real server, e.g. with an artificial {@link #setLatencyMillis latency}.
+ *
+ * Several weeks separated by ";" are answered with their timetables one
+ * after another on a single page, unless that is switched off.
+ *
+ * Pages carry a strong ETag and are answered with 304 if it matches.
+ */
+public class SplusStubServer implements Closeable {
+
+	private static final Map<String, String> FACULTIES = new LinkedHashMap<>();
+	private static final Map<String, List<String>> STUDY_PATHS = new HashMap<>();
+
+	static {
+		FACULTIES.put("informatik", "Informatik");
+		FACULTIES.put("recht", "Recht");
+
+		STUDY_PATHS.put("informatik", Arrays.asList(
+				"Bachelor Informatik 1. Semester",
+				"Bachelor Informatik 3. Semester",
+				"Master Informatik 1. Semester"));
+		STUDY_PATHS.put("recht", Arrays.asList(
+				"Bachelor Wirtschaftsrecht 1. Semester",
+				"Bachelor Wirtschaftsrecht 3. Semester"));
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private volatile StubTimetable timetable = new StubTimetable(2016, 39, 20);
+	private volatile long latencyMillis;
+	private volatile boolean multiWeek = true;
+
+	private final AtomicLong requests = new AtomicLong();
+
+	/**
+	 * Starts the server on the loopback interface.
+	 *
+	 * @param port          The port, 0 for any free one
+	 * @throws IOException  If the port can't be bound
+	 */
+	public SplusStubServer(int port) throws IOException {
+		server = HttpServer.create(
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "splus-stub");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * @return the address to be passed to SplusEventFactory.setBaseUrl
+	 */
+	public String getBaseUrl() {
+		return "http://" + server.getAddress().getHostString()
+				+ ":" + server.getAddress().getPort() + "/";
+	}
+
+	/**
+	 * Stops the server at once.
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+
+		try {
+			if(latencyMillis > 0) {
+				Thread.sleep(latencyMillis);
+			}
+
+			Map<String, String> parameters =
+					parse(exchange.getRequestURI().getRawQuery());
+			parameters.putAll(parse(readBody(exchange.getRequestBody())));
+
+			String page = page(exchange.getRequestURI().getPath(), parameters);
+
+			if(page == null) {
+				send(exchange, 404, "<html><body>Not Found</body></html>");
+			}
+			else {
+				send(exchange, 200, page);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private String page(String path, Map<String, String> parameters) {
+		if(path.equals("/")) {
+			StringBuilder html = new StringBuilder("<html><body><ul>\n");
+
+			for(Map.Entry<String, String> faculty:FACULTIES.entrySet()) {
+				link(html, "fakultaet/" + faculty.getKey() + "/",
+						faculty.getValue());
+			}
+
+			return html.append("</ul></body></html>\n").toString();
+		}
+
+		if(path.startsWith("/fakultaet/")) {
+			String faculty = path.substring("/fakultaet/".length())
+					.replace("/", "");
+
+			if(!FACULTIES.containsKey(faculty)) {
+				return null;
+			}
+
+			StringBuilder html = new StringBuilder("<html><body><ul>\n");
+			link(html, "plan.php?faculty=" + faculty + "&kind=semester",
+					"Semesterpläne");
+			link(html, "plan.php?faculty=" + faculty + "&kind=set",
+					"Studentensetpläne");
+
+			return html.append("</ul></body></html>\n").toString();
+		}
+
+		if(path.equals("/plan.php")) {
+			List<String> studyPaths = STUDY_PATHS.get(parameters.get("faculty"));
+
+			if(studyPaths == null) {
+				return null;
+			}
+
+			if("set".equals(parameters.get("kind"))) {
+				return setPlan(studyPaths, parameters);
+			}
+
+			return semesterPlan(studyPaths, parameters);
+		}
+
+		return null;
+	}
+
+	private String semesterPlan(
+			List<String> studyPaths,
+			Map<String, String> parameters) {
+		String identifier = parameters.get("identifier");
+		String weeks = parameters.get("weeks");
+
+		if(identifier != null && weeks != null) {
+			return studyPaths.contains(nameOf(studyPaths, identifier))
+					? week(identifier, weeks) : null;
+		}
+
+		StringBuilder html = new StringBuilder("<html><body>\n")
+				.append("<form name=\"formidentifier\" method=\"get\">")
+				.append("<select name=\"identifier\">\n");
+
+		for(String studyPath:studyPaths) {
+			option(html, "SPLUS" + code(studyPath), studyPath);
+		}
+
+		return html.append("</select></form></body></html>\n").toString();
+	}
+
+	private String setPlan(
+			List<String> studyPaths,
+			Map<String, String> parameters) {
+		String filter = parameters.get("filter");
+		String group = parameters.get("identifier%5B%5D");
+		String weeks = parameters.get("weeks");
+
+		if(filter == null) {
+			StringBuilder html = new StringBuilder("<html><body>\n")
+					.append("<form name=\"formfilter\" method=\"post\">")
+					.append("<select name=\"filter\">\n");
+
+			for(String studyPath:studyPaths) {
+				option(html, code(studyPath), studyPath);
+			}
+
+			return html.append("</select></form></body></html>\n").toString();
+		}
+
+		String studyPath = nameOf(studyPaths, filter);
+
+		if(studyPath == null) {
+			return null;
+		}
+
+		List<String> groups = groupsOf(studyPaths, studyPath);
+
+		if(group != null && weeks != null) {
+			//the factory sends the # of the group encoded once more
+			group = group.replace("%23", "#");
+
+			for(String name:groups) {
+				if(group.equals("#SPLUS" + code(studyPath + name))) {
+					return week(group, weeks);
+				}
+			}
+			return null;
+		}
+
+		StringBuilder html = new StringBuilder("<html><body>\n")
+				.append("<form name=\"form33\" method=\"post\">")
+				.append("<select name=\"identifier[]\">\n");
+		option(html, "", "-- Gruppe wählen --");
+
+		for(String name:groups) {
+			option(html, "#SPLUS" + code(studyPath + name),
+					studyPath + " " + name);
+		}
+
+		return html.append("</select></form></body></html>\n").toString();
+	}
+
+	private String week(String identifier, String weeks) {
+		StubTimetable timetable = this.timetable;
+		String[] values = weeks.split(";");
+
+		if(values.length > 1 && !multiWeek) {
+			return null;
+		}
+
+		try {
+			int[] numbers = new int[values.length];
+
+			for(int i = 0; i < values.length; i++) {
+				numbers[i] = Integer.parseInt(values[i]);
+
+				if(!timetable.hasWeek(numbers[i])) {
+					return null;
+				}
+			}
+
+			return timetable.renderWeeks(identifier, numbers);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static List<String> groupsOf(List<String> studyPaths, String studyPath) {
+		//the first study path has a single group, chosen automatically
+		return studyPaths.indexOf(studyPath) == 0
+				? Arrays.asList("Gruppe A")
+				: Arrays.asList("Gruppe A", "Gruppe B");
+	}
+
+	private static String nameOf(List<String> studyPaths, String code) {
+		for(String studyPath:studyPaths) {
+			if(code.equals(code(studyPath))
+					|| code.equals("SPLUS" + code(studyPath))) {
+				return studyPath;
+			}
+		}
+		return null;
+	}
+
+	private static String code(String name) {
+		return String.format("%06X", name.hashCode() & 0xFFFFFF);
+	}
+
+	private static void link(StringBuilder html, String href, String title) {
+		html.append("<li><a href=\"");
+		StubTimetable.escape(html, href);
+		html.append("\">");
+		StubTimetable.escape(html, title);
+		html.append("</a></li>\n");
+	}
+
+	private static void option(StringBuilder html, String value, String title) {
+		html.append("<option value=\"");
+		StubTimetable.escape(html, value);
+		html.append("\">");
+		StubTimetable.escape(html, title);
+		html.append("</option>\n");
+	}
+
+	private static void send(HttpExchange exchange, int status, String page)
+			throws IOException {
+		byte[] body = page.getBytes(StandardCharsets.UTF_8);
+		String eTag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+
+		exchange.getResponseHeaders().set("Content-Type",
+				"text/html; charset=UTF-8");
+
+		if(status == 200) {
+			exchange.getResponseHeaders().set("ETag", eTag);
+
+			if(eTag.equals(exchange.getRequestHeaders()
+					.getFirst("If-None-Match"))) {
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+		}
+
+		exchange.sendResponseHeaders(status, body.length);
+
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static String readBody(InputStream in) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+
+		for(int read; (read = in.read(buffer)) != -1;) {
+			body.write(buffer, 0, read);
+		}
+
+		return new String(body.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static Map<String, String> parse(String form)
+			throws UnsupportedEncodingException {
+		Map<String, String> parameters = new HashMap<>();
+
+		if(form == null || form.isEmpty()) {
+			return parameters;
+		}
+
+		for(String pair:form.split("&")) {
+			int separator = pair.indexOf('=');
+
+			if(separator < 0) {
+				parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+			}
+			else {
+				parameters.put(
+						URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+						URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+			}
+		}
+
+		return parameters;
+	}
+
+	/**
+	 * @return the generator of the timetables
+	 */
+	public StubTimetable getTimetable() {
+		return timetable;
+	}
+
+	/**
+	 * @param timetable the generator of the timetables, by default a winter
+	 *                  semester of 20 weeks starting in week 39 of 2016
+	 */
+	public void setTimetable(StubTimetable timetable) {
+		this.timetable = timetable;
+	}
+
+	/**
+	 * @return the time every request is delayed
+	 */
+	public long getLatencyMillis() {
+		return latencyMillis;
+	}
+
+	/**
+	 * @param latencyMillis the time every request is delayed, imitating the
+	 *                      network and the real server
+	 */
+	public void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	/**
+	 * @return true if several weeks can be asked for at once
+	 */
+	public boolean isMultiWeek() {
+		return multiWeek;
+	}
+
+	/**
+	 * @param multiWeek true if several weeks can be asked for at once, as by
+	 *                  default, false to answer those requests with 404
+	 */
+	public void setMultiWeek(boolean multiWeek) {
+		this.multiWeek = multiWeek;
+	}
+
+	/**
+	 * @return the number of requests served so far
+	 */
+	public long getRequestCount() {
+		return requests.get();
+	}
+}
@@ -0,0 +1,390 @@
+package de.ole.splusreader.logic.transport.stub;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Random;
+
+/**
+ * Generates the timetable page splus shows for a week: the week selector and
+ * the grid with one row per quarter of an hour and one column per parallel
+ * track of a day.
+ *
+ * The page has the layout the SplusEventFactory reads. Events span several
+ * rows, so later cells of their rows are left out just like splus does, and
+ * days with parallel events get a header with a colspan. Optionally only the
+ * full hours are labeled, with a rowspan over their four rows. The events of
+ * a week are random but always the same for the same identifier and week.
+ *
+ * The weeks are numbered like splus numbers them: from the first week of the
+ * semester on and beyond the end of the year, e.g. 39 to 58 for a winter
+ * semester.
+ */
+public class StubTimetable {
+
+	private static final String[] DAYS = {"Mo", "Di", "Mi", "Do", "Fr", "Sa"};
+
+	private static final int FIRST_HOUR = 8;
+	private static final int SLOTS = 48;
+
+	private static final String[] TITLES = {
+		"Mathematik I",
+		"Programmieren",
+		"Datenbanken",
+		"Rechnernetze",
+		"Software Engineering",
+		"Theoretische Informatik",
+		"Betriebssysteme",
+		"IT-Recht & Datenschutz",
+		"Bürgerliches Recht",
+		"Englisch für Ingenieure"
+	};
+
+	private static final String[] KINDS = {
+		"Vorlesung", "Übung", "Labor", "Seminar"
+	};
+
+	private static final String[] PRESENTERS = {
+		"Prof. Dr. Müller",
+		"Prof. Dr. Schulze-Böhm",
+		"Dr. Krüger",
+		"Dipl.-Inf. Weiß",
+		"Prof. Dr. O'Neill"
+	};
+
+	private static final DateTimeFormatter DATE =
+			DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+	private final int year;
+	private final int firstWeek;
+	private final int weekCount;
+
+	private int eventsPerDay = 3;
+	private int maxParallel = 2;
+	private boolean saturday = false;
+	private boolean hourlyLabels = false;
+
+	/**
+	 * @param year       The year the semester starts in
+	 * @param firstWeek  The first week of the semester
+	 * @param weekCount  The number of weeks in the semester
+	 */
+	public StubTimetable(int year, int firstWeek, int weekCount) {
+		this.year = year;
+		this.firstWeek = firstWeek;
+		this.weekCount = weekCount;
+	}
+
+	/**
+	 * Renders the page splus returns for a week.
+	 *
+	 * @param identifier  The study path or group, seeding the events
+	 * @param week        The week as numbered by splus
+	 * @return            The HTML of the page
+	 */
+	public String render(String identifier, int week) {
+		return renderWeeks(identifier, week);
+	}
+
+	/**
+	 * Renders the page splus returns for several weeks at once: the
+	 * timetables of the weeks one after another, each the same as on the
+	 * page of its own week.
+	 *
+	 * @param identifier  The study path or group, seeding the events
+	 * @param weeks       The weeks as numbered by splus
+	 * @return            The HTML of the page
+	 */
+	public String renderWeeks(String identifier, int... weeks) {
+		StringBuilder html = new StringBuilder(32 * 1024 * weeks.length);
+
+		html.append("<!DOCTYPE html>\n<html><head>")
+				.append("<meta charset=\"UTF-8\"><title>Stundenplan</title>")
+				.append("</head><body>\n");
+
+		appendWeekSelector(html, weeks);
+
+		for(int week:weeks) {
+			if(weeks.length > 1) {
+				html.append("<p class=\"week-label\">")
+						.append(weekLabel(week)).append("</p>\n");
+			}
+
+			appendGrid(html, new Random(identifier.hashCode() * 31L + week));
+		}
+
+		return html.append("</body></html>\n").toString();
+	}
+
+	private void appendGrid(StringBuilder html, Random random) {
+		int dayCount = saturday ? 6 : 5;
+		int[] tracks = new int[dayCount];
+		int columns = 0;
+
+		for(int day = 0; day < dayCount; day++) {
+			tracks[day] = 1 + random.nextInt(maxParallel);
+			columns += tracks[day];
+		}
+
+		//the event starting in a slot of a column, -1 where a rowspan covers
+		//the slot, 0 where it is free
+		int[][] grid = new int[SLOTS][columns];
+		String[][] cells = new String[SLOTS][columns];
+		int column = 0;
+
+		for(int day = 0; day < dayCount; day++) {
+			for(int track = 0; track < tracks[day]; track++, column++) {
+				placeEvents(random, grid, cells, column);
+			}
+		}
+
+		html.append("<table class=\"grid-border-args\" border=\"0\" ")
+				.append("cellspacing=\"0\" cellpadding=\"0\">\n<tr>")
+				.append("<td class=\"col-label-zero\">&nbsp;</td>");
+
+		for(int day = 0; day < dayCount; day++) {
+			html.append("<td class=\"col-label-one\" colspan=\"")
+					.append(tracks[day]).append("\">")
+					.append(DAYS[day]).append("</td>");
+		}
+
+		html.append("</tr>\n");
+
+		for(int slot = 0; slot < SLOTS; slot++) {
+			int minutes = FIRST_HOUR * 60 + slot * 15;
+
+			if(!hourlyLabels) {
+				html.append("<tr><td class=\"row-label-one\">");
+			}
+			else if(slot % 4 == 0) {
+				//the label of the hour covers its four rows
+				html.append("<tr><td class=\"row-label-one\" rowspan=\"4\">");
+			}
+			else {
+				html.append("<tr>");
+			}
+
+			if(!hourlyLabels || slot % 4 == 0) {
+				html.append(String.format("%02d:%02d", minutes / 60, minutes % 60))
+						.append("</td>");
+			}
+
+			for(column = 0; column < columns; column++) {
+				if(grid[slot][column] > 0) {
+					html.append(cells[slot][column]);
+				}
+				else if(grid[slot][column] == 0) {
+					html.append("<td class=\"cell-border\">&nbsp;</td>");
+				}
+			}
+
+			html.append("</tr>\n");
+		}
+
+		html.append("</table>\n");
+	}
+
+	private void placeEvents(
+			Random random,
+			int[][] grid,
+			String[][] cells,
+			int column) {
+		int slot = random.nextInt(4);
+
+		for(int i = 0; i < eventsPerDay; i++) {
+			//mostly on the hour or half past, sometimes a quarter past
+			slot += random.nextInt(3) * 2 + (random.nextInt(4) == 0 ? 1 : 0);
+			int length = random.nextBoolean() ? 6 : 8;
+
+			if(slot + length > SLOTS) {
+				return;
+			}
+
+			grid[slot][column] = length;
+			for(int covered = slot + 1; covered < slot + length; covered++) {
+				grid[covered][column] = -1;
+			}
+			cells[slot][column] = renderEvent(random, length);
+
+			slot += length;
+		}
+	}
+
+	private static String renderEvent(Random random, int length) {
+		StringBuilder cell = new StringBuilder(512);
+
+		cell.append("<td class=\"object-cell-border\" colspan=\"1\" rowspan=\"")
+				.append(length).append("\">")
+				.append("<table class=\"object-cell-args\" cellspacing=\"0\">")
+				.append("<tbody><tr><td align=\"center\">");
+		escape(cell, TITLES[random.nextInt(TITLES.length)]);
+		cell.append("</td></tr>");
+
+		if(random.nextInt(5) != 0) {
+			cell.append("<tr><td align=\"center\">");
+			escape(cell, KINDS[random.nextInt(KINDS.length)]);
+			if(random.nextBoolean()) {
+				cell.append(", Gr. ").append((char) ('A' + random.nextInt(3)));
+			}
+			cell.append("</td></tr>");
+		}
+
+		cell.append("<tr><td align=\"left\">")
+				.append((char) ('A' + random.nextInt(6)))
+				.append(random.nextInt(3) + 1)
+				.append(String.format("%02d", random.nextInt(40)))
+				.append("</td><td align=\"right\">");
+		escape(cell, PRESENTERS[random.nextInt(PRESENTERS.length)]);
+		cell.append("</td></tr></tbody></table></td>");
+
+		return cell.toString();
+	}
+
+	private LocalDate firstMonday() {
+		return LocalDate.of(year, 7, 1)
+				.with(IsoFields.WEEK_OF_WEEK_BASED_YEAR, firstWeek)
+				.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+	}
+
+	private String weekLabel(int week) {
+		LocalDate monday = firstMonday().plusWeeks(week - firstWeek);
+
+		return "KW " + monday.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR) + ": "
+				+ DATE.format(monday);
+	}
+
+	private void appendWeekSelector(StringBuilder html, int... selected) {
+		LocalDate firstMonday = firstMonday();
+
+		html.append("<form name=\"weekform\" method=\"post\" action=\"\">")
+				.append("<select name=\"weeks\" onchange=\"submit()\">\n")
+				//the year of the first week is read from the first option
+				.append("<option value=\"\">Semesterbeginn ")
+				.append(DATE.format(firstMonday))
+				.append(" (Mo.)</option>\n");
+
+		for(int week = firstWeek; week < firstWeek + weekCount; week++) {
+			boolean isSelected = false;
+			for(int chosen:selected) {
+				isSelected |= week == chosen;
+			}
+
+			html.append("<option value=\"").append(week).append('"');
+			if(isSelected)
+				html.append(" selected=\"selected\"");
+			html.append('>').append(weekLabel(week))
+					.append(isSelected ? " (akt.)" : " (Mo.)")
+					.append("</option>\n");
+		}
+
+		html.append("</select></form>\n");
+	}
+
+	static void escape(StringBuilder html, String text) {
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+
+			switch(c) {
+			case '&':
+				html.append("&amp;");
+				break;
+			case '<':
+				html.append("&lt;");
+				break;
+			case '>':
+				html.append("&gt;");
+				break;
+			case '"':
+				html.append("&quot;");
+				break;
+			default:
+				html.append(c);
+			}
+		}
+	}
+
+	/**
+	 * @param week  A week as numbered by splus
+	 * @return      true if the week belongs to the semester
+	 */
+	public boolean hasWeek(int week) {
+		return week >= firstWeek && week < firstWeek + weekCount;
+	}
+
+	public int getYear() {
+		return year;
+	}
+
+	public int getFirstWeek() {
+		return firstWeek;
+	}
+
+	public int getWeekCount() {
+		return weekCount;
+	}
+
+	/**
+	 * @return the number of events per track and day, fewer if they don't fit
+	 */
+	public int getEventsPerDay() {
+		return eventsPerDay;
+	}
+
+	/**
+	 * @param eventsPerDay the number of events per track and day, 3 by
+	 *                     default
+	 */
+	public void setEventsPerDay(int eventsPerDay) {
+		this.eventsPerDay = eventsPerDay;
+	}
+
+	/**
+	 * @return the highest number of parallel tracks of a day
+	 */
+	public int getMaxParallel() {
+		return maxParallel;
+	}
+
+	/**
+	 * @param maxParallel the highest number of parallel tracks of a day, 2 by
+	 *                    default
+	 */
+	public void setMaxParallel(int maxParallel) {
+		if(maxParallel < 1) {
+			throw new IllegalArgumentException("maxParallel must be at least 1");
+		}
+		this.maxParallel = maxParallel;
+	}
+
+	/**
+	 * @return true if saturdays have events too
+	 */
+	public boolean hasSaturday() {
+		return saturday;
+	}
+
+	/**
+	 * @param saturday true if saturdays have events too
+	 */
+	public void setSaturday(boolean saturday) {
+		this.saturday = saturday;
+	}
+
+	/**
+	 * @return true if only the full hours have a row label
+	 */
+	public boolean hasHourlyLabels() {
+		return hourlyLabels;
+	}
+
+	/**
+	 * @param hourlyLabels true if only the full hours get a row label spanning
+	 *                     their four rows, false for a label on every row as
+	 *                     by default
+	 */
+	public void setHourlyLabels(boolean hourlyLabels) {
+		this.hourlyLabels = hourlyLabels;
+	}
+}
@@ -0,0 +1,65 @@
+package de.ole.splusreader.benchmarks;
+
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.ole.splusreader.logic.DomWeekParser;
+import de.ole.splusreader.logic.SplusDateCalculator;
+import de.ole.splusreader.logic.SplusEvent;
+import de.ole.splusreader.logic.SplusParseException;
+
+/**
+ * Turning the strings of a single timetable cell into an event, and the
+ * per-week date calculation done before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventConstructionBenchmark {
+
+	private SplusDateCalculator calculator;
+	private SplusDateCalculator.Week week;
+
+	//not constants, so the parsing is not folded away
+	public String dayOfWeek = "Mi";
+	public String time = "11:30";
+	public int weekNumber = 55;
+
+	@Setup
+	public void setUp() {
+		calculator = new SplusDateCalculator(ZoneId.of("Europe/Berlin"));
+		week = calculator.week(2017, 2016, weekNumber);
+	}
+
+	@Benchmark
+	public SplusEvent getEventFromStrings() throws SplusParseException {
+		return DomWeekParser.getEventFromStrings(
+				week,
+				dayOfWeek,
+				"Software Engineering",
+				"Vorlesung, Gr. A",
+				"Prof. Dr. Müller",
+				"A130",
+				time,
+				90);
+	}
+
+	@Benchmark
+	public SplusDateCalculator.Week week() {
+		return calculator.week(2017, 2016, weekNumber);
+	}
+}
@@ -0,0 +1,90 @@
+package de.ole.splusreader.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.ole.splusreader.logic.SplusDateCalculator;
+import de.ole.splusreader.logic.SplusEvent;
+import de.ole.splusreader.logic.StreamingWeekParser;
+import de.ole.splusreader.logic.store.SplusEventBlock;
+import de.ole.splusreader.logic.store.StringDictionary;
+import de.ole.splusreader.logic.transport.stub.StubTimetable;
+
+/**
+ * Compares the heap taken by the events of a whole faculty and year, once as
+ * the parsed List of SplusEvents and once in a SplusEventBlock.
+ *
+ * The heap is measured after repeated garbage collections, which the serial
+ * collector accounts for exactly, e.g.
+ * java -XX:+UseSerialGC -cp target/benchmarks.jar
+ * de.ole.splusreader.benchmarks.EventStorageFootprint [study paths] [weeks]
+ */
+public class EventStorageFootprint {
+
+	private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+	public static void main(String[] args) throws IOException {
+		int studyPaths = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		int weeks = args.length > 1 ? Integer.parseInt(args[1]) : 52;
+
+		StubTimetable timetable = new StubTimetable(2015, 40, weeks);
+		timetable.setEventsPerDay(4);
+		timetable.setMaxParallel(3);
+
+		StreamingWeekParser parser =
+				new StreamingWeekParser(new SplusDateCalculator());
+
+		List<SplusEvent> events = new ArrayList<>();
+
+		for(int studyPath = 0; studyPath < studyPaths; studyPath++) {
+			for(int week = 40; week < 40 + weeks; week++) {
+				String page = timetable.render("SPLUS" + studyPath, week);
+				events.addAll(parser.parse(new StringReader(page), week));
+			}
+		}
+
+		int count = events.size();
+		long withList = usedHeap();
+
+		SplusEventBlock block = SplusEventBlock.of(events, new StringDictionary());
+		block.trimToSize();
+		events = null;
+
+		long withBlock = usedHeap();
+		int strings = block.getDictionary().size();
+		block = null;
+
+		long empty = usedHeap();
+		long listBytes = withList - empty;
+		long blockBytes = withBlock - empty;
+
+		System.out.printf("%d study paths, %d weeks, %d events, %d strings%n",
+				studyPaths, weeks, count, strings);
+		print("List<SplusEvent>", listBytes, count);
+		print("SplusEventBlock", blockBytes, count);
+		System.out.printf("%.1f times smaller%n", (double) listBytes / blockBytes);
+	}
+
+	private static void print(String name, long bytes, int count) {
+		System.out.printf("%-18s %,12d bytes %8.1f bytes per event%n",
+				name, bytes, (double) bytes / count);
+	}
+
+	private static long usedHeap() {
+		for(int i = 0; i < 5; i++) {
+			System.gc();
+
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return MEMORY.getHeapMemoryUsage().getUsed();
+	}
+}
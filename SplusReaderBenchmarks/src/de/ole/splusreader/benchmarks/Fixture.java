@@ -0,0 +1,79 @@
+package de.ole.splusreader.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * The captured week pages the benchmarks run on.
+ *
+ * The pages are generated by {@link FixtureGenerator}. Pages recorded from
+ * the real splus with a RecordingTransport can replace them as long as the
+ * week numbers are kept.
+ */
+public enum Fixture {
+	/** A "Semesterpläne" week with one event per day */
+	SPARSE("sparse.html", 40),
+	/** A "Semesterpläne" week with up to four parallel tracks of six events */
+	DENSE("dense.html", 41),
+	/** A "Studentensetpläne" group in january, after the turn of the year */
+	GROUP("group.html", 55);
+
+	private final String fileName;
+	private final int week;
+
+	private Fixture(String fileName, int week) {
+		this.fileName = fileName;
+		this.week = week;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * @return the week the page was requested for
+	 */
+	public int getWeek() {
+		return week;
+	}
+
+	/**
+	 * @return the page as it was received
+	 */
+	public byte[] load() {
+		try(InputStream in = Fixture.class.getResourceAsStream(
+				"/fixtures/" + fileName)) {
+			if(in == null) {
+				throw new IllegalStateException("Missing fixture " + fileName);
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+
+			for(int read; (read = in.read(buffer)) != -1;) {
+				out.write(buffer, 0, read);
+			}
+
+			return out.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the page parsed by jsoup
+	 */
+	public Document parse() {
+		try {
+			return Jsoup.parse(new ByteArrayInputStream(load()), "UTF-8", "");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
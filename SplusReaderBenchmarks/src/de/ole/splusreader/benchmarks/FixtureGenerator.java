@@ -0,0 +1,77 @@
+package de.ole.splusreader.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import de.ole.splusreader.logic.MissingSettingException;
+import de.ole.splusreader.logic.SplusEventFactory;
+import de.ole.splusreader.logic.transport.JsoupTransport;
+import de.ole.splusreader.logic.transport.SplusResponse;
+import de.ole.splusreader.logic.transport.stub.SplusStubServer;
+import de.ole.splusreader.logic.transport.stub.StubTimetable;
+
+/**
+ * Captures the {@link Fixture fixtures} from a local SplusStubServer, the way
+ * the SplusEventFactory requests them.
+ *
+ * Usage: FixtureGenerator [directory], by default resources/fixtures
+ */
+public class FixtureGenerator {
+
+	public static void main(String[] args)
+			throws IOException, MissingSettingException {
+		File directory = new File(args.length > 0 ? args[0] : "resources/fixtures");
+		JsoupTransport jsoup = new JsoupTransport();
+		SplusResponse[] last = new SplusResponse[1];
+
+		try(SplusStubServer stub = new SplusStubServer(0)) {
+			SplusEventFactory factory = new SplusEventFactory();
+			factory.setBaseUrl(stub.getBaseUrl());
+			factory.setWeekCache(null);
+			factory.setTransport(request -> last[0] = jsoup.execute(request));
+
+			factory.setFaculty("Informatik");
+			factory.setPlan("Semesterpläne");
+			factory.setStudyPath(0);
+
+			stub.setTimetable(timetable(1, 1, false));
+			capture(factory, Fixture.SPARSE, last, directory);
+
+			stub.setTimetable(timetable(6, 4, true));
+			capture(factory, Fixture.DENSE, last, directory);
+
+			factory.setPlan("Studentensetpläne");
+			factory.setStudyPath(1);
+			factory.setGroup(1);
+
+			stub.setTimetable(timetable(3, 2, false));
+			capture(factory, Fixture.GROUP, last, directory);
+		}
+	}
+
+	private static StubTimetable timetable(
+			int eventsPerDay, 
+			int maxParallel, 
+			boolean saturday) {
+		StubTimetable timetable = new StubTimetable(2016, 39, 20);
+		timetable.setEventsPerDay(eventsPerDay);
+		timetable.setMaxParallel(maxParallel);
+		timetable.setSaturday(saturday);
+		return timetable;
+	}
+
+	private static void capture(
+			SplusEventFactory factory,
+			Fixture fixture,
+			SplusResponse[] last,
+			File directory)
+			throws IOException, MissingSettingException {
+		int events = factory.getEventsFromWeek(fixture.getWeek()).size();
+		File file = new File(directory, fixture.getFileName());
+
+		Files.write(file.toPath(), last[0].getBody());
+		System.out.println(file + ": " + events + " events, "
+				+ last[0].getBody().length + " bytes");
+	}
+}
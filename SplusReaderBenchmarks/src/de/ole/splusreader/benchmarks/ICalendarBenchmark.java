@@ -0,0 +1,89 @@
+package de.ole.splusreader.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.ole.splusreader.logic.DomWeekParser;
+import de.ole.splusreader.logic.SplusDateCalculator;
+import de.ole.splusreader.logic.SplusEvent;
+import de.ole.splusreader.logic.calendarPlugins.SplusToICalendar;
+
+/**
+ * Serializing the events of a week, repeated to the length of a semester,
+ * to iCalendar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ICalendarBenchmark {
+
+	@Param({"SPARSE", "DENSE", "GROUP"})
+	public Fixture fixture;
+
+	@Param({"1", "20"})
+	public int weeks;
+
+	private List<SplusEvent> events;
+	private SplusToICalendar writer;
+
+	@Setup
+	public void setUp() throws IOException {
+		DomWeekParser parser = new DomWeekParser(
+				new SplusDateCalculator(ZoneId.of("Europe/Berlin")));
+		List<SplusEvent> week = parser.parse(fixture.parse(), fixture.getWeek());
+
+		events = new ArrayList<>();
+		for(int i = 0; i < weeks; i++) {
+			events.addAll(week);
+		}
+
+		writer = new SplusToICalendar();
+	}
+
+	@Benchmark
+	public void writeToStream(Blackhole blackhole) throws IOException {
+		writer.writeToStream(events, new BlackholeOutputStream(blackhole));
+	}
+
+	/**
+	 * Consumes the calendar without keeping it.
+	 */
+	private static final class BlackholeOutputStream extends OutputStream {
+		private final Blackhole blackhole;
+
+		private BlackholeOutputStream(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void write(int b) {
+			blackhole.consume(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			blackhole.consume(b);
+			blackhole.consume(len);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package de.ole.splusreader.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jsoup.Jsoup;
+
+import de.ole.splusreader.logic.DomWeekParser;
+import de.ole.splusreader.logic.SplusDateCalculator;
+import de.ole.splusreader.logic.SplusEvent;
+import de.ole.splusreader.logic.StreamingWeekParser;
+import de.ole.splusreader.logic.transport.stub.StubTimetable;
+
+/**
+ * Checks that the StreamingWeekParser reads the same events as the
+ * DomWeekParser, on every {@link Fixture} and on the weeks of randomly shaped
+ * StubTimetables, each week alone and several weeks on one page. The
+ * benchmarks only compare the two parsers if they agree.
+ *
+ * Exits with 1 on the first difference, e.g.
+ * java -cp target/benchmarks.jar
+ * de.ole.splusreader.benchmarks.ParserEquivalence [timetables] [seed]
+ */
+public class ParserEquivalence {
+
+	public static void main(String[] args) throws IOException {
+		int timetables = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+		SplusDateCalculator calculator = new SplusDateCalculator();
+		DomWeekParser dom = new DomWeekParser(calculator);
+		StreamingWeekParser streaming = new StreamingWeekParser(calculator);
+		int weeks = 0;
+		int events = 0;
+
+		for(Fixture fixture:Fixture.values()) {
+			byte[] page = fixture.load();
+			List<SplusEvent> expected = dom.parse(
+					Jsoup.parse(new ByteArrayInputStream(page), "UTF-8", ""),
+					fixture.getWeek());
+			List<SplusEvent> actual = streaming.parse(
+					new ByteArrayInputStream(page), "UTF-8", fixture.getWeek());
+
+			compare(fixture.toString(), expected, actual);
+			weeks++;
+			events += expected.size();
+		}
+
+		Random random = new Random(seed);
+
+		for(int i = 0; i < timetables; i++) {
+			StubTimetable timetable = new StubTimetable(2016, 39, 20);
+			timetable.setEventsPerDay(random.nextInt(8));
+			timetable.setMaxParallel(1 + random.nextInt(4));
+			timetable.setSaturday(random.nextBoolean());
+			timetable.setHourlyLabels(random.nextBoolean());
+
+			String identifier = "SPLUS" + random.nextInt(1000);
+			int first = 39 + random.nextInt(17);
+			int[] range = {first, first + 1, first + 2, first + 3};
+			List<List<SplusEvent>> together = streaming.parseWeeks(
+					new StringReader(timetable.renderWeeks(identifier, range)),
+					range);
+
+			for(int j = 0; j < range.length; j++) {
+				int week = range[j];
+				String page = timetable.render(identifier, week);
+				String name = "timetable " + i + " (" + identifier
+						+ ") week " + week;
+				List<SplusEvent> expected = dom.parse(Jsoup.parse(page), week);
+
+				compare(name, expected,
+						streaming.parse(new StringReader(page), week));
+				compare(name + " of " + range.length, expected,
+						together.get(j));
+				weeks++;
+				events += expected.size();
+			}
+		}
+
+		System.out.printf("%d weeks with %d events read the same by both "
+				+ "parsers%n", weeks, events);
+	}
+
+	private static void compare(
+			String name,
+			List<SplusEvent> expected,
+			List<SplusEvent> actual) {
+		List<String> expectedLines = describe(expected);
+		List<String> actualLines = describe(actual);
+
+		if(!expectedLines.equals(actualLines)) {
+			System.err.println(name + " differs");
+			System.err.println("DomWeekParser:       " + expectedLines);
+			System.err.println("StreamingWeekParser: " + actualLines);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return every field of the events, sorted as the parsers may list
+	 *         parallel events in a different order
+	 */
+	private static List<String> describe(List<SplusEvent> events) {
+		List<String> lines = new ArrayList<>(events.size());
+
+		for(SplusEvent event:events) {
+			lines.add(event.getStartMillis() + "-" + event.getEndMillis()
+					+ " " + event.getTitle()
+					+ " | " + event.getDescription()
+					+ " | " + event.getLocation()
+					+ " | " + event.getPresenter());
+		}
+
+		Collections.sort(lines);
+		return lines;
+	}
+}
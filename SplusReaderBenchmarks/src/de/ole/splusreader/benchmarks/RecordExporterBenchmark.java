@@ -0,0 +1,115 @@
+package de.ole.splusreader.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.ole.splusreader.logic.DomWeekParser;
+import de.ole.splusreader.logic.SplusDateCalculator;
+import de.ole.splusreader.logic.SplusEvent;
+import de.ole.splusreader.logic.calendarPlugins.RecordExporter;
+import de.ole.splusreader.logic.calendarPlugins.SplusToBinary;
+import de.ole.splusreader.logic.calendarPlugins.SplusToCsv;
+import de.ole.splusreader.logic.calendarPlugins.SplusToJsonLines;
+
+/**
+ * Writing the events of a week, repeated to the length of a semester, as
+ * flat records, to compare with {@link ICalendarBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordExporterBenchmark {
+
+	public enum Format {
+		JSON_LINES, CSV, BINARY
+	}
+
+	@Param({"SPARSE", "DENSE", "GROUP"})
+	public Fixture fixture;
+
+	@Param({"1", "20"})
+	public int weeks;
+
+	@Param({"JSON_LINES", "CSV", "BINARY"})
+	public Format format;
+
+	private List<SplusEvent> events;
+	private RecordExporter exporter;
+
+	@Setup
+	public void setUp() throws IOException {
+		DomWeekParser parser = new DomWeekParser(
+				new SplusDateCalculator(ZoneId.of("Europe/Berlin")));
+		List<SplusEvent> week = parser.parse(fixture.parse(), fixture.getWeek());
+
+		events = new ArrayList<>();
+		for(int i = 0; i < weeks; i++) {
+			events.addAll(week);
+		}
+
+		switch(format) {
+		case JSON_LINES:
+			exporter = new SplusToJsonLines();
+			break;
+		case CSV:
+			exporter = new SplusToCsv();
+			break;
+		default:
+			exporter = new SplusToBinary();
+		}
+	}
+
+	@Benchmark
+	public void writeToChannel(Blackhole blackhole) throws IOException {
+		exporter.writeToChannel(events.stream(), new BlackholeChannel(blackhole));
+	}
+
+	/**
+	 * Consumes the records without keeping them.
+	 */
+	private static final class BlackholeChannel implements WritableByteChannel {
+		private final Blackhole blackhole;
+
+		private BlackholeChannel(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public int write(ByteBuffer src) {
+			int written = src.remaining();
+			blackhole.consume(src.get(src.limit() - 1));
+			src.position(src.limit());
+			return written;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package de.ole.splusreader.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so every result shows the
+ * allocation rate next to the throughput.
+ *
+ * Takes the usual JMH arguments, e.g. a regular expression selecting the
+ * benchmarks: java -jar target/benchmarks.jar WeekParser
+ */
+public class SplusBenchmarks {
+
+	public static void main(String[] args)
+			throws RunnerException, CommandLineOptionException {
+		new Runner(new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build())
+				.run();
+	}
+}
@@ -0,0 +1,76 @@
+package de.ole.splusreader.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.ole.splusreader.logic.DomWeekParser;
+import de.ole.splusreader.logic.SplusDateCalculator;
+import de.ole.splusreader.logic.SplusEvent;
+import de.ole.splusreader.logic.StreamingWeekParser;
+
+/**
+ * The way from a received week page to its events: parsing the HTML and
+ * walking the timetable grid, the walk alone on an already parsed page, and
+ * the single pass of the streaming parser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeekParserBenchmark {
+
+	@Param({"SPARSE", "DENSE", "GROUP"})
+	public Fixture fixture;
+
+	private byte[] page;
+	private Document document;
+	private DomWeekParser parser;
+	private StreamingWeekParser streamingParser;
+
+	@Setup
+	public void setUp() {
+		page = fixture.load();
+		document = fixture.parse();
+		SplusDateCalculator calculator =
+				new SplusDateCalculator(ZoneId.of("Europe/Berlin"));
+		parser = new DomWeekParser(calculator);
+		streamingParser = new StreamingWeekParser(calculator);
+	}
+
+	@Benchmark
+	public List<SplusEvent> parseAndWalk() throws IOException {
+		Document document = Jsoup.parse(
+				new ByteArrayInputStream(page), "UTF-8", "");
+		return parser.parse(document, fixture.getWeek());
+	}
+
+	@Benchmark
+	public List<SplusEvent> walkGrid() throws IOException {
+		return parser.parse(document, fixture.getWeek());
+	}
+
+	@Benchmark
+	public List<SplusEvent> stream() throws IOException {
+		return streamingParser.parse(
+				new ByteArrayInputStream(page), "UTF-8", fixture.getWeek());
+	}
+}